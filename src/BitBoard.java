@@ -0,0 +1,446 @@
+// 盤面を黒石・白石それぞれ64bitのlong(ビットボード)で表現するクラス
+// マス(x, y)はビット番号 x * 8 + y に対応する(xは行、yは列)
+// Integer[][]形式との相互変換を用意しているので、既存のOthelloクラスのAPIと併用できる
+public class BitBoard {
+    // 盤面に関する情報(Othelloクラスと同じ値)
+    public static final int SIZE = 8;
+    public static final int EMPTY = 0; // 設置されていない
+    public static final int BLACK = 1; // 黒の石が置かれている
+    public static final int WHITE = 2; // 白の石が置かれている
+
+    // 端の列を除外するためのマスク(シフト時の折り返し防止)
+    private static final long NOT_COL0 = 0xfefefefefefefefeL; // 左端(y = 0)以外
+    private static final long NOT_COL7 = 0x7f7f7f7f7f7f7f7fL; // 右端(y = 7)以外
+    private static final long INNER_COLS = 0x7e7e7e7e7e7e7e7eL; // 左右端以外
+
+    // マスごとの3のべき乗(行の石パターンを3進数で表したときの、そのマスの桁の重み)
+    // マス(x, y)は 3^(7 - y)。空き: 0, 黒: 1, 白: 2 を桁の値とする
+    private static final int[] PATTERN_WEIGHT = new int[SIZE * SIZE];
+
+    static {
+        for (int sq = 0; sq < SIZE * SIZE; sq++) {
+            int weight = 1;
+            for (int i = 0; i < SIZE - 1 - sq % SIZE; i++) {
+                weight *= 3;
+            }
+            PATTERN_WEIGHT[sq] = weight;
+        }
+    }
+
+    private long black; // 黒石の位置
+    private long white; // 白石の位置
+    private long hash; // 石の配置のZobristハッシュ値(手番は含まない。makeMove/undoMoveで差分更新する)
+    private final int[] rowPatterns = new int[SIZE]; // 各行の石パターン(3進数, makeMove/undoMoveで差分更新する)
+    private NeuralEvaluator.Accumulator accumulator; // ニューラルネットワーク評価の隠れ層の値(評価に使った盤面のみ, makeMove/undoMoveで差分更新する)
+
+    // コンストラクタ(初期配置)
+    public BitBoard() {
+        this(square(3, 4) | square(4, 3), square(3, 3) | square(4, 4));
+    }
+
+    // コンストラクタ(任意の配置)
+    public BitBoard(long black, long white) {
+        this.black = black;
+        this.white = white;
+        this.hash = Zobrist.hash(black, white);
+        for (long bits = black | white; bits != 0; bits &= bits - 1) {
+            int sq = Long.numberOfTrailingZeros(bits);
+            rowPatterns[sq >>> 3] += (((black >>> sq) & 1) != 0 ? BLACK : WHITE) * PATTERN_WEIGHT[sq];
+        }
+    }
+
+    // ハッシュ値・行パターンを計算済みの場合のコンストラクタ(copy用)
+    private BitBoard(long black, long white, long hash, int[] rowPatterns) {
+        this.black = black;
+        this.white = white;
+        this.hash = hash;
+        System.arraycopy(rowPatterns, 0, this.rowPatterns, 0, SIZE);
+    }
+
+    // Integer[][]形式の盤面からビットボードを生成するメソッド
+    // 黒・白以外の値(空き、設置可能マークなど)は空きマスとして扱う
+    public static BitBoard fromBoard(Integer[][] tempBoard) {
+        long black = 0L;
+        long white = 0L;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                int stone = tempBoard[x][y];
+                if (stone == BLACK) {
+                    black |= square(x, y);
+                } else if (stone == WHITE) {
+                    white |= square(x, y);
+                }
+            }
+        }
+        return new BitBoard(black, white);
+    }
+
+    // ビットボードをInteger[][]形式の盤面に変換するメソッド
+    public Integer[][] toBoard() {
+        Integer[][] tempBoard = new Integer[SIZE][SIZE];
+        copyTo(tempBoard);
+        return tempBoard;
+    }
+
+    // 既存のInteger[][]形式の盤面に内容を書き込むメソッド
+    public void copyTo(Integer[][] tempBoard) {
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                tempBoard[x][y] = getStone(x, y);
+            }
+        }
+    }
+
+    // 盤面の複製を返すメソッド
+    public BitBoard copy() {
+        BitBoard board = new BitBoard(black, white, hash, rowPatterns);
+        if (accumulator != null) {
+            board.accumulator = new NeuralEvaluator.Accumulator(accumulator);
+        }
+        return board;
+    }
+
+    // マス(x, y)に対応するビットを返すメソッド
+    public static long square(int x, int y) {
+        return 1L << (x * SIZE + y);
+    }
+
+    public long getBlack() {
+        return black;
+    }
+
+    public long getWhite() {
+        return white;
+    }
+
+    // ニューラルネットワーク評価の隠れ層の値(NeuralEvaluator.evaluateが設定する。未設定ならnull)
+    NeuralEvaluator.Accumulator getAccumulator() {
+        return accumulator;
+    }
+
+    void setAccumulator(NeuralEvaluator.Accumulator accumulator) {
+        this.accumulator = accumulator;
+    }
+
+    /*
+    行xの石パターンを3進数で表した値(0 ～ 3^8 - 1)を返すメソッド
+    左端(y = 0)が最上位の桁で、空き: 0, 黒: 1, 白: 2。評価関数のテーブル参照に使う。
+    盤面から数え直さず、makeMove/undoMoveで差分更新した値をそのまま返す。
+    */
+    public int getRowPattern(int x) {
+        return rowPatterns[x];
+    }
+
+    /*
+    手番colorを含めた局面のZobristハッシュ値を返すメソッド
+    同じ石の配置でも手番が異なれば別の値になる。値は実行ごとに変わらないので保存しておいて良い。
+    */
+    public long getHash(int color) {
+        return (color == WHITE) ? hash ^ Zobrist.SIDE_KEY : hash;
+    }
+
+    // 指定した色の石の位置を返すメソッド
+    public long getStones(int color) {
+        return (color == BLACK) ? black : white;
+    }
+
+    // 石が置かれていないマスを返すメソッド
+    public long getEmpty() {
+        return ~(black | white);
+    }
+
+    // マス(x, y)の状態(EMPTY, BLACK, WHITE)を返すメソッド
+    public int getStone(int x, int y) {
+        long bit = square(x, y);
+        if ((black & bit) != 0) {
+            return BLACK;
+        } else if ((white & bit) != 0) {
+            return WHITE;
+        } else {
+            return EMPTY;
+        }
+    }
+
+    // 相手の色を返すメソッド
+    public static int opponentColor(int color) {
+        return (color == BLACK) ? WHITE : BLACK;
+    }
+
+    // あるマスが設置可能かどうかを判定するメソッド
+    public boolean isValidMove(int x, int y, int color) {
+        if (x < 0 || x >= SIZE || y < 0 || y >= SIZE) {
+            return false; // 盤面外
+        }
+        int sq = x * SIZE + y;
+        if (((black | white) & (1L << sq)) != 0) {
+            return false;
+        }
+        long opponent = getStones(opponentColor(color));
+        if ((neighbors(opponent) & (1L << sq)) == 0) {
+            return false; // 相手の石に隣接していなければ裏返せない
+        }
+        return getFlips(getStones(color), opponent, sq) != 0;
+    }
+
+    // 設置可能場所があるか否か
+    public boolean hasValidMove(int color) {
+        return getValidMoves(color) != 0;
+    }
+
+    // 色に応じて石の設置可能場所をビットの集合で返すメソッド
+    public long getValidMoves(int color) {
+        return getLegalMoves(getStones(color), getStones(opponentColor(color)));
+    }
+
+    // 操作を反映し、石を裏返すメソッド
+    // 戻り値は裏返した石の集合(undoMoveで元に戻すときに使う)
+    public long makeMove(int x, int y, int color) {
+        return makeMove(x * SIZE + y, color);
+    }
+
+    // makeMoveのビット番号版。盤面をその場で書き換え、新しいオブジェクトは生成しない
+    public long makeMove(int sq, int color) {
+        long flips = (color == BLACK) ? getFlips(black, white, sq) : getFlips(white, black, sq);
+        long placed = 1L << sq;
+        if (color == BLACK) {
+            black |= placed | flips;
+            white &= ~flips;
+            hash ^= Zobrist.BLACK_KEYS[sq];
+        } else {
+            white |= placed | flips;
+            black &= ~flips;
+            hash ^= Zobrist.WHITE_KEYS[sq];
+        }
+        hash ^= Zobrist.flipKey(flips);
+        updateRowPatterns(sq, flips, color, 1);
+        if (accumulator != null) {
+            accumulator.update(sq, flips, color, 1);
+        }
+        return flips;
+    }
+
+    // makeMoveで打った手を取り消すメソッド
+    // sq, colorはmakeMoveに渡したもの、flipsはmakeMoveの戻り値
+    public void undoMove(int sq, long flips, int color) {
+        long placed = 1L << sq;
+        if (color == BLACK) {
+            black &= ~(placed | flips);
+            white |= flips;
+            hash ^= Zobrist.BLACK_KEYS[sq];
+        } else {
+            white &= ~(placed | flips);
+            black |= flips;
+            hash ^= Zobrist.WHITE_KEYS[sq];
+        }
+        hash ^= Zobrist.flipKey(flips);
+        updateRowPatterns(sq, flips, color, -1);
+        if (accumulator != null) {
+            accumulator.update(sq, flips, color, -1);
+        }
+    }
+
+    // 打った石と裏返した石の分だけ行パターンを差分更新するメソッド(direction: 打つとき1, 取り消すとき-1)
+    // 裏返した石は相手の色(桁の値 3 - color)から自分の色(color)に変わるので、桁の値の変化は黒で-1、白で+1
+    private void updateRowPatterns(int sq, long flips, int color, int direction) {
+        rowPatterns[sq >>> 3] += direction * color * PATTERN_WEIGHT[sq];
+        int flipDelta = (color == BLACK) ? -direction : direction;
+        for (; flips != 0; flips &= flips - 1) {
+            int flipped = Long.numberOfTrailingZeros(flips);
+            rowPatterns[flipped >>> 3] += flipDelta * PATTERN_WEIGHT[flipped];
+        }
+    }
+
+    // 石の数を取得するメソッド
+    public int numberOfStone(int color) {
+        return Long.bitCount(getStones(color));
+    }
+
+    // 空きマスの数を取得するメソッド
+    public int countEmpty() {
+        return Long.bitCount(getEmpty());
+    }
+
+    // 勝敗判定メソッド
+    public String judgeWinner() {
+        int blackCount = Long.bitCount(black);
+        int whiteCount = Long.bitCount(white);
+        if (blackCount > whiteCount) {
+            return "Black";
+        } else if (whiteCount > blackCount) {
+            return "White";
+        } else {
+            return "Draw";
+        }
+    }
+
+    /*
+    手番側の全ての設置可能場所を64bitのマスクとして一度に求めるメソッド
+    player: 手番側の石, opponent: 相手の石
+    8方向それぞれについて、自分の石から相手の石が連続する範囲をシフトで伸ばしていき(最大6個)、
+    その1つ先の空きマスを設置可能場所とする。マスごとの判定を64回行うより大幅に速い。
+    呼び出し側は Long.numberOfTrailingZeros と mask &= mask - 1 で1手ずつ取り出す。
+    */
+    public static long getLegalMoves(long player, long opponent) {
+        long inner = opponent & INNER_COLS; // 横・斜め方向は左右端の相手の石を挟めない
+        long moves = getLineMoves(player, inner, 1)
+                | getLineMoves(player, opponent, 8)
+                | getLineMoves(player, inner, 7)
+                | getLineMoves(player, inner, 9);
+        return moves & ~(player | opponent);
+    }
+
+    /*
+    1つの軸(シフト量shiftの正・負の2方向)について、相手の石の列の先にある(空きとは限らない)マスを求めるメソッド
+    相手の石が2つ続くマス(pre)を先に求めておき、2マスずつ伸ばすことで、最大6個の列を1マスずつの5回ではなく
+    1マスずつ2回・2マスずつ2回の計4回のシフトで求める。
+    */
+    private static long getLineMoves(long player, long opponent, int shift) {
+        int shift2 = shift + shift;
+        long forward = opponent & (player << shift);
+        long backward = opponent & (player >>> shift);
+        forward |= opponent & (forward << shift);
+        backward |= opponent & (backward >>> shift);
+        long preForward = opponent & (opponent << shift);
+        long preBackward = preForward >>> shift;
+        forward |= preForward & (forward << shift2);
+        backward |= preBackward & (backward >>> shift2);
+        forward |= preForward & (forward << shift2);
+        backward |= preBackward & (backward >>> shift2);
+        return (forward << shift) | (backward >>> shift);
+    }
+
+    /*
+    マスsqに石を置いたときに裏返る石の集合を返すメソッド
+    player: 手番側の石, opponent: 相手の石
+    8方向それぞれについて相手の石が連続し、その先に自分の石があれば裏返る。
+    (シフト量 正: 左シフト, 負: 符号なし右シフト。マスクは左右端での折り返し防止)
+    置けない場所の場合は0を返す。
+    */
+    public static long getFlips(long player, long opponent, int sq) {
+        long move = 1L << sq;
+        return getLineFlips(player, opponent, move, -9, NOT_COL7)
+                | getLineFlips(player, opponent, move, -8, -1L)
+                | getLineFlips(player, opponent, move, -7, NOT_COL0)
+                | getLineFlips(player, opponent, move, -1, NOT_COL7)
+                | getLineFlips(player, opponent, move, 1, NOT_COL0)
+                | getLineFlips(player, opponent, move, 7, NOT_COL7)
+                | getLineFlips(player, opponent, move, 8, -1L)
+                | getLineFlips(player, opponent, move, 9, NOT_COL0);
+    }
+
+    // 1方向について裏返る石を求めるメソッド
+    private static long getLineFlips(long player, long opponent, long move, int shift, long mask) {
+        long line = 0L;
+        long cur = shift(move, shift) & mask;
+        while ((cur & opponent) != 0) {
+            line |= cur;
+            cur = shift(cur, shift) & mask;
+        }
+        // 相手の石の列の先が自分の石であれば挟める
+        return ((cur & player) != 0) ? line : 0L;
+    }
+
+    // 石の集合に8方向で隣接するマスの集合を返すメソッド
+    public static long neighbors(long bits) {
+        long horizontal = ((bits << 1) & NOT_COL0) | ((bits >>> 1) & NOT_COL7) | bits;
+        return (horizontal | (horizontal << 8) | (horizontal >>> 8)) & ~bits;
+    }
+
+    /*
+    盤面の対称変換(回転・反転)の番号symmetry(0 ～ 7)
+    ビット0: 左右反転, ビット1: 上下反転, ビット2: 主対角線での反転 をこの順に行う。0は変換しない。
+    */
+    public static final int SYMMETRIES = 8;
+
+    // 石の集合bitsに対称変換symmetryを行うメソッド
+    public static long transform(long bits, int symmetry) {
+        if ((symmetry & 1) != 0) {
+            bits = mirror(bits);
+        }
+        if ((symmetry & 2) != 0) {
+            bits = flipVertical(bits);
+        }
+        if ((symmetry & 4) != 0) {
+            bits = transpose(bits);
+        }
+        return bits;
+    }
+
+    // マスsqが対称変換symmetryで移るマスを返すメソッド
+    public static int transformSquare(int sq, int symmetry) {
+        int x = sq / SIZE;
+        int y = sq % SIZE;
+        if ((symmetry & 1) != 0) {
+            y = SIZE - 1 - y;
+        }
+        if ((symmetry & 2) != 0) {
+            x = SIZE - 1 - x;
+        }
+        if ((symmetry & 4) != 0) {
+            int t = x;
+            x = y;
+            y = t;
+        }
+        return x * SIZE + y;
+    }
+
+    // 対称変換symmetryで移ったマスsqを元のマスに戻すメソッド
+    public static int inverseTransformSquare(int sq, int symmetry) {
+        int x = sq / SIZE;
+        int y = sq % SIZE;
+        if ((symmetry & 4) != 0) {
+            int t = x;
+            x = y;
+            y = t;
+        }
+        if ((symmetry & 2) != 0) {
+            x = SIZE - 1 - x;
+        }
+        if ((symmetry & 1) != 0) {
+            y = SIZE - 1 - y;
+        }
+        return x * SIZE + y;
+    }
+
+    // 盤面を主対角線で反転する(マス(x, y)を(y, x)に移す)
+    public static long transpose(long bits) {
+        long t = 0x0f0f0f0f00000000L & (bits ^ (bits << 28));
+        bits ^= t ^ (t >>> 28);
+        t = 0x3333000033330000L & (bits ^ (bits << 14));
+        bits ^= t ^ (t >>> 14);
+        t = 0x5500550055005500L & (bits ^ (bits << 7));
+        bits ^= t ^ (t >>> 7);
+        return bits;
+    }
+
+    // 盤面を左右に反転する(マス(x, y)を(x, 7 - y)に移す)
+    public static long mirror(long bits) {
+        bits = ((bits >>> 1) & 0x5555555555555555L) | ((bits & 0x5555555555555555L) << 1);
+        bits = ((bits >>> 2) & 0x3333333333333333L) | ((bits & 0x3333333333333333L) << 2);
+        return ((bits >>> 4) & 0x0f0f0f0f0f0f0f0fL) | ((bits & 0x0f0f0f0f0f0f0f0fL) << 4);
+    }
+
+    // 盤面を上下に反転する(マス(x, y)を(7 - x, y)に移す)
+    public static long flipVertical(long bits) {
+        return Long.reverseBytes(bits);
+    }
+
+    // シフト量の符号に応じて左右にシフトするメソッド
+    private static long shift(long bits, int shift) {
+        return (shift > 0) ? (bits << shift) : (bits >>> -shift);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof BitBoard)) {
+            return false;
+        }
+        BitBoard other = (BitBoard) obj;
+        return black == other.black && white == other.white;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(black * 31 + white);
+    }
+}
@@ -0,0 +1,208 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BitBoardDriver {
+    private static final int SIZE = 8;
+    private static final int GAMES = 2000; // 比較テストで打つランダム対局数
+    private static final int BENCH_GAMES = 20000; // 速度比較で打つランダム対局数
+    private static final long INITIAL_HASH_BLACK = 0x7cef1a15043ade3bL; // 初期配置・黒番のハッシュ値(実行ごとに不変)
+
+    public static void main(String[] args) {
+        System.out.println("BitBoardクラスのテスト(BitBoardDriver.java)");
+
+        // 1. 変換テスト
+        System.out.println("\n1. Integer[][]との相互変換テスト");
+        Integer[][] board = new Integer[SIZE][SIZE];
+        Othello.initBoard(board);
+        BitBoard bitBoard = BitBoard.fromBoard(board);
+        System.out.println("   初期配置の一致: " + (bitBoard.equals(new BitBoard()) ? "成功" : "失敗"));
+        System.out.println("   往復変換の一致: " + (sameBoard(board, bitBoard.toBoard()) ? "成功" : "失敗"));
+
+        // 2. Zobristハッシュの再現性テスト
+        System.out.println("\n2. Zobristハッシュの再現性テスト");
+        boolean stable = Othello.getHash(board, "Black") == INITIAL_HASH_BLACK;
+        boolean sideAware = Othello.getHash(board, "Black") != Othello.getHash(board, "White");
+        System.out.println("   初期配置のハッシュ値が固定値と一致: " + (stable ? "成功" : "失敗"));
+        System.out.println("   手番によってハッシュ値が異なる: " + (sideAware ? "成功" : "失敗"));
+
+        // 3. ルール処理の比較テスト
+        System.out.println("\n3. Othelloクラスとの結果比較テスト(ランダム対局 " + GAMES + " 局)");
+        int mismatch = compareWithOthello(new Random(1));
+        System.out.println("   不一致数: " + mismatch + (mismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // 4. 速度比較
+        System.out.println("\n4. 速度比較(ランダム対局 " + BENCH_GAMES + " 局)");
+        playArrayGames(new Random(3)); // JITのウォームアップ
+        playBitBoardGames(new Random(3));
+        long start = System.nanoTime();
+        long arrayPositions = playArrayGames(new Random(2));
+        double arrayRate = arrayPositions / ((System.nanoTime() - start) / 1e9);
+        start = System.nanoTime();
+        long bitPositions = playBitBoardGames(new Random(2));
+        double bitRate = bitPositions / ((System.nanoTime() - start) / 1e9);
+        System.out.printf("   Integer[][]: %.0f 局面/秒%n", arrayRate);
+        System.out.printf("   BitBoard   : %.0f 局面/秒 (%.1f 倍)%n", bitRate, bitRate / arrayRate);
+
+        System.out.println("\nBitBoardクラスのテストを終了します。");
+    }
+
+    // 両方の表現で同じランダム対局を進め、各局面で結果を比較する
+    private static int compareWithOthello(Random random) {
+        int mismatch = 0;
+        for (int game = 0; game < GAMES; game++) {
+            Integer[][] board = new Integer[SIZE][SIZE];
+            initBoardQuietly(board);
+            BitBoard bitBoard = new BitBoard();
+            String turn = "Black";
+
+            while (true) {
+                int color = Othello.getStoneColor(turn);
+                if (Othello.hasValidMove(board, turn) != bitBoard.hasValidMove(color)) {
+                    mismatch++;
+                }
+                long mask = bitBoard.getValidMoves(color);
+                for (int x = 0; x < SIZE; x++) {
+                    for (int y = 0; y < SIZE; y++) {
+                        boolean valid = Othello.isValidMove(board, x, y, turn);
+                        if (valid != bitBoard.isValidMove(x, y, color)
+                                || valid != ((mask & BitBoard.square(x, y)) != 0)) {
+                            mismatch++;
+                        }
+                    }
+                }
+
+                List<int[]> moves = Othello.getValidMovesArray(board, turn);
+                if (moves.isEmpty()) {
+                    turn = Othello.opponentTurn(turn);
+                    if (!Othello.hasValidMove(board, turn)) {
+                        break; // 両者パス
+                    }
+                    continue;
+                }
+                int[] move = moves.get(random.nextInt(moves.size()));
+                Othello.makeMove(board, move[0], move[1], turn);
+                // 打つ→取り消す→打ち直すで元の盤面・ハッシュ値に戻ることも確認する
+                BitBoard before = bitBoard.copy();
+                int sq = move[0] * SIZE + move[1];
+                long flips = bitBoard.makeMove(move[0], move[1], color);
+                bitBoard.undoMove(sq, flips, color);
+                if (!bitBoard.equals(before) || bitBoard.getHash(color) != before.getHash(color)) {
+                    mismatch++;
+                }
+                bitBoard.makeMove(sq, color);
+                if (!sameBoard(board, bitBoard.toBoard())) {
+                    mismatch++;
+                }
+                // 差分更新したハッシュ値が盤面から計算し直した値と一致するか
+                String next = Othello.opponentTurn(turn);
+                if (bitBoard.getHash(Othello.getStoneColor(next)) != Othello.getHash(board, next)) {
+                    mismatch++;
+                }
+                // 差分更新した行パターンが盤面から計算し直した値と一致するか
+                if (!sameRowPatterns(bitBoard, board) || !sameRowPatterns(before, before.toBoard())) {
+                    mismatch++;
+                }
+                turn = Othello.opponentTurn(turn);
+            }
+
+            if (!Othello.judgeWinner(board).equals(bitBoard.judgeWinner())
+                    || Othello.numberOfStone(board, BitBoard.BLACK) != bitBoard.numberOfStone(BitBoard.BLACK)
+                    || Othello.numberOfStone(board, BitBoard.WHITE) != bitBoard.numberOfStone(BitBoard.WHITE)) {
+                mismatch++;
+            }
+        }
+        return mismatch;
+    }
+
+    // Integer[][]で全マスを走査しながらランダム対局を行い、生成した局面数を返す
+    private static long playArrayGames(Random random) {
+        long positions = 0;
+        for (int game = 0; game < BENCH_GAMES; game++) {
+            Integer[][] board = new Integer[SIZE][SIZE];
+            initBoardQuietly(board);
+            String turn = "Black";
+            int passes = 0;
+            while (passes < 2) {
+                List<int[]> moves = new ArrayList<>();
+                for (int x = 0; x < SIZE; x++) {
+                    for (int y = 0; y < SIZE; y++) {
+                        if (Othello.isValidMove(board, x, y, turn)) {
+                            moves.add(new int[] { x, y });
+                        }
+                    }
+                }
+                if (moves.isEmpty()) {
+                    passes++;
+                } else {
+                    passes = 0;
+                    int[] move = moves.get(random.nextInt(moves.size()));
+                    Othello.makeMove(board, move[0], move[1], turn);
+                    positions++;
+                }
+                turn = Othello.opponentTurn(turn);
+            }
+        }
+        return positions;
+    }
+
+    // BitBoardでランダム対局を行い、生成した局面数を返す
+    private static long playBitBoardGames(Random random) {
+        long positions = 0;
+        int[] moves = new int[SIZE * SIZE];
+        for (int game = 0; game < BENCH_GAMES; game++) {
+            BitBoard board = new BitBoard();
+            int color = BitBoard.BLACK;
+            int passes = 0;
+            while (passes < 2) {
+                // 合法手をマスクで一度に求め、ビット走査で取り出す
+                long mask = board.getValidMoves(color);
+                int count = 0;
+                for (; mask != 0; mask &= mask - 1) {
+                    moves[count++] = Long.numberOfTrailingZeros(mask);
+                }
+                if (count == 0) {
+                    passes++;
+                } else {
+                    passes = 0;
+                    int move = moves[random.nextInt(count)];
+                    board.makeMove(move / SIZE, move % SIZE, color);
+                    positions++;
+                }
+                color = BitBoard.opponentColor(color);
+            }
+        }
+        return positions;
+    }
+
+    // initBoardのログ出力を抑えて盤面を初期化する
+    private static void initBoardQuietly(Integer[][] board) {
+        BitBoard initial = new BitBoard();
+        initial.copyTo(board);
+    }
+
+    // 各行の石パターン(3進数)を盤面から計算し直して比較する
+    private static boolean sameRowPatterns(BitBoard bitBoard, Integer[][] board) {
+        for (int x = 0; x < SIZE; x++) {
+            int pattern = 0;
+            for (int y = 0; y < SIZE; y++) {
+                pattern = pattern * 3 + board[x][y];
+            }
+            if (bitBoard.getRowPattern(x) != pattern) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameBoard(Integer[][] a, Integer[][] b) {
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                if (!a[x][y].equals(b[x][y])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*
+定石ファイル(OpeningBook)を作成するツール
+局面ごとに全ての合法手をCPU.analyzeで固定深さまで探索し、各手のスコアを定石として書き出す。
+-Dothello.weights=重みファイル を指定すると、探索にパターン評価を使う。
+
+1. 自己対戦(selfplay)
+   初期局面から、各局面で最善のスコアからmargin以内の手だけを選んで、plies手目まで全ての変化をたどる。
+   marginを大きくすると定石が広く(ファイルが大きく)なる。
+2. 棋譜の取り込み(import)
+   棋譜ファイルの各対局をplies手目までたどり、出現した局面を定石に入れる。
+   棋譜は1行1局で "f5d6c3d3c4..." のように手を並べたもの(英字が列a-h, 数字が行1-8)。#で始まる行は無視する。
+
+使い方:
+    java BookBuilder selfplay 定石ファイル 手数 探索深さ [スコアの幅] [最大局面数]
+    java BookBuilder import 定石ファイル 棋譜ファイル 手数 探索深さ
+*/
+public class BookBuilder {
+    private static final int DEFAULT_MARGIN = 2; // 自己対戦でたどる手の、最善のスコアからの差
+    private static final int DEFAULT_MAX_POSITIONS = 100_000; // 自己対戦で探索する局面数の上限
+    private static final long NO_TIME_LIMIT = 3_600_000L;
+    private static final int POSITIONS_PER_REPORT = 1000; // 進み具合を表示する間隔(局面数)
+
+    private final CPU black; // 黒番の局面を探索するCPU
+    private final CPU white; // 白番の局面を探索するCPU
+    private final List<long[]> entries = new ArrayList<>(); // {局面のキー, 手, スコア}
+    private final Set<Long> analyzed = new HashSet<>(); // 探索し終えた局面のキー
+    private final PrintStream console; // CPUのログを止めている間の出力先
+    private final long startTime = System.nanoTime();
+
+    private BookBuilder(int searchDepth, PrintStream console) throws IOException {
+        this.console = console;
+        this.black = createSearcher("Black", searchDepth);
+        this.white = createSearcher("White", searchDepth);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 4 && args[0].equals("selfplay")) {
+            int margin = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_MARGIN;
+            int maxPositions = (args.length > 5) ? Integer.parseInt(args[5]) : DEFAULT_MAX_POSITIONS;
+            run(args[1], Integer.parseInt(args[3]), builder -> builder.selfPlay(Integer.parseInt(args[2]), margin,
+                    maxPositions));
+        } else if (args.length >= 5 && args[0].equals("import")) {
+            run(args[1], Integer.parseInt(args[4]), builder -> builder.importGames(args[2], Integer.parseInt(args[3])));
+        } else {
+            System.err.println("使い方: java BookBuilder selfplay 定石ファイル 手数 探索深さ [スコアの幅] [最大局面数]");
+            System.err.println("        java BookBuilder import 定石ファイル 棋譜ファイル 手数 探索深さ");
+            System.exit(1);
+        }
+    }
+
+    private interface Task {
+        void run(BookBuilder builder) throws IOException;
+    }
+
+    // CPUのログを止めて定石を作成し、定石ファイルに書き出すメソッド
+    private static void run(String bookPath, int searchDepth, Task task) throws IOException {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // CPUのログを出さない
+        BookBuilder builder;
+        try {
+            builder = new BookBuilder(searchDepth, console);
+            task.run(builder);
+        } finally {
+            System.setOut(console);
+        }
+        OpeningBook.write(bookPath, builder.entries);
+        System.out.printf("%d局面 %d手を %s に書き出しました (%.0f秒)%n", builder.analyzed.size(),
+                builder.entries.size(), bookPath, (System.nanoTime() - builder.startTime) / 1e9);
+    }
+
+    // 定石の探索用のCPU(固定深さ、序盤なので完全読みは行わない)
+    private static CPU createSearcher(String turn, int searchDepth) throws IOException {
+        CPU cpu = new CPU(turn, "強い");
+        cpu.setTimeLimit(NO_TIME_LIMIT);
+        cpu.setMaxDepth(searchDepth);
+        cpu.setThreads(Runtime.getRuntime().availableProcessors());
+        String weights = System.getProperty("othello.weights");
+        if (weights != null) {
+            cpu.setPatternEvaluator(PatternEvaluator.load(weights));
+            cpu.setProbCut(null); // 組み込みのProbCutのパラメータは各マスの重みなどによる評価関数用
+        }
+        return cpu;
+    }
+
+    // 初期局面からplies手目まで、最善のスコアからmargin以内の手をたどって定石を作るメソッド
+    private void selfPlay(int plies, int margin, int maxPositions) {
+        Deque<BitBoard> queue = new ArrayDeque<>(); // 幅優先でたどる(局面数の上限で打ち切っても浅い手がそろう)
+        Deque<Integer> colors = new ArrayDeque<>();
+        queue.add(new BitBoard());
+        colors.add(BitBoard.BLACK);
+        while (!queue.isEmpty() && analyzed.size() < maxPositions) {
+            BitBoard board = queue.poll();
+            int color = colors.poll();
+            if (board.getValidMoves(color) == 0) {
+                color = BitBoard.opponentColor(color); // パス
+            }
+            List<MoveAnalysis> moves = analyzePosition(board, color);
+            if (moves.isEmpty() || 60 - board.countEmpty() + 1 >= plies) {
+                continue;
+            }
+            int best = moves.get(0).getScore(); // スコアの高い順に並んでいる
+            for (MoveAnalysis move : moves) {
+                if (move.getScore() < best - margin) {
+                    break;
+                }
+                BitBoard next = board.copy();
+                next.makeMove(move.getMove(), color);
+                queue.add(next);
+                colors.add(BitBoard.opponentColor(color));
+            }
+        }
+    }
+
+    // 棋譜ファイルの各対局をplies手目までたどって定石を作るメソッド
+    private void importGames(String gamesPath, int plies) throws IOException {
+        int games = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(gamesPath))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                BitBoard board = new BitBoard();
+                int color = BitBoard.BLACK;
+                for (int i = 0; i + 1 < line.length() && i / 2 < plies; i += 2) {
+                    if (board.getValidMoves(color) == 0) {
+                        color = BitBoard.opponentColor(color); // パス
+                    }
+                    int move = parseMove(line.charAt(i), line.charAt(i + 1));
+                    if (move < 0 || (board.getValidMoves(color) & (1L << move)) == 0) {
+                        console.println(lineNumber + "行目: 不正な手 " + line.substring(i, i + 2) + " (以降を無視します)");
+                        break;
+                    }
+                    analyzePosition(board, color);
+                    board.makeMove(move, color);
+                    color = BitBoard.opponentColor(color);
+                }
+                games++;
+            }
+        }
+        console.println(games + "局を読み込みました");
+    }
+
+    // "f5"のような手をビット番号に変換するメソッド(不正なら-1)
+    static int parseMove(char column, char row) {
+        int y = Character.toLowerCase(column) - 'a';
+        int x = row - '1';
+        if (x < 0 || x >= BitBoard.SIZE || y < 0 || y >= BitBoard.SIZE) {
+            return -1;
+        }
+        return x * BitBoard.SIZE + y;
+    }
+
+    // 局面の全ての合法手を探索して定石に加え、探索結果を返すメソッド(探索済みの局面なら空)
+    private List<MoveAnalysis> analyzePosition(BitBoard board, int color) {
+        if (!analyzed.add(OpeningBook.keyOf(board, color))) {
+            return new ArrayList<>();
+        }
+        String turn = (color == BitBoard.BLACK) ? "Black" : "White";
+        List<MoveAnalysis> moves = ((color == BitBoard.BLACK) ? black : white).analyze(board.toBoard(), turn);
+        long key = OpeningBook.keyOf(board, color);
+        for (MoveAnalysis move : moves) {
+            entries.add(new long[] { key, OpeningBook.canonicalSquare(board, color, move.getMove()), move.getScore() });
+        }
+        if (analyzed.size() % POSITIONS_PER_REPORT == 0) {
+            console.printf("%d局面 (%.0f秒)%n", analyzed.size(), (System.nanoTime() - startTime) / 1e9);
+        }
+        return moves;
+    }
+}
@@ -1,18 +1,85 @@
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CPU {
     private String turn; // (Black(先手) or White(後手))
-    private String level; // (弱い or 普通 or 強い)
-    private int depth; // 探索の深さ. 強さによって決定
-    private int threshold; // 完全探索に移行する空きマスの閾値
+    private String level; // (弱い or 普通 or 強い or モンテカルロ)
+    private long timeLimit; // 1手あたりの思考時間の目安(ミリ秒). 強さによって決定
+    private int threshold; // 完全読み(石差まで求める)に移行する空きマスの閾値
+    private int wldThreshold; // 必勝読み(勝ち・負け・引き分けのみ求める)に移行する空きマスの閾値
+    private final TranspositionTable transpositionTable; // 置換表(1局の間、手番をまたいで保持する)
+
+    // 探索中の状態
+    private long startTime; // 探索開始時刻(ナノ秒)
+    private long deadline; // 探索を打ち切る時刻(ナノ秒)
+    private long nodes; // 探索したノード数(全スレッドの合計)
+    private boolean canAbort; // 現在の探索を時間切れで打ち切ってよいか
+    private boolean aborted; // 時間切れで探索を打ち切ったか
+    private final AtomicLong sharedNodes = new AtomicLong(); // 1手分の探索で全ワーカーが探索したノード数(ワーカーが一定間隔で足す)
+    private volatile long sharedNodeLimit = Long.MAX_VALUE; // sharedNodesの上限(超えたら探索を打ち切る)
+    private volatile boolean stopRequested; // いずれかのスレッドが探索の打ち切りを要求したか(深さごとにリセット)
+    private volatile boolean cancelRequested; // 外部から探索の中断が要求されたか(getCPUOperationごとにリセット)
+    private volatile boolean closed; // shutdownが呼ばれたか(以降の探索はすぐに中断する)
+    private volatile Thread searchThread; // getCPUOperationを実行中のスレッド(割り込みの確認用)
+    private int maxDepth = MAX_DEPTH; // 反復深化で探索する最大の深さ
+    private int lastScore; // 直前に選んだ手のスコア
+    private SearchStats lastStats; // 直前の探索の統計情報
+    private boolean statsLogging; // 1手ごとに統計情報を1行のログとして出力するか
+    private boolean moveOrdering = true; // 手の並べ替えを行うか(falseなら左上から順に探索)
+    private boolean principalVariationSearch = true; // PVS(2番目以降の手を幅0の探索窓で調べる)を行うか
+    private int aspirationWindow = ASPIRATION_WINDOW; // 反復深化の探索窓の幅(前の深さのスコア±この値, 0なら使わない)
+    private PatternEvaluator patternEvaluator; // パターン評価関数(nullなら各マスの重みによる評価)
+    private NeuralEvaluator neuralEvaluator; // ニューラルネットワークの評価関数(設定されていればパターン評価より優先する)
+    private boolean evaluationFeatures = true; // 各マスの重みに着手可能数・開放度・確定石を加えて評価するか
+    private ProbCut probCut = ProbCut.DEFAULT; // Multi-ProbCutのパラメータ(nullなら枝刈りしない)
+    private OpeningBook openingBook; // 定石(nullなら使わない)
+    private int bookDepth; // 定石を使う手数(初期局面から打たれた石の数がこれ未満の間)
+    private int bookRandomness; // 定石の手を選ぶときに許すスコアの差(0なら常に最善手)
+    private final Random bookRandom = new Random(); // 定石の手を選ぶ乱数
+    private final MonteCarloSearch monteCarlo; // モンテカルロ木探索(強さがLEVEL_MCTSのときのみ)
+    private long maxPlayouts = Long.MAX_VALUE; // モンテカルロ木探索で1手に行うプレイアウトの上限
+    private Difficulty difficulty; // ノード予算で決める強さ(nullなら制限時間で決める)
+    private final Random choiceRandom = new Random(); // 評価のノイズの種と、温度によって手を選ぶ乱数
+    private long noiseSeed = choiceRandom.nextLong(); // 評価のノイズの種(同じ局面には同じノイズを足す)
+
+    // 並列探索用
+    private int threads = 1; // 探索に使うスレッド数(1なら並列化しない)
+    private ForkJoinPool pool; // ルートの手を並列に探索するスレッドプール(必要になった時点で生成)
+    private final SearchWorker mainWorker; // 呼び出し元のスレッドで使うワーカー
+    private final List<SearchWorker> workers = new CopyOnWriteArrayList<>(); // 生成した全てのワーカー
+    private final ConcurrentLinkedQueue<SearchWorker> idleWorkers = new ConcurrentLinkedQueue<>(); // 空いているワーカー
+    private final Map<Long, PonderResult> ponderResults = new HashMap<>(); // 先読みで探索し終えた局面の結果(ハッシュ値がキー)
+    private boolean pondering; // 先読み中か(探索結果をログに出力しない)
+    private long ponderNodes; // 直前の先読みで探索したノード数の合計
 
     // 定数
     private static final int N_LINE = 8; // 行数
     private static final int LINE_PATTERN = 6561; // 各行の可能なパターン数（3^8)
-    private static final int WIN_SCORE = 100000; // 勝ちの基本スコア
-    private static final int DRAW_SCORE = 0;     // 引き分けのスコア
+    static final int WIN_SCORE = 100000; // 勝ちの基本スコア
+    static final int DRAW_SCORE = 0;     // 引き分けのスコア
+    public static final int DEFAULT_TT_SIZE_MB = 16; // 置換表のデフォルトサイズ(MB)
+    public static final String LEVEL_MCTS = "モンテカルロ"; // モンテカルロ木探索で手を決める強さ
+    private static final int MCTS_POOL_NODES = 1 << 20; // モンテカルロ木探索のノードプールの大きさ
+    private static final int MAX_DEPTH = 60; // 反復深化の最大深さ
+    private static final int WLD_FIRST_EMPTIES = 16; // 完全読みの前に必勝読みを行う最小の空きマス数
+    private static final int ENDGAME_BUDGET_PERCENT = 50; // ノード予算のうち必勝読み・完全読みに使う割合(残りは通常探索に使う)
+    private static final int ASPIRATION_WINDOW = 16; // 反復深化の探索窓(aspiration window)の幅のデフォルト値
+    static final long ENDGAME_KEY = 0x5bd1e9955bd1e995L; // 完全探索の結果を通常探索と区別するためのキー
 
-    private static final int[][] CELL_SCORE = new int[N_LINE][LINE_PATTERN]; // 各行の各石パターンのスコアを保存する配列
+    // 評価の特徴の重み(石1つ・1マスあたり)
+    private static final int MOBILITY_WEIGHT = 4; // 着手可能数
+    private static final int POTENTIAL_MOBILITY_WEIGHT = 1; // 潜在的な着手可能数
+    private static final int FRONTIER_WEIGHT = 2; // 開放度
+    private static final int STABLE_WEIGHT = 8; // 確定石
 
     // 評価テーブル(各マスの重み)
     private static final int[] CELL_WEIGHT = {
@@ -29,84 +96,356 @@ public class CPU {
     // コンストラクタ
     // インスタンス生成時に先手後手と強さを指定する
     public CPU(String turn, String level) {
+        this(turn, level, DEFAULT_TT_SIZE_MB);
+    }
+
+    // 置換表のサイズ(MB)も指定するコンストラクタ
+    public CPU(String turn, String level, int ttSizeMB) {
         this.turn = turn;
         this.level = level;
-        depthInit(); // 探索深さの初期化
+        this.transpositionTable = new TranspositionTable(ttSizeMB);
+        this.mainWorker = new SearchWorker(this, transpositionTable);
+        workers.add(mainWorker);
+        this.monteCarlo = LEVEL_MCTS.equals(level) ? new MonteCarloSearch(this, MCTS_POOL_NODES) : null;
+        timeLimitInit(); // 思考時間の初期化
         thresholdInit();
-        evaluateInit(); // スコアの事前計算
         System.out.println("CPU: turn = " + turn + ", level = " + level + 
-            ", depth = " + depth + ", threshold = " + threshold); // ログ出力
+            ", timeLimit = " + timeLimit + "ms, threshold = " + threshold + ", wldThreshold = " + wldThreshold
+            + ", tt = " + ttSizeMB + "MB"); // ログ出力
     }
 
-    // depthの初期化
-    private void depthInit() {
+    // timeLimitの初期化
+    private void timeLimitInit() {
         switch (level) {
             case "弱い":
-                this.depth = 1;
+                this.timeLimit = 200;
                 break;
             case "普通":
-                this.depth = 4;
+                this.timeLimit = 1000;
                 break;
             case "強い":
-                this.depth = 6;
+                this.timeLimit = 3000;
+                break;
+            case LEVEL_MCTS:
+                this.timeLimit = 1000;
                 break;
             default:
-                this.depth = 4;
+                this.timeLimit = 1000;
                 break;
         }
     }
 
-    // thresholdの初期化
+    // 1手あたりの思考時間(ミリ秒)を変更するメソッド
+    public void setTimeLimit(long timeLimit) {
+        this.timeLimit = timeLimit;
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    // モンテカルロ木探索で1手に行うプレイアウトの上限を変更するメソッド(制限時間とどちらか早い方で終える)
+    public void setMaxPlayouts(long maxPlayouts) {
+        this.maxPlayouts = Math.max(1, maxPlayouts);
+    }
+
+    // 反復深化で探索する最大の深さを変更するメソッド(固定深さでの比較用)
+    public void setMaxDepth(int maxDepth) {
+        this.maxDepth = Math.max(1, Math.min(maxDepth, MAX_DEPTH));
+    }
+
+    // 手の並べ替えの有無を変更するメソッド(探索ノード数の比較用)
+    public void setMoveOrdering(boolean moveOrdering) {
+        this.moveOrdering = moveOrdering;
+    }
+
+    // PVSの有無を変更するメソッド(探索ノード数の比較用)
+    public void setPrincipalVariationSearch(boolean principalVariationSearch) {
+        this.principalVariationSearch = principalVariationSearch;
+    }
+
+    /*
+    反復深化の探索窓(aspiration window)の幅を変更するメソッド(0なら使わない)
+    深さ2以降は前の深さのスコア±windowの探索窓で探索し、外れたら外れた側の幅を4倍にして探索し直す。
+    */
+    public void setAspirationWindow(int window) {
+        this.aspirationWindow = Math.max(0, window);
+    }
+
+    /*
+    探索に使うスレッド数を変更するメソッド
+    2以上の場合、ルート局面の最初の手を探索した後、残りの手を複数のスレッドで同時に探索する。
+    置換表は全スレッドで共有し、選ばれる手とスコアは1スレッドの場合と同じになる。
+    */
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /*
+    実行中の探索を中断させるメソッド(別のスレッドから呼ぶ)
+    探索中の各スレッドは一定ノード数ごとに中断の要求を確認し、getCPUOperationはそれまでに見つかった最善手を返す。
+    (完了した深さがあればその結果、なければ途中までに探索し終えた手の中での最善手)
+    getCPUOperationを実行しているスレッドへの割り込み(Thread.interrupt)も同じように扱う。
+    */
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    // 中断が要求されているかを返すメソッド
+    public boolean isCancelled() {
+        return cancelRequested;
+    }
+
+    // 探索を中断し、並列探索用のスレッドを停止するメソッド(CPUを使い終わったときに呼ぶ)
+    // 以降のgetCPUOperationは探索を行わずにすぐ戻る
+    public void shutdown() {
+        closed = true;
+        cancelRequested = true; // 探索中であれば打ち切る
+        synchronized (this) {
+            if (pool != null) {
+                pool.shutdownNow();
+                pool = null;
+            }
+        }
+        if (monteCarlo != null) {
+            monteCarlo.shutdown();
+        }
+    }
+
+    // ワーカーが探索したノード数countを全ワーカーの合計に足し、上限を超えたかを返すメソッド(ワーカーから一定間隔で呼ばれる)
+    boolean addSharedNodes(long count) {
+        return sharedNodes.addAndGet(count) > sharedNodeLimit;
+    }
+
+    // 1手分の探索の開始時に全ワーカーのノード数の合計を0に戻し、上限をlimitにするメソッド
+    private void resetSharedNodes(long limit) {
+        sharedNodes.set(0);
+        sharedNodeLimit = limit;
+    }
+
+    // 探索の打ち切りを要求するメソッド(ワーカーから呼ばれる)
+    void requestStop() {
+        stopRequested = true;
+    }
+
+    // 並列探索のスレッドからも、getCPUOperationを実行しているスレッドへの割り込みを確認する
+    boolean isStopRequested() {
+        return isCancelRequested() || stopRequested;
+    }
+
+    // 外部から中断が要求されたか(割り込みを含む)を返すメソッド(モンテカルロ木探索から呼ばれる)
+    boolean isCancelRequested() {
+        if (!cancelRequested) {
+            Thread thread = searchThread;
+            if (thread != null && thread.isInterrupted()) {
+                cancelRequested = true;
+            }
+        }
+        return cancelRequested;
+    }
+
+    // 直前のgetCPUOperationで探索したノード数を返すメソッド
+    public long getNodes() {
+        return nodes;
+    }
+
+    /*
+    直前のgetCPUOperationの探索の統計情報(ノード数, NPS, beta枝狩り, 完了した深さ, 探索時間など)を返すメソッド
+    まだ一度も呼ばれていなければnullを返す。
+    */
+    public SearchStats getLastStats() {
+        return lastStats;
+    }
+
+    /*
+    探索の末端で使う評価関数をパターン評価(PatternEvaluator)に変更するメソッド
+    nullを渡すと各マスの重み(CELL_WEIGHT)による評価に戻す。探索中に呼ばないこと。
+    PatternEvaluatorは変更されないので、同じものを複数のCPUに渡してよい。
+    */
+    public void setPatternEvaluator(PatternEvaluator patternEvaluator) {
+        this.patternEvaluator = patternEvaluator;
+    }
+
+    public PatternEvaluator getPatternEvaluator() {
+        return patternEvaluator;
+    }
+
+    /*
+    探索の末端で使う評価関数をニューラルネットワーク(NeuralEvaluator)に変更するメソッド
+    nullを渡すとパターン評価(設定されていれば)か各マスの重みによる評価に戻す。探索中に呼ばないこと。
+    NeuralEvaluatorは変更されないので、同じものを複数のCPUに渡してよい(差分更新する値は盤面ごとに持つ)。
+    */
+    public void setNeuralEvaluator(NeuralEvaluator neuralEvaluator) {
+        this.neuralEvaluator = neuralEvaluator;
+    }
+
+    public NeuralEvaluator getNeuralEvaluator() {
+        return neuralEvaluator;
+    }
+
+    // 各マスの重みによる評価に、着手可能数・開放度・確定石を加えるかを変更するメソッド(強さ・速度の比較用)
+    public void setEvaluationFeatures(boolean evaluationFeatures) {
+        this.evaluationFeatures = evaluationFeatures;
+    }
+
+    /*
+    Multi-ProbCut(浅い探索の結果から深い探索の結果を予測する枝刈り)のパラメータを変更するメソッド
+    nullなら枝刈りせず、全ての手を指定の深さまで探索する。
+    デフォルトは各マスの重み・着手可能数などによる評価関数に合わせたProbCut.DEFAULT。
+    パターン評価を使う場合は、その重みでProbCutTrainerを実行して求めたパラメータを設定する。
+    */
+    public void setProbCut(ProbCut probCut) {
+        this.probCut = probCut;
+    }
+
+    public ProbCut getProbCut() {
+        return probCut;
+    }
+
+    // 1手ごとに統計情報を「CPU-STATS key=value ...」の1行で出力するかを変更するメソッド
+    public void setStatsLogging(boolean statsLogging) {
+        this.statsLogging = statsLogging;
+    }
+
+    /*
+    ノード予算で強さを決めるプロファイルを設定するメソッド(nullなら強さの名前で決めた制限時間・閾値に戻す)
+    1手の探索は、ノード数がプロファイルの予算を超えた時点で打ち切る(制限時間も引き続き上限として使う)。
+    完全読み・必勝読みの閾値はプロファイルの値にする。スレッド数はsetThreadsで設定した値のままにし、予算は全スレッドで共有する
+    (全ワーカーの合計ノード数で打ち切るので、1手の合計ノード数はスレッド数によらない)。
+    先読み(ponder)は相手が最も打ちそうな1手だけにし、先読みのノード数も予算1つ分までにする。モンテカルロ木探索には使わない。
+    */
+    public void setDifficulty(Difficulty difficulty) {
+        this.difficulty = difficulty;
+        if (difficulty != null) {
+            setThreshold(difficulty.getThreshold(), difficulty.getWldThreshold());
+            System.out.println("CPU: difficulty = " + difficulty); // ログ出力
+        } else {
+            thresholdInit();
+        }
+    }
+
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    // 評価のノイズと、温度によって手を選ぶ乱数の種を設定するメソッド(対局の再現・テスト用)
+    public void setRandomSeed(long seed) {
+        choiceRandom.setSeed(seed);
+        noiseSeed = choiceRandom.nextLong();
+    }
+
+    // 1手あたりのノード数の上限(全ワーカーの合計。プロファイルがなければ制限しない)
+    private long nodeBudget() {
+        Difficulty profile = difficulty;
+        return (profile == null) ? Long.MAX_VALUE : profile.getNodeBudget();
+    }
+
+    // 直前のgetCPUOperationで選んだ手のスコアを返すメソッド
+    public int getLastScore() {
+        return lastScore;
+    }
+
+    // threshold, wldThresholdの初期化
     private void thresholdInit() {
         switch (level) {
             case "弱い":
                 this.threshold = 0;
+                this.wldThreshold = 0;
                 break;
             case "普通":
                 this.threshold = 8;
+                this.wldThreshold = 8;
                 break;
             case "強い":
-                this.threshold = 12;
+                this.threshold = 20;
+                this.wldThreshold = 22;
                 break;
             default:
                 this.threshold = 8;
+                this.wldThreshold = 8;
                 break;
         }
     }
 
-    // スコア事前計算用メソッド
-    private void evaluateInit() {
-        for (int line = 0; line < N_LINE; line++) {
-            // 石の並び方3^8通りのそれぞれについてテーブルを元にスコアを計算
-            for (int patternValue = 0; patternValue < LINE_PATTERN; patternValue++) {
-                int score = 0;
-                int tempPattern = patternValue;
-
-                for (int col = 7; col >= 0; col--) {
-                    int state = tempPattern % 3; // 現在のtempPatternの3進数における最下位桁の値 = 左からcol列目のマスの状態に対応する
-                    int cellIndex = line * 8 + col; // 注目しているマスのインデックス
-                    // 黒を基準として評価
-                    if (state == 1) { // 1:黒(正)
-                        score += CELL_WEIGHT[cellIndex];
-                    } else if (state == 2) { // 2:白(負)
-                        score -= CELL_WEIGHT[cellIndex];
+    // 完全読み・必勝読みに移行する空きマスの閾値を変更するメソッド
+    public void setThreshold(int threshold, int wldThreshold) {
+        this.threshold = threshold;
+        this.wldThreshold = Math.max(threshold, wldThreshold);
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public int getWldThreshold() {
+        return wldThreshold;
+    }
+
+    /*
+    評価用のテーブルを保持するクラス
+    JVMのクラス初期化の仕組みにより、最初にevaluateなどで使われたときに1度だけスレッド安全に計算される。
+    計算後は読み取りのみなので、全てのCPUインスタンス・探索スレッドで同期なしに共有できる。
+    (以前はCPUを生成するたびに計算し直しており、探索中の別のCPUが書き換え途中の値を読むことがあった)
+    */
+    private static final class EvaluationTable {
+        private static final int[][] CELL_SCORE = createCellScore(); // 各行の各石パターンのスコア
+
+        // 各行の石の並び方3^8通りのそれぞれについて、CELL_WEIGHTを元にスコアを計算する
+        private static int[][] createCellScore() {
+            int[][] cellScore = new int[N_LINE][LINE_PATTERN];
+            for (int line = 0; line < N_LINE; line++) {
+                for (int patternValue = 0; patternValue < LINE_PATTERN; patternValue++) {
+                    int score = 0;
+                    int tempPattern = patternValue;
+
+                    for (int col = 7; col >= 0; col--) {
+                        int state = tempPattern % 3; // 現在のtempPatternの3進数における最下位桁の値 = 左からcol列目のマスの状態に対応する
+                        int cellIndex = line * 8 + col; // 注目しているマスのインデックス
+                        // 黒を基準として評価
+                        if (state == 1) { // 1:黒(正)
+                            score += CELL_WEIGHT[cellIndex];
+                        } else if (state == 2) { // 2:白(負)
+                            score -= CELL_WEIGHT[cellIndex];
+                        }
+                        tempPattern /= 3; // 次の桁を処理するために右シフト
                     }
-                    tempPattern /= 3; // 次の桁を処理するために右シフト
+                    cellScore[line][patternValue] = score;
                 }
-                CELL_SCORE[line][patternValue] = score;
             }
+            return cellScore;
         }
     }
 
-    // セルスコアを返すメソッド(デバッグ用)
+    // 行lineの石パターンpattern(3進数)のスコアを返すメソッド
     public static int getCellScore(int line, int pattern) {
-        return CELL_SCORE[line][pattern];
+        return EvaluationTable.CELL_SCORE[line][pattern];
+    }
+
+    // 置換表を返すメソッド(ヒット数などの統計情報の確認用)
+    public TranspositionTable getTranspositionTable() {
+        return transpositionTable;
     }
 
     // 操作情報をクライアントに渡すメソッド
     // クライアントはこれを呼び出し続ければいい
     public int[] getCPUOperation(Integer[][] board) {
-        int[] operationInfo = decideMove(board); // 次の手を決定
+        cancelRequested = closed; // 前の手の中断要求は持ち越さない
+        int[] bookMove = takeBookMove(board); // 定石にある局面なら探索しない
+        if (bookMove != null) {
+            return bookMove;
+        }
+        int[] pondered = takePonderResult(board); // 先読みで探索済みの局面なら探索しない
+        if (pondered != null) {
+            return pondered;
+        }
+        searchThread = Thread.currentThread();
+        transpositionTable.newSearch(); // 置換表の世代を進める(内容は次の手でも再利用する)
+        int[] operationInfo = (monteCarlo != null) ? decideMoveByMonteCarlo(board) : decideMove(board); // 次の手を決定
+        searchThread = null;
 
         if (operationInfo != null) {
             return operationInfo;
@@ -115,80 +454,290 @@ public class CPU {
         }
     }
 
-    // 評価メソッド
-    private int evaluate(Integer[][] board) {
-        try {
-            int score = 0;
-            for (int line = 0; line < N_LINE; line++) {
-                int pattern = 0;
-                for (int col = 0; col < 8; col++) {
-                    int stone = board[line][col]; // 注目するマスの状態
-                    pattern += stone * (int) Math.pow(3, 7 - col); // 各列のマスの状態からパターンを逆算
-                }
-                score += CELL_SCORE[line][pattern]; // 各行の評価されたスコア(黒が正)
-            }
-            return score;
-        } catch (ArrayIndexOutOfBoundsException e) {
-            System.err.println("Error in evaluate: Array index out of bounds. " + e.getMessage());
-            e.printStackTrace();
-            return 0;
+    /*
+    評価メソッド(黒が正)
+    各マスの重みに加えて、次の特徴の黒と白の差を評価する。どれもビット演算で求める。
+        着手可能数: 合法手の数(多いほど良い)
+        潜在的な着手可能数: 相手の石に隣接する空きマスの数(多いほど良い)
+        開放度(フロンティア): 空きマスに隣接する自分の石の数(少ないほど良い)
+        確定石: Stabilityで求めた、この先裏返らない石の数(多いほど良い)
+    */
+    static int evaluate(BitBoard board) {
+        return evaluate(board, BitBoard.getLegalMoves(board.getBlack(), board.getWhite()),
+                BitBoard.getLegalMoves(board.getWhite(), board.getBlack()));
+    }
+
+    // 黒・白の合法手(blackMoves, whiteMoves)が求めてある場合の評価メソッド(evaluate(board)と同じ値)
+    // 探索の末端では終局の判定に使った合法手をそのまま渡し、合法手を求め直さない
+    static int evaluate(BitBoard board, long blackMoves, long whiteMoves) {
+        int mobility = Long.bitCount(blackMoves) - Long.bitCount(whiteMoves);
+        return evaluateWithoutMobility(board) + MOBILITY_WEIGHT * mobility;
+    }
+
+    // 着手可能数以外(各マスの重み・潜在的な着手可能数・開放度・確定石)の評価メソッド(黒が正)
+    private static int evaluateWithoutMobility(BitBoard board) {
+        long black = board.getBlack();
+        long white = board.getWhite();
+        long empty = ~(black | white);
+        long emptyNeighbors = BitBoard.neighbors(empty);
+        long stable = Stability.stableDiscs(black, white);
+        int potentialMobility = Long.bitCount(BitBoard.neighbors(white) & empty)
+                - Long.bitCount(BitBoard.neighbors(black) & empty);
+        int frontier = Long.bitCount(black & emptyNeighbors) - Long.bitCount(white & emptyNeighbors);
+        int stableDiscs = Long.bitCount(stable & black) - Long.bitCount(stable & white);
+        return evaluateCells(board) + POTENTIAL_MOBILITY_WEIGHT * potentialMobility - FRONTIER_WEIGHT * frontier
+                + STABLE_WEIGHT * stableDiscs;
+    }
+
+    // 各マスの重みだけによる評価メソッド(黒が正)
+    // 各行の石パターン(3進数)はBitBoardが差分更新して保持しているので、行ごとにテーブルを1回引くだけでよい
+    static int evaluateCells(BitBoard board) {
+        int[][] cellScore = EvaluationTable.CELL_SCORE;
+        int score = 0;
+        for (int line = 0; line < N_LINE; line++) {
+            score += cellScore[line][board.getRowPattern(line)]; // 各行の評価されたスコア(黒が正)
+        }
+        return score;
+    }
+
+    // 局面の評価メソッド(黒が正)。合法手を使う評価関数の場合だけ、両者の合法手を1回ずつ求めて渡す
+    int evaluateBoard(BitBoard board) {
+        if (neuralEvaluator != null || patternEvaluator != null || !evaluationFeatures) {
+            return evaluateBoard(board, 0, 0); // 合法手を使わない
+        }
+        return evaluateBoard(board, BitBoard.getLegalMoves(board.getBlack(), board.getWhite()),
+                BitBoard.getLegalMoves(board.getWhite(), board.getBlack()));
+    }
+
+    /*
+    探索の末端(深さ0)での評価メソッド(color: 1なら黒, -1なら白の手番側から見た値を返す)
+    各マスの重み・着手可能数などによる評価では、合法手を求める前に着手可能数以外の項を計算し、
+    着手可能数の項が取りうる範囲(合法手は相手の石に隣接する空きマスにしかないので、0 ～ 潜在的な着手可能数)から
+    評価値の下限・上限を求める。それだけで探索窓(alpha, beta)の外になると分かれば、合法手を求めずに下限・上限を返す。
+    探索はfail-hardで、窓の外の値はalpha・betaと同じに扱われるので、探索の結果は評価値を全て求めた場合と変わらない。
+    */
+    int evaluateLeaf(BitBoard board, int color, int alpha, int beta) {
+        if (neuralEvaluator != null || patternEvaluator != null || !evaluationFeatures) {
+            return color * evaluateBoard(board, 0, 0); // 合法手を使わない
+        }
+        long black = board.getBlack();
+        long white = board.getWhite();
+        long empty = ~(black | white);
+        int score = evaluateWithoutMobility(board);
+        Difficulty profile = difficulty;
+        if (profile != null && profile.getEvaluationNoise() > 0) {
+            score += evaluationNoise(board, profile.getEvaluationNoise());
+        }
+        int lower = score - MOBILITY_WEIGHT * Long.bitCount(BitBoard.neighbors(black) & empty); // 白だけが打てる場合
+        int upper = score + MOBILITY_WEIGHT * Long.bitCount(BitBoard.neighbors(white) & empty); // 黒だけが打てる場合
+        if (color < 0) {
+            int negatedLower = -upper;
+            upper = -lower;
+            lower = negatedLower;
+        }
+        if (lower >= beta) {
+            return lower;
+        }
+        if (upper <= alpha) {
+            return upper;
+        }
+        long blackMoves = BitBoard.getLegalMoves(black, white);
+        long whiteMoves = BitBoard.getLegalMoves(white, black);
+        return color * (score + MOBILITY_WEIGHT * (Long.bitCount(blackMoves) - Long.bitCount(whiteMoves)));
+    }
+
+    /*
+    探索の末端での評価メソッド(黒が正)。ニューラルネットワーク・パターン評価が設定されていればそれを使う
+    blackMoves, whiteMoves: 黒・白の合法手(探索で求めたもの。各マスの重み・着手可能数などによる評価で使う)
+    強さのプロファイルに評価のノイズがあれば、局面ごとに決まるノイズを足す
+    */
+    int evaluateBoard(BitBoard board, long blackMoves, long whiteMoves) {
+        int score;
+        NeuralEvaluator network = neuralEvaluator;
+        PatternEvaluator evaluator = patternEvaluator;
+        if (network != null) {
+            score = network.evaluate(board);
+        } else if (evaluator != null) {
+            score = evaluator.evaluate(board);
+        } else {
+            score = evaluationFeatures ? evaluate(board, blackMoves, whiteMoves) : evaluateCells(board);
         }
+        Difficulty profile = difficulty;
+        if (profile != null && profile.getEvaluationNoise() > 0) {
+            score += evaluationNoise(board, profile.getEvaluationNoise());
+        }
+        return score;
+    }
+
+    // 局面ごとに決まる-noise ～ noiseの乱数(同じCPUでは同じ局面に常に同じ値を返すので、置換表の結果と矛盾しない)
+    private int evaluationNoise(BitBoard board, int noise) {
+        long h = (board.getHash(BitBoard.BLACK) ^ noiseSeed) * 0x9e3779b97f4a7c15L;
+        h ^= h >>> 29;
+        return (int) Math.floorMod(h, 2L * noise + 1) - noise;
     }
 
-    // 操作を決定するメソッド
-    private int[] decideMove(Integer[][] board) {
+    /*
+    操作を決定するメソッド
+    反復深化により深さ1, 2, 3...と順に探索し、制限時間(timeLimit)を超えたら
+    最後に完了した深さでの最善手を返す。深さ1の探索は必ず完了させる。
+    空きマスがwldThreshold以下なら必勝読み(勝ち・負け・引き分けのみ)を、threshold以下なら完全読み(石差まで)を行う。
+    空きマスが多い場合は先に速く終わる必勝読みを行い、完全読みが時間内に終わらなくても勝ちか引き分けの手を選べるようにする。
+    どちらも時間内に終わらないか、負けしかない場合は通常探索で手を選ぶ。
+    強さのプロファイル(setDifficulty)があれば、全ワーカーの合計ノード数が予算を超えたときも制限時間と同じように打ち切る。
+    必勝読み・完全読みには予算のENDGAME_BUDGET_PERCENT%までを使い、読み切れなければ残りの予算で通常探索を行う。
+    プロファイルに温度があれば、各深さで全ての手のスコアを求め、最後に完了した深さのスコアから確率的に手を選ぶ。
+    */
+    private int[] decideMove(Integer[][] currentBoard) {
         try {
-            // 合法手のArrayListを作成
-            ArrayList<int[]> possibleMoves = new ArrayList<>();
-            for (int i = 0; i < 8; i++) {
-                for (int j = 0; j < 8; j++) {
-                    if (Othello.isValidMove(board, i, j, turn)) {
-                        possibleMoves.add(new int[] { i, j });
-                    }
-                }
-            }
+            // 探索はビットボード上で行う
+            BitBoard board = BitBoard.fromBoard(currentBoard);
+            int stoneColor = Othello.getStoneColor(turn);
+
+            // 合法手をビットマスクで一度に求める
+            long possibleMoves = board.getValidMoves(stoneColor);
             // 合法手がない場合
-            if (possibleMoves.isEmpty()) {
-                System.out.println("CPU: No valid moves available, passing.");
+            if (possibleMoves == 0) {
+                if (!pondering) {
+                    System.out.println("CPU: No valid moves available, passing.");
+                }
+                nodes = 0;
+                setLastStats(SearchStats.empty(threads));
                 return null; // nullを返すとgetCPUOperationでパス処理される
             }
 
-            int bestScore = Integer.MIN_VALUE + 1; // これまでに見つかった最善のスコアを格納
-            int[] bestMove = possibleMoves.get(0); // 最善手(最初の合法手で初期化)
             int color = "Black".equals(turn) ? 1 : -1; // NegaAlpha探索で用いる手番
+            int bestMove = Long.numberOfTrailingZeros(possibleMoves); // 最善手(最初の合法手で初期化)
+            int bestScore = 0;
+            int completedDepth = 0; // 探索が完了した深さ
+            String searchType = SearchStats.TYPE_NONE; // 手を決めた探索の種類
+            long ttProbes = transpositionTable.getProbes(); // 統計情報用(置換表の値は累計なので差を取る)
+            long ttHits = transpositionTable.getHits();
+
+            // 探索の準備
+            startTime = System.nanoTime();
+            deadline = startTime + timeLimit * 1_000_000L;
+            resetSharedNodes(nodeBudget());
+            for (SearchWorker worker : workers) {
+                worker.prepare(deadline, moveOrdering, principalVariationSearch, probCut);
+            }
 
             int emptySquares = countEmptySquares(board); // 空きマス数
-            boolean usePerfectSearch = (emptySquares <= this.threshold); // 完全探索を行うか否か
-
-            // 各合法手についてスコアを計算
-            for (int[] move : possibleMoves) {
-                // 探索用の仮盤面にコピー
-                Integer[][] tempBoard = new Integer[8][8];
-                for (int i = 0; i < 8; i++) {
-                    tempBoard[i] = board[i].clone();
+            boolean solved = false; // 完全読みが完了したか
+            int temperature = (difficulty != null) ? difficulty.getTemperature() : 0; // 手を選ぶ温度
+            int[] rootMoves = null; // 温度によって手を選ぶ場合のルートの全ての手とスコア
+            int[] rootScores = null;
+            int[] sampledScores = null; // そのうち最後に完了した深さのスコア
+            if (temperature > 0) {
+                rootMoves = new int[Long.bitCount(possibleMoves)];
+                int count = 0;
+                for (long moves = possibleMoves; moves != 0; moves &= moves - 1) {
+                    rootMoves[count++] = Long.numberOfTrailingZeros(moves);
+                }
+                rootScores = new int[count];
+            }
+
+            if (Long.bitCount(possibleMoves) == 1) { // 合法手が1つしかなければ探索しない
+                solved = true;
+            } else if (emptySquares <= this.wldThreshold) {
+                canAbort = true;
+                long budget = nodeBudget();
+                if (budget != Long.MAX_VALUE) { // 読み切れなくても通常探索に予算の残りを使えるようにする
+                    sharedNodeLimit = budget / 100 * ENDGAME_BUDGET_PERCENT;
+                }
+                int[] wldResult = null; // 必勝読みの結果
+                if (emptySquares > this.threshold || emptySquares > WLD_FIRST_EMPTIES) {
+                    // 必勝読み(完全読みより速く終わり、置換表に残った結果は続く完全読みでも使える)
+                    wldResult = searchRoot(board, stoneColor, color, emptySquares, true,
+                            -WIN_SCORE - 1, WIN_SCORE + 1);
+                    if (aborted) {
+                        wldResult = null;
+                    }
+                }
+                if (emptySquares <= this.threshold && !aborted) { // 完全読み
+                    int[] result = searchRoot(board, stoneColor, color, emptySquares, true,
+                            Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1);
+                    if (!aborted) {
+                        bestMove = result[0];
+                        bestScore = result[1];
+                        completedDepth = emptySquares;
+                        searchType = SearchStats.TYPE_EXACT;
+                        solved = true;
+                    }
+                }
+                // 完全読みが終わらなくても、勝ちか引き分けの手が分かっていればその手を選ぶ
+                if (!solved && wldResult != null && wldResult[1] >= DRAW_SCORE) {
+                    bestMove = wldResult[0];
+                    bestScore = wldResult[1];
+                    completedDepth = emptySquares;
+                    searchType = SearchStats.TYPE_WLD;
+                    solved = true;
+                }
+                sharedNodeLimit = budget;
+            }
+
+            // 通常探索(反復深化)
+            long midgameStart = searchedNodes(); // 必勝読み・完全読みで使ったノード数(通常探索は予算の残りを使う)
+            for (int d = 1; !solved && !cancelRequested && d <= Math.min(maxDepth, emptySquares); d++) {
+                canAbort = (d > 1); // 深さ1は時間に関係なく完了させる(中断が要求された場合を除く)
+                int[] result;
+                if (rootScores != null) { // 温度によって手を選ぶ場合は全ての手のスコアを求める
+                    searchAllMoves(board, rootMoves, rootScores, stoneColor, color, d, false);
+                    result = aborted ? new int[] { bestMove, bestScore, -1 } : bestOf(rootMoves, rootScores);
+                } else {
+                    result = searchRootWithAspiration(board, stoneColor, color, d, completedDepth > 0, bestScore);
                 }
-                // 現在選択している合法手で打つ
-                Othello.makeMove(tempBoard, move[0], move[1], turn);
-                int score;
-                if (usePerfectSearch) { // 完全探索
-                    score = -perfectSearch(tempBoard, -color, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1);
-                } else { // 通常探索(NegaAlpha法)
-                    score = -negaAlpha(tempBoard, depth - 1, -color, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1);
-                    // depthを1減らし、相手のcolorで呼び出す
+                if (aborted) {
+                    // 途中で打ち切った深さの結果は使わない
+                    // ただし完了した深さがない場合(深さ1で中断された場合)は、探索し終えた手の中での最善手を使う
+                    if (completedDepth == 0 && result[2] >= 0) {
+                        bestMove = result[0];
+                        bestScore = result[1];
+                    }
+                    break;
                 }
-                // デバッグ用
-                // System.out.println("CPU: Evaluated move: [" + move[0] + ", " + move[1] + "],
-                // Score: " + score);
-
-                // 出力スコアがこれまでの最善スコアより高ければ更新
-                if (score > bestScore) {
-                    bestScore = score;
-                    bestMove = move;
+                bestMove = result[0];
+                bestScore = result[1];
+                completedDepth = d;
+                searchType = SearchStats.TYPE_MIDGAME;
+                if (rootScores != null) {
+                    sampledScores = rootScores.clone();
                 }
+                // 次の深さは今の数倍の時間・ノード数がかかるため、制限時間・ノード予算の残りの半分を過ぎていれば終える
+                if (System.nanoTime() - startTime > timeLimit * 1_000_000L / 2
+                        || (difficulty != null
+                                && searchedNodes() - midgameStart > (difficulty.getNodeBudget() - midgameStart) / 2)) {
+                    break;
+                }
+            }
+            if (sampledScores != null && searchType.equals(SearchStats.TYPE_MIDGAME)) {
+                int index = sampleMove(sampledScores, temperature);
+                bestMove = rootMoves[index];
+                bestScore = sampledScores[index];
             }
+
             // 最終的に選ばれた操作を返す
-            System.out.println("CPU: Selected move: [" + bestMove[0] + ", " + bestMove[1] + "], Score: " + bestScore);
-            return bestMove;
+            long elapsedNanos = System.nanoTime() - startTime;
+            nodes = 0;
+            long endgameNodes = 0;
+            long betaCutoffs = 0;
+            long firstMoveCutoffs = 0;
+            for (SearchWorker worker : workers) {
+                nodes += worker.getNodes();
+                endgameNodes += worker.getEndgameNodes();
+                betaCutoffs += worker.getBetaCutoffs();
+                firstMoveCutoffs += worker.getFirstMoveCutoffs();
+            }
+            lastScore = bestScore;
+            setLastStats(new SearchStats(searchType, bestMove, bestScore, completedDepth, nodes, endgameNodes,
+                    betaCutoffs, firstMoveCutoffs, transpositionTable.getProbes() - ttProbes,
+                    transpositionTable.getHits() - ttHits, elapsedNanos, threads));
+            long elapsed = elapsedNanos / 1_000_000L;
+            if (!pondering) {
+                System.out.println("CPU: Selected move: [" + bestMove / N_LINE + ", " + bestMove % N_LINE + "], Score: " + bestScore
+                        + ", Depth: " + completedDepth + ", Nodes: " + nodes + ", Time: " + elapsed + "ms"
+                        + (cancelRequested ? " (cancelled)" : ""));
+            }
+            return new int[] { bestMove / N_LINE, bestMove % N_LINE };
         } catch (Exception e) {
             System.err.println("Error in decideMove: " + e.getMessage());
             e.printStackTrace();
@@ -197,198 +746,642 @@ public class CPU {
     }
 
     /*
-    NegaAlpha法（Alpha-Beta探索のNegaMaxバージョン）に基づいて盤面を探索し、
-    現在の手番プレイヤーにとっての最善の評価値を返すメソッド（通常探索用）。
-    
-    board: 現在の盤面
-    depth: 現在の探索の残り深さ。0になると探索を打ち切り、静的評価を行う。
-    color: 現在の手番プレイヤーを示す符号(1: 黒, -1: 白)
-    alpha: 現在の探索窓の下限値。このプレイヤーが保証できる最低スコア。
-    beta: 現在の探索窓の上限値。相手プレイヤーが許容する最高スコア。
-          相手が最善手を指すと仮定しているため、これ以上のスコアは得られない。
-    return: この局面から探索した結果、現在のプレイヤーが得られる最善の評価値。
-     */
-    private int negaAlpha(Integer[][] board, int depth, int color, int alpha, int beta) {
+    モンテカルロ木探索で操作を決定するメソッド
+    制限時間(timeLimit)・プレイアウトの上限(maxPlayouts)・スレッド数はgetCPUOperationの探索と同じ設定を使う。
+    前の手で作った木のうち、現在の局面に対応する部分木は再利用する。
+    */
+    private int[] decideMoveByMonteCarlo(Integer[][] currentBoard) {
+        BitBoard board = BitBoard.fromBoard(currentBoard);
+        int stoneColor = Othello.getStoneColor(turn);
+        if (board.getValidMoves(stoneColor) == 0) {
+            System.out.println("CPU: No valid moves available, passing.");
+            nodes = 0;
+            setLastStats(SearchStats.empty(threads));
+            return null;
+        }
+        long start = System.nanoTime();
+        int[] result = monteCarlo.search(board, stoneColor, timeLimit, maxPlayouts, threads);
+        long elapsedNanos = System.nanoTime() - start;
+        nodes = monteCarlo.getPlayouts();
+        lastScore = result[1];
+        setLastStats(new SearchStats(SearchStats.TYPE_MCTS, result[0], result[1], monteCarlo.getMaxDepth(), nodes,
+                0, 0, 0, 0, 0, elapsedNanos, threads));
+        System.out.println("CPU: Selected move: [" + result[0] / N_LINE + ", " + result[0] % N_LINE + "], Score: "
+                + result[1] + ", Playouts: " + nodes + " (reused " + monteCarlo.getReusedVisits() + "), Depth: "
+                + monteCarlo.getMaxDepth() + ", Time: " + elapsedNanos / 1_000_000L + "ms"
+                + (cancelRequested ? " (cancelled)" : ""));
+        return new int[] { result[0] / N_LINE, result[0] % N_LINE };
+    }
+
+    /*
+    局面の全ての合法手を評価するメソッド(ヒントの表示や対局後の検討用)
+    currentBoard: 盤面, analysisTurn: 評価する手番("Black" or "White", CPUの手番と異なってもよい)
+    各合法手について手番側から見たスコア・読み筋・探索した深さを求め、スコアの高い順に返す。
+    合法手がなければ空のリストを返す。
+
+    getCPUOperationと同じ制限時間(timeLimit)・最大深さ・スレッド数で、
+    反復深化の各深さで全ての手を探索窓を狭めずに(正確なスコアが出るように)探索する。
+    全ての手で置換表と手の並べ替えの情報を共有するので、手ごとに探索し直すよりも速い。
+    空きマスがthreshold以下なら完全読みを試し、時間内に終わらなければ通常探索の結果を返す。
+    getCPUOperationと同時に呼ばないこと(中断はcancelで行える)。
+    */
+    public List<MoveAnalysis> analyze(Integer[][] currentBoard, String analysisTurn) {
+        cancelRequested = closed;
+        searchThread = Thread.currentThread();
+        transpositionTable.newSearch();
         try {
-            // 現在のノードでの手番を特定
-            String currentTurn = (color == 1) ? "Black" : "White";
-
-            // 探索を終了するか判定
-            //   指定されたdepthまで探索した or 現在の局面で対局終了している
-            if (depth == 0 || isGameOver(board, currentTurn)) {
-                // 符号を調整し、静的評価を返す
-                return color * evaluate(board);
-            }
-
-            // 再度合法手のArrayListを作成
-            ArrayList<int[]> possibleMoves = new ArrayList<>();
-            for (int i = 0; i < 8; i++) {
-                for (int j = 0; j < 8; j++) {
-                    if (Othello.isValidMove(board, i, j, (color == 1 ? "Black" : "White"))) {
-                        possibleMoves.add(new int[] { i, j });
-                    }
-                }
+            BitBoard board = BitBoard.fromBoard(currentBoard);
+            int stoneColor = Othello.getStoneColor(analysisTurn);
+            int color = "Black".equals(analysisTurn) ? 1 : -1;
+            long possibleMoves = board.getValidMoves(stoneColor);
+            List<MoveAnalysis> analyses = new ArrayList<>();
+            if (possibleMoves == 0) {
+                return analyses;
+            }
+            int[] rootMoves = new int[Long.bitCount(possibleMoves)];
+            int count = 0;
+            for (long moves = possibleMoves; moves != 0; moves &= moves - 1) {
+                rootMoves[count++] = Long.numberOfTrailingZeros(moves);
             }
 
-            // 合法手がない場合
-            if (possibleMoves.isEmpty()) {
-                // depthを維持して再帰探索
-                return -negaAlpha(board, depth, -color, -beta, -alpha);
+            startTime = System.nanoTime();
+            deadline = startTime + timeLimit * 1_000_000L;
+            resetSharedNodes(nodeBudget());
+            for (SearchWorker worker : workers) {
+                worker.prepare(deadline, moveOrdering, principalVariationSearch, probCut);
             }
+            int emptySquares = countEmptySquares(board);
+            int[] scores = new int[count];
+            int[] bestScores = null; // 最後に完了した探索のスコア
+            int completedDepth = 0;
+            boolean exact = false;
 
-            // 各合法手について再帰的にNegaAlpha探索を実行
-            for (int[] move : possibleMoves) {
-                // 探索用の仮盤面にコピー
-                Integer[][] tempBoard = new Integer[8][8];
-                for (int i = 0; i < 8; i++) {
-                    tempBoard[i] = board[i].clone();
+            if (emptySquares <= this.threshold) { // 完全読み
+                canAbort = true;
+                searchAllMoves(board, rootMoves, scores, stoneColor, color, emptySquares, true);
+                if (!aborted) {
+                    bestScores = scores.clone();
+                    completedDepth = emptySquares;
+                    exact = true;
+                }
+            }
+            for (int d = 1; !exact && !cancelRequested && d <= Math.min(maxDepth, emptySquares); d++) {
+                canAbort = (d > 1);
+                searchAllMoves(board, rootMoves, scores, stoneColor, color, d, false);
+                if (aborted) {
+                    break;
                 }
-                // 現在選択している合法手で打つ
-                Othello.makeMove(tempBoard, move[0], move[1], currentTurn);
-                // 再帰探索
-                  // 探索の深さは1減らす
-                  // 相手始点になるので探索窓は反転して渡す
-                  // 返ってくるスコアも相手始点なので逆符号にする
-                int score = -negaAlpha(tempBoard, depth - 1, -color, -beta, -alpha);
-
-                // alpha(現在プレイヤーの保証できる最低スコア)を更新
-                alpha = Math.max(alpha, score);
-
-                // beta枝狩り
-                  // alphaがbeta(相手が許容するスコア)以上になった場合、これ以上の探索をしても
-                  // beta以下のスコアに抑えられるため、探索をやめる。
-                if (alpha >= beta) {
-                    break; // ループを抜け、枝狩りを行う
+                bestScores = scores.clone();
+                completedDepth = d;
+                if (System.nanoTime() - startTime > timeLimit * 1_000_000L / 2) {
+                    break;
                 }
             }
-            // このノードから得られる最善の評価値を返す
-            return alpha;
-        } catch (ArrayIndexOutOfBoundsException e) {
-            System.err.println("Error in negaAlpha: Array index out of bounds. " + e.getMessage());
-            e.printStackTrace();
-            return Integer.MIN_VALUE + 1; // エラー時は最小値を返す
-        } catch (NullPointerException e) {
-            System.err.println("Error in negaAlpha: Null pointer encountered. " + e.getMessage());
-            e.printStackTrace();
-            return Integer.MIN_VALUE + 1; // エラー時は最小値を返す
-        } catch (IllegalArgumentException e) {
-            System.err.println("Error in negaAlpha: Illegal argument provided. " + e.getMessage());
-            e.printStackTrace();
-            return Integer.MIN_VALUE + 1; // エラー時は最小値を返す
-        } catch (Exception e) {
-            System.err.println("Unexpected error in negaAlpha: " + e.getMessage());
-            e.printStackTrace();
-            return Integer.MIN_VALUE + 1; // エラー時は最小値を返す
+            nodes = 0;
+            for (SearchWorker worker : workers) {
+                nodes += worker.getNodes();
+            }
+            if (bestScores == null) { // 深さ1の途中で中断された
+                return analyses;
+            }
+
+            for (int i = 0; i < count; i++) {
+                List<Integer> pv = extractPrincipalVariation(board, rootMoves[i], stoneColor, completedDepth, exact);
+                analyses.add(new MoveAnalysis(rootMoves[i], bestScores[i], completedDepth, exact, pv));
+            }
+            analyses.sort((a, b) -> Integer.compare(b.getScore(), a.getScore())); // スコアの高い順(同じなら左上から)
+            return analyses;
+        } finally {
+            searchThread = null;
+        }
+    }
+
+    // 全ての手のスコアから最善手を求めるメソッド(戻り値はsearchRootと同じ。同じスコアなら左上に近い手)
+    private static int[] bestOf(int[] rootMoves, int[] scores) {
+        int best = 0;
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
         }
+        return new int[] { rootMoves[best], scores[best], best };
     }
 
-    /*  
-    完全探索用のNegaAlphaメソッド
-    基本はnegaAlpha()と同じだが、depthの制限なく、対局終了まで探索する。
-    勝利を最優先とするため、勝利する打ち方を見つけた場合、WIN_SCORE=10000が加算される。
-    次に石差を考慮したスコアを返す。
-    evaluate()による静的評価は用いない。
+    /*
+    全ての手のスコアから、温度temperatureで手を選ぶメソッド(戻り値はscoresの番号)
+    手iを exp((scores[i] - 最善のスコア) / temperature) に比例する確率で選ぶ。
+    温度が低いほど最善手を選びやすく、最善手よりtemperatureの数倍悪い手はほとんど選ばない。
     */
-    private int perfectSearch(Integer[][] board, int color, int alpha, int beta) {
-        String currentTurn = (color == 1) ? "Black" : "White";
-
-        // 対局が終了しているか判定
-        if (isGameOver(board, currentTurn)) {
-            int blackStones = countPlayerStones(board, "Black");
-            int whiteStones = countPlayerStones(board, "White");
-            int stoneDifference = blackStones - whiteStones; // 黒から見た石差
-
-            // 現在のプレイヤー視点での勝敗と石差を評価値とする
-            if (color == 1) { // 現在の視点が黒
-                if (stoneDifference > 0) { // 黒の勝ち
-                    return WIN_SCORE + stoneDifference;
-                } else if (stoneDifference < 0) { // 黒の負け
-                    return -WIN_SCORE + stoneDifference; // (stoneDifferenceは負になる)
-                } else { // 引き分け
-                    return DRAW_SCORE; // = 0
-                }
-            } else { // 現在の視点が白
-                if (stoneDifference < 0) { // 白の勝ち
-                    // 白から見た石差は (-stoneDifference)
-                    return WIN_SCORE + (-stoneDifference);
-                } else if (stoneDifference > 0) { // 白の負け
-                    return -WIN_SCORE + (-stoneDifference); // (-stoneDifference)は負
-                } else { // 引き分け
-                    return DRAW_SCORE; // = 0
-                }
+    private int sampleMove(int[] scores, int temperature) {
+        int max = Integer.MIN_VALUE;
+        for (int score : scores) {
+            max = Math.max(max, score);
+        }
+        double[] weights = new double[scores.length];
+        double total = 0;
+        for (int i = 0; i < scores.length; i++) {
+            weights[i] = Math.exp(((double) scores[i] - max) / temperature);
+            total += weights[i];
+        }
+        double r = choiceRandom.nextDouble() * total;
+        for (int i = 0; i < scores.length; i++) {
+            r -= weights[i];
+            if (r < 0) {
+                return i;
             }
         }
+        return scores.length - 1;
+    }
 
-        // 以下はnegaAlphaと同様
-        ArrayList<int[]> possibleMoves = new ArrayList<>();
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (Othello.isValidMove(board, i, j, currentTurn)) {
-                    possibleMoves.add(new int[] { i, j });
+    // 現在の1手分の探索で全てのワーカーが探索したノード数の合計
+    private long searchedNodes() {
+        long total = 0;
+        for (SearchWorker worker : workers) {
+            total += worker.getNodes();
+        }
+        return total;
+    }
+
+    // ルートの全ての手を探索窓を狭めずに探索し、scoresに格納するメソッド(analyze・温度によって手を選ぶ探索用)
+    private void searchAllMoves(BitBoard board, int[] rootMoves, int[] scores, int stoneColor, int color,
+            int depth, boolean perfect) {
+        stopRequested = false;
+        if (threads <= 1) {
+            mainWorker.startIteration(canAbort);
+            for (int i = 0; i < rootMoves.length && !isStopRequested(); i++) {
+                scores[i] = mainWorker.searchRootMove(board, rootMoves[i], stoneColor, color, depth, perfect,
+                        Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1);
+            }
+        } else {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int i = 0; i < rootMoves.length; i++) {
+                final int index = i;
+                tasks.add(() -> {
+                    if (!isStopRequested()) {
+                        SearchWorker worker = acquireWorker();
+                        scores[index] = worker.searchRootMove(board.copy(), rootMoves[index], stoneColor, color,
+                                depth, perfect, Integer.MIN_VALUE + 1, Integer.MAX_VALUE - 1);
+                        idleWorkers.offer(worker);
+                    }
+                    return null;
+                });
+            }
+            try {
+                getPool().invokeAll(tasks);
+            } catch (RejectedExecutionException e) {
+                cancelRequested = true;
+            }
+        }
+        aborted = isStopRequested();
+    }
+
+    /*
+    rootMoveから始まる読み筋を置換表からたどって返すメソッド
+    各局面で、残りの深さと一致する深さ(完全読みでは深さを問わない)の最善手が記録されていればその手を進める。
+    */
+    private List<Integer> extractPrincipalVariation(BitBoard root, int rootMove, int stoneColor, int depth,
+            boolean perfect) {
+        List<Integer> pv = new ArrayList<>();
+        BitBoard board = root.copy();
+        board.makeMove(rootMove, stoneColor);
+        pv.add(rootMove);
+        int currentColor = BitBoard.opponentColor(stoneColor);
+        int remaining = depth - 1;
+        while (perfect || remaining > 0) {
+            long possibleMoves = board.getValidMoves(currentColor);
+            if (possibleMoves == 0) {
+                if (board.getValidMoves(BitBoard.opponentColor(currentColor)) == 0) {
+                    break; // 終局
                 }
+                pv.add(MoveAnalysis.PASS);
+                currentColor = BitBoard.opponentColor(currentColor);
+                continue;
+            }
+            long key = perfect ? board.getHash(currentColor) ^ ENDGAME_KEY : board.getHash(currentColor);
+            long entry = transpositionTable.probe(key);
+            if (entry == 0 || (!perfect && TranspositionTable.getDepth(entry) != remaining)) {
+                break;
+            }
+            int move = TranspositionTable.getMove(entry);
+            if (move == TranspositionTable.NO_MOVE || (possibleMoves & (1L << move)) == 0) {
+                break;
             }
+            board.makeMove(move, currentColor);
+            pv.add(move);
+            currentColor = BitBoard.opponentColor(currentColor);
+            remaining--;
         }
-        if (possibleMoves.isEmpty()) {
-            return -perfectSearch(board, -color, -beta, -alpha);
+        // 末尾のパスは読み筋に含めない
+        while (pv.get(pv.size() - 1) == MoveAnalysis.PASS) {
+            pv.remove(pv.size() - 1);
         }
+        return pv;
+    }
 
-        for (int[] move : possibleMoves) {
-            Integer[][] tempBoard = new Integer[8][8];
-            for (int i = 0; i < 8; i++) {
-                tempBoard[i] = board[i].clone();
+    /*
+    相手の手番の間に、相手の各合法手に対する応手を先に探索しておくメソッド(先読み, ponder)
+    currentBoard: 相手が打つ番の盤面
+    相手が打ちそうな手から順に、その手を打った後の局面をgetCPUOperationと同じ条件(制限時間・深さ)で探索し、結果を保存する。
+    次のgetCPUOperationの局面が保存した局面と一致すれば、探索せずにその結果をすぐに返す。
+    途中で中断した探索の結果は保存しないが、置換表に残った内容は次のgetCPUOperationでそのまま再利用される。
+    全ての合法手を探索し終えるか、cancel・shutdown・割り込みで中断されると戻る。戻り値は探索し終えた手の数。
+    ノード予算のプロファイルがある場合は、相手が最も打ちそうな1手だけを先読みする(先読みのノード数は予算1つ分まで)。
+    getCPUOperationと同時に呼ばないこと(相手が打ったらcancelで止めてからgetCPUOperationを呼ぶ)。
+    */
+    public int ponder(Integer[][] currentBoard) {
+        ponderNodes = 0;
+        if (monteCarlo != null) {
+            return 0; // モンテカルロ木探索では先読みの代わりに前の手の木を再利用する
+        }
+        // cancelRequestedはリセットしない(呼ばれる前にcancelされていれば何もせずに戻る)
+        searchThread = Thread.currentThread();
+        ponderResults.clear();
+        transpositionTable.newSearch();
+        int savedScore = lastScore; // 先読みの探索で直前の手の結果を上書きしない
+        SearchStats savedStats = lastStats;
+        long savedNodes = nodes;
+        pondering = true;
+        int searched = 0;
+        try {
+            BitBoard board = BitBoard.fromBoard(currentBoard);
+            int stoneColor = Othello.getStoneColor(turn);
+            int opponentColor = BitBoard.opponentColor(stoneColor);
+            int[] replies = predictReplies(board, opponentColor);
+            // 予算があれば、相手の手ごとに予算を使い切らないよう最も打ちそうな1手だけを探索する
+            int count = (difficulty != null) ? Math.min(1, replies.length) : replies.length;
+            for (int i = 0; i < count; i++) {
+                int reply = replies[i];
+                if (cancelRequested || Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                BitBoard next = board.copy();
+                next.makeMove(reply, opponentColor);
+                if (inBook(next, stoneColor)) {
+                    continue; // 定石の手はすぐに返せるので探索しない
+                }
+                int[] move = decideMove(next.toBoard());
+                ponderNodes += nodes;
+                if (cancelRequested) {
+                    break; // 途中で中断した結果は使わない
+                }
+                ponderResults.put(next.getHash(stoneColor),
+                        new PonderResult(next, (move != null) ? move : new int[] { -1, -1 }, lastScore, lastStats));
+                searched++;
             }
-            Othello.makeMove(tempBoard, move[0], move[1], currentTurn);
+            return searched;
+        } finally {
+            pondering = false;
+            lastScore = savedScore;
+            lastStats = savedStats;
+            nodes = savedNodes;
+            searchThread = null;
+        }
+    }
 
-            int score = -perfectSearch(tempBoard, -color, -beta, -alpha);
+    // 直前のponderで探索したノード数の合計を返すメソッド
+    public long getPonderNodes() {
+        return ponderNodes;
+    }
 
-            alpha = Math.max(alpha, score);
-            if (alpha >= beta) {
-                break;
+    /*
+    相手の合法手を、打ちそうな順に並べて返すメソッド(先読み用)
+    直前の探索で置換表に残った相手の最善手を最初にし、残りは1手打った後の評価が相手に良い順に並べる。
+    */
+    private int[] predictReplies(BitBoard board, int opponentColor) {
+        long possibleMoves = board.getValidMoves(opponentColor);
+        int[] replies = new int[Long.bitCount(possibleMoves)];
+        int[] keys = new int[replies.length];
+        int sign = (opponentColor == BitBoard.BLACK) ? 1 : -1; // 評価値は黒が正
+        long entry = transpositionTable.probe(board.getHash(opponentColor));
+        if (entry == 0) {
+            entry = transpositionTable.probe(board.getHash(opponentColor) ^ ENDGAME_KEY);
+        }
+        int predicted = (entry == 0) ? TranspositionTable.NO_MOVE : TranspositionTable.getMove(entry);
+        int count = 0;
+        for (long moves = possibleMoves; moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            long flips = board.makeMove(move, opponentColor);
+            int key = (move == predicted) ? Integer.MAX_VALUE : sign * evaluateBoard(board);
+            board.undoMove(move, flips, opponentColor);
+            // 挿入ソート(評価の高い順)
+            int i = count++;
+            while (i > 0 && keys[i - 1] < key) {
+                replies[i] = replies[i - 1];
+                keys[i] = keys[i - 1];
+                i--;
             }
+            replies[i] = move;
+            keys[i] = key;
         }
-        return alpha;
+        return replies;
     }
 
-    // CPU用終了判定メソッド
-    private boolean isGameOver(Integer[][] board, String currentTurn) {
-        // currentTurnのプレイヤーが合法手を持つかチェック
-        if (Othello.hasValidMove(board, currentTurn)) {
-            return false;
+    /*
+    定石を設定するメソッド
+    book: 定石(nullなら使わない), depth: 定石を使う手数(初期局面から打たれた石の数がdepth未満の間),
+    randomness: 最善のスコアからこの差までの手を等確率で選ぶ(0なら常に最善手。対局ごとに手を変えたい場合に使う)
+    */
+    public void setOpeningBook(OpeningBook book, int depth, int randomness) {
+        this.openingBook = book;
+        this.bookDepth = depth;
+        this.bookRandomness = Math.max(0, randomness);
+    }
+
+    public OpeningBook getOpeningBook() {
+        return openingBook;
+    }
+
+    // 局面が定石を使う範囲にあり、定石に含まれているかを返すメソッド
+    private boolean inBook(BitBoard board, int stoneColor) {
+        OpeningBook book = openingBook;
+        return book != null && 60 - countEmptySquares(board) < bookDepth && book.contains(board, stoneColor);
+    }
+
+    // 定石にある局面であればその手を返し、なければnullを返すメソッド
+    private int[] takeBookMove(Integer[][] currentBoard) {
+        OpeningBook book = openingBook;
+        if (book == null) {
+            return null;
         }
-        // currentTurnの相手プレイヤーが合法手を持つかチェック
-        String opponentTurn = "Black".equals(currentTurn) ? "White" : "Black";
-        if (Othello.hasValidMove(board, opponentTurn)) {
-            return false;
+        BitBoard board = BitBoard.fromBoard(currentBoard);
+        if (60 - countEmptySquares(board) >= bookDepth) {
+            return null;
         }
-        // 両者とも合法手がない場合のみGameOver
-        return true;
+        long start = System.nanoTime();
+        int[] entry = book.selectMove(board, Othello.getStoneColor(turn), bookRandomness, bookRandom);
+        if (entry == null) {
+            return null;
+        }
+        ponderResults.clear(); // 先読みの結果は次の1手でのみ使う
+        lastScore = entry[1];
+        nodes = 0;
+        setLastStats(new SearchStats(SearchStats.TYPE_BOOK, entry[0], entry[1], 0, 0, 0, 0, 0, 0, 0,
+                System.nanoTime() - start, threads));
+        System.out.println("CPU: Book move: [" + entry[0] / N_LINE + ", " + entry[0] % N_LINE + "], Score: " + entry[1]);
+        return new int[] { entry[0] / N_LINE, entry[0] % N_LINE };
     }
 
-    // 盤面の空きマスを数えるメソッド
-    private int countEmptySquares(Integer[][] board) {
+    // 先読みで探索し終えた局面であればその結果を返し、なければnullを返すメソッド
+    // 先読みの結果は次の1手でのみ使う
+    private int[] takePonderResult(Integer[][] currentBoard) {
+        if (ponderResults.isEmpty()) {
+            return null;
+        }
+        BitBoard board = BitBoard.fromBoard(currentBoard);
+        PonderResult result = ponderResults.get(board.getHash(Othello.getStoneColor(turn)));
+        ponderResults.clear();
+        if (result == null || !result.board.equals(board)) {
+            return null;
+        }
+        lastScore = result.score;
+        nodes = result.stats.getNodes();
+        setLastStats(result.stats);
+        if (result.move[0] < 0) {
+            System.out.println("CPU: No valid moves available, passing. (pondered)");
+        } else {
+            System.out.println("CPU: Selected move: [" + result.move[0] + ", " + result.move[1] + "], Score: "
+                    + result.score + ", Depth: " + result.stats.getCompletedDepth() + " (pondered)");
+        }
+        return result.move.clone();
+    }
+
+    // 統計情報を記録し、設定されていればログに出力するメソッド
+    private void setLastStats(SearchStats stats) {
+        lastStats = stats;
+        if (statsLogging && !pondering) {
+            System.out.println("CPU-STATS " + stats);
+        }
+    }
+
+    /*
+    ルート局面の各合法手を指定した深さで探索し、{最善手, スコア, 最善手の順番}を返すメソッド
+    perfect: trueなら完全読み(depthは使わない)、falseなら深さdepthの通常探索
+    alpha, beta: 探索窓(完全読みで(-WIN_SCORE - 1, WIN_SCORE + 1)とすると必勝読みになる)
+    途中で制限時間を超えた場合や中断された場合はabortedがtrueになり、戻り値は探索し終えた手の中での最善手となる。
+    (1手も探索し終えていなければ最善手の順番は-1)
+
+    スレッド数が2以上の場合は、最初の手で探索窓を狭めてから残りの手を並列に探索する。
+    各スレッドはそれまでの最善スコアをalphaとして探索し、同じスコアの手は左上に近い手を優先するので、
+    1スレッドで左上から順に探索した場合と同じ手が選ばれる。
+    手の並べ替えが有効な場合は、置換表に残った前の深さの最善手を最初に探索する(同じスコアの手の優先順位は変えない)。
+    通常探索では、最初の手以外はPVSと同じく幅0の探索窓でalphaを超えるかを調べてから探索し直す。
+    */
+    private int[] searchRoot(BitBoard board, int stoneColor, int color, int depth, boolean perfect,
+            int alpha, int beta) {
+        long possibleMoves = board.getValidMoves(stoneColor);
+        int[] rootMoves = new int[Long.bitCount(possibleMoves)];
         int count = 0;
-        for (int i = 0; i < N_LINE; i++) {
-            for (int j = 0; j < N_LINE; j++) {
-                if (board[i][j] == 0) {
-                    count++;
-                }
+        for (long moves = possibleMoves; moves != 0; moves &= moves - 1) { // 下位ビットから順に取り出す
+            rootMoves[count++] = Long.numberOfTrailingZeros(moves);
+        }
+        int[] order = rootOrder(board, stoneColor, rootMoves); // 探索する順(rootMovesの番号)
+        RootBest best = new RootBest(rootMoves[order[0]], alpha);
+        stopRequested = false;
+
+        // 最初の手(並列探索では残りの手の探索窓を決めるために先に探索する)
+        int last = (threads > 1) ? 1 : count;
+        mainWorker.startIteration(canAbort);
+        for (int k = 0; k < last && !isStopRequested(); k++) {
+            int i = order[k];
+            int score = searchRootMove(mainWorker, board, rootMoves[i], i, k == 0, stoneColor, color, depth,
+                    perfect, beta, best);
+            if (!mainWorker.isAborted()) {
+                best.update(i, rootMoves[i], score);
+            }
+            // デバッグ用
+            // System.out.println("CPU: Evaluated move: [" + rootMoves[i] / N_LINE + ", " + rootMoves[i] % N_LINE + "],
+            // Score: " + score);
+        }
+
+        // 残りの手を並列に探索する
+        if (last < count && !isStopRequested()) {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (int k = last; k < count; k++) {
+                final int index = order[k];
+                tasks.add(() -> {
+                    searchParallel(board.copy(), rootMoves[index], index, stoneColor, color, depth, perfect,
+                            beta, best);
+                    return null;
+                });
+            }
+            try {
+                getPool().invokeAll(tasks);
+            } catch (RejectedExecutionException e) {
+                cancelRequested = true; // shutdown後は探索を中断する
             }
         }
-        return count;
+        aborted = isStopRequested();
+        if (aborted) {
+            return new int[] { best.move, best.score, best.index };
+        }
+
+        // ルート局面の結果も置換表に残す(完全読みの置換表は石差で記録するため、通常探索のみ)
+        if (!perfect) {
+            transpositionTable.store(board.getHash(stoneColor), depth, SearchWorker.boundType(best.score, alpha, beta),
+                    best.score, best.move);
+        }
+        return new int[] { best.move, best.score, best.index };
     }
 
-    // 指定されたプレイヤーの石数を数えるメソッド
-    private int countPlayerStones(Integer[][] board, String turn) {
-        int stoneValue = "Black".equals(turn) ? 1 : 2;
-        int count = 0;
-        for (int i = 0; i < N_LINE; i++) {
-            for (int j = 0; j < N_LINE; j++) {
-                if (board[i][j] == stoneValue) {
-                    count++;
+    /*
+    反復深化の1つの深さを探索するメソッド(戻り値はsearchRootと同じ)
+    前の深さの結果があれば、そのスコア±aspirationWindowの探索窓(aspiration window)で探索する。
+    スコアが探索窓の外に出た(上限・下限に当たった)場合は、その側の幅を4倍に広げて探索し直す。
+    探索窓の中に収まった結果は全幅で探索した場合と同じ手・スコアになる。
+    */
+    private int[] searchRootWithAspiration(BitBoard board, int stoneColor, int color, int depth,
+            boolean hasPrevious, int previousScore) {
+        long low = Integer.MIN_VALUE + 1;
+        long high = Integer.MAX_VALUE - 1;
+        long lowDelta = aspirationWindow;
+        long highDelta = aspirationWindow;
+        if (hasPrevious && aspirationWindow > 0) {
+            low = Math.max(low, (long) previousScore - aspirationWindow);
+            high = Math.min(high, (long) previousScore + aspirationWindow);
+        }
+        while (true) {
+            int[] result = searchRoot(board, stoneColor, color, depth, false, (int) low, (int) high);
+            if (aborted) {
+                return result;
+            }
+            if (result[1] <= low && low > Integer.MIN_VALUE + 1) { // 下限に当たった(本当のスコアはlow以下)
+                lowDelta *= 4;
+                low = Math.max(Integer.MIN_VALUE + 1, low - lowDelta);
+            } else if (result[1] >= high && high < Integer.MAX_VALUE - 1) { // 上限に当たった
+                highDelta *= 4;
+                high = Math.min(Integer.MAX_VALUE - 1, high + highDelta);
+            } else {
+                return result;
+            }
+        }
+    }
+
+    /*
+    ルートの手を1つ探索するメソッド(index: 手の優先順位, first: 最初に探索する手か)
+    通常探索で最初の手でなければ、まず幅0の探索窓(alpha, alpha + 1)で最善スコアを超えるかだけを調べ、
+    超えた場合のみ(alpha, beta)で探索し直す(PVS)。
+    */
+    private int searchRootMove(SearchWorker worker, BitBoard board, int move, int index, boolean first,
+            int stoneColor, int color, int depth, boolean perfect, int beta, RootBest best) {
+        int alpha = best.alpha(index);
+        if (first || perfect || !principalVariationSearch || alpha + 1 >= beta) {
+            return worker.searchRootMove(board, move, stoneColor, color, depth, perfect, alpha, beta);
+        }
+        int score = worker.searchRootMove(board, move, stoneColor, color, depth, false, alpha, alpha + 1);
+        if (score > alpha && !worker.isAborted()) {
+            score = worker.searchRootMove(board, move, stoneColor, color, depth, false, best.alpha(index), beta);
+        }
+        return score;
+    }
+
+    // ルートの手を探索する順(rootMovesの番号の並び)を返すメソッド(置換表の最善手を最初にする)
+    private int[] rootOrder(BitBoard board, int stoneColor, int[] rootMoves) {
+        int[] order = new int[rootMoves.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        long entry = moveOrdering ? transpositionTable.probe(board.getHash(stoneColor)) : 0;
+        if (entry != 0) {
+            int ttMove = TranspositionTable.getMove(entry);
+            for (int i = 1; i < order.length; i++) {
+                if (rootMoves[i] == ttMove) {
+                    System.arraycopy(order, 0, order, 1, i); // 最善手を先頭に移す(残りは左上から順)
+                    order[0] = i;
+                    break;
                 }
             }
         }
-        return count;
+        return order;
+    }
+
+    // 並列探索のタスクとしてルートの手を1つ探索するメソッド
+    private void searchParallel(BitBoard board, int move, int index, int stoneColor, int color, int depth,
+            boolean perfect, int beta, RootBest best) {
+        if (isStopRequested()) {
+            return;
+        }
+        SearchWorker worker = acquireWorker();
+        int score = searchRootMove(worker, board, move, index, false, stoneColor, color, depth, perfect, beta, best);
+        if (!worker.isAborted()) {
+            best.update(index, move, score);
+        }
+        idleWorkers.offer(worker);
+    }
+
+    // 並列探索のタスクで使うワーカーを返すメソッド(使い終わったらidleWorkersに戻す)
+    private SearchWorker acquireWorker() {
+        SearchWorker worker = idleWorkers.poll();
+        if (worker == null) { // 空いているワーカーがなければ新しく生成する
+            worker = new SearchWorker(this, transpositionTable);
+            worker.prepare(deadline, moveOrdering, principalVariationSearch, probCut);
+            workers.add(worker);
+        }
+        worker.startIteration(canAbort);
+        return worker;
+    }
+
+    // スレッドプールを返すメソッド(初回呼び出し時に生成する)
+    private synchronized ForkJoinPool getPool() {
+        if (pool == null || pool.getParallelism() != threads) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    /*
+    ルート局面の探索中の最善手とスコアを保持するクラス(並列探索の各スレッドで共有する)
+    indexはルートの手を左上から数えた順番で、同じスコアの場合はindexが小さい手を優先する。
+    */
+    private static final class RootBest {
+        private int move; // 最善手
+        private int score; // 最善スコア
+        private int index = -1; // 最善手の順番(-1: まだない)
+
+        RootBest(int firstMove, int alpha) {
+            this.move = firstMove;
+            this.score = alpha; // 探索窓の下限
+        }
+
+        // index番目の手を探索するときのalphaを返すメソッド
+        // 最善手より前の手はスコアが同じでも選ばれるので、1小さい値から探索する
+        synchronized int alpha(int moveIndex) {
+            if (index < 0) {
+                return score;
+            }
+            return (moveIndex < index) ? score - 1 : score;
+        }
+
+        // 探索結果を反映するメソッド
+        synchronized void update(int moveIndex, int moveValue, int moveScore) {
+            if (index < 0 || moveScore > score || (moveScore == score && moveIndex < index)) {
+                move = moveValue;
+                score = moveScore;
+                index = moveIndex;
+            }
+        }
+    }
+
+    // 先読みで探索し終えた局面とその結果を保持するクラス
+    private static final class PonderResult {
+        private final BitBoard board; // 相手が打った後の局面
+        private final int[] move; // 選んだ手({-1, -1}はパス)
+        private final int score; // 選んだ手のスコア
+        private final SearchStats stats; // 探索の統計情報
+
+        PonderResult(BitBoard board, int[] move, int score, SearchStats stats) {
+            this.board = board;
+            this.move = move;
+            this.score = score;
+            this.stats = stats;
+        }
+    }
+
+    // 盤面の空きマスを数えるメソッド
+    private int countEmptySquares(BitBoard board) {
+        return board.countEmpty();
     }
 }
 
@@ -14,7 +14,7 @@ public class CPUDriver {
         System.out.println("手番を入力してください (1: Black, 2: White)");
         int turnNum = scanner.nextInt();
 
-        System.out.println("CPUの強さを入力してください (0: 弱い, 1: 普通, 2: 強い)");
+        System.out.println("CPUの強さを入力してください (0: 弱い, 1: 普通, 2: 強い, 3: モンテカルロ)");
         int levelNum = scanner.nextInt();
 
         System.out.println("以下の内容でCPUが作成されました: ");
@@ -25,12 +25,16 @@ public class CPUDriver {
             testCPU = new CPU("Black", "普通");
         } else if(turnNum == 1 && levelNum == 2) {
             testCPU = new CPU("Black", "強い");
+        } else if(turnNum == 1 && levelNum == 3) {
+            testCPU = new CPU("Black", CPU.LEVEL_MCTS);
         } else if(turnNum == 2 && levelNum == 0) {
             testCPU = new CPU("White", "弱い");
         } else if(turnNum == 2 && levelNum == 1) {
             testCPU = new CPU("White", "普通");
         } else if(turnNum == 2 && levelNum == 2) {
             testCPU = new CPU("White", "強い");
+        } else if(turnNum == 2 && levelNum == 3) {
+            testCPU = new CPU("White", CPU.LEVEL_MCTS);
         } else {
             testCPU = new CPU("Black", "普通");
         }
@@ -59,6 +63,10 @@ public class CPUDriver {
             printBoard(testBoard);
         }
 
+        // 3. 置換表の統計情報
+        System.out.println("\n3. 置換表の統計情報");
+        System.out.println(testCPU.getTranspositionTable());
+
         System.out.println("\nCPUクラスのテストを終了します。");
     }
 
@@ -32,6 +32,11 @@ public class Client {
     private CPU cpuBrain;
     private boolean isPlayerTurnCPU = false;
     private ExecutorService cpuExecutor;
+    private Future<?> ponderTask; // 人間の手番中にCPUが行う先読み
+    private PatternEvaluator patternEvaluator; // 読み込んだパターン評価の重み(対局をまたいで使う)
+    private OpeningBook openingBook; // 読み込んだ定石(対局をまたいで使う)
+    private NeuralEvaluator neuralEvaluator; // 読み込んだニューラルネットワークの重み(対局をまたいで使う)
+    private ProbCut probCut; // 読み込んだMulti-ProbCutのパラメータ(対局をまたいで使う)
 
     // --- ネットワーク用 ---
     private Socket socket;
@@ -86,8 +91,12 @@ public class Client {
         if (gameActive
             && currentTurn != null
             && currentTurn.equals(humanPlayer.getStoneColor())) {
-            Integer[][] validMap = Othello.getValidMovesBoard(boardCopy, toOthelloColor(currentTurn));
-            boardCopy = Othello.getBoard(boardCopy, validMap);
+            // 合法手はビットマスクで一度に求め、そのままコピーに書き込む
+            long validMask = Othello.getValidMovesMask(boardCopy, toOthelloColor(currentTurn));
+            for (; validMask != 0; validMask &= validMask - 1) {
+                int sq = Long.numberOfTrailingZeros(validMask);
+                boardCopy[sq / SIZE][sq % SIZE] = CANPLACE;
+            }
         }
 
         // 3) 描画
@@ -182,7 +191,18 @@ public class Client {
 
         cpuBrain = new CPU(toOthelloColor(
                        currentOpponentPlayer.getStoneColor()), strength);
+        if (!Boolean.getBoolean("othello.timeLevels")) { // -Dothello.timeLevels=trueなら強さを制限時間だけで決める
+            cpuBrain.setDifficulty(Difficulty.forLevel(strength)); // 1手の計算量をノード予算で一定にする(予算は全スレッドで共有する)
+        }
+        cpuBrain.setThreads(Runtime.getRuntime().availableProcessors());
+        cpuBrain.setStatsLogging(Boolean.getBoolean("othello.cpuStats")); // -Dothello.cpuStats=trueで探索の統計を出力
+        cpuBrain.setPatternEvaluator(loadPatternEvaluator()); // -Dothello.weights=ファイル名でパターン評価を使う
+        cpuBrain.setNeuralEvaluator(loadNeuralEvaluator()); // -Dothello.network=ファイル名でニューラルネットワークの評価を使う
+        cpuBrain.setProbCut(loadProbCut()); // -Dothello.probcut=ファイル名でMulti-ProbCutのパラメータを指定する
+        cpuBrain.setOpeningBook(loadOpeningBook(), // -Dothello.book=ファイル名で定石を使う
+            Integer.getInteger("othello.bookDepth", 20), Integer.getInteger("othello.bookRandomness", 0));
         cpuExecutor = Executors.newSingleThreadExecutor();
+        ponderTask = null;
 
         currentTurn = "黒"; // 黒先手
         SwingUtilities.invokeLater(() -> {
@@ -191,10 +211,76 @@ public class Client {
             if (currentTurn.equals(
                 currentOpponentPlayer.getStoneColor())) {
                 startCpuTurn();
+            } else {
+                startPondering();
             }
         });
     }
 
+    // 重みファイルを読み込む(1度読み込んだものは次の対局でも使う)。指定がない・読み込めない場合はnull
+    private PatternEvaluator loadPatternEvaluator() {
+        String path = System.getProperty("othello.weights");
+        if (path == null) return null;
+        if (patternEvaluator == null) {
+            try {
+                patternEvaluator = PatternEvaluator.load(path);
+            } catch (IOException e) {
+                System.err.println("重みファイルを読み込めませんでした: " + path + " (" + e.getMessage() + ")");
+            }
+        }
+        return patternEvaluator;
+    }
+
+    // ニューラルネットワークの重みファイルを読み込む(1度読み込んだものは次の対局でも使う)。指定がない・読み込めない場合はnull
+    private NeuralEvaluator loadNeuralEvaluator() {
+        String path = System.getProperty("othello.network");
+        if (path == null) return null;
+        if (neuralEvaluator == null) {
+            try {
+                neuralEvaluator = NeuralEvaluator.load(path);
+            } catch (IOException e) {
+                System.err.println("ニューラルネットワークの重みファイルを読み込めませんでした: " + path + " (" + e.getMessage() + ")");
+            }
+        }
+        return neuralEvaluator;
+    }
+
+    /*
+    Multi-ProbCutのパラメータファイルを読み込む(1度読み込んだものは次の対局でも使う)
+    指定がなければ組み込みのパラメータを使う。ただしパターン評価・ニューラルネットワークを使う場合は評価値の尺度が違うので、
+    パラメータファイルの指定がないか読み込めなければ枝刈りしない(null)。
+    */
+    private ProbCut loadProbCut() {
+        String path = System.getProperty("othello.probcut");
+        if (path == null) {
+            boolean defaultEvaluation = System.getProperty("othello.weights") == null
+                    && System.getProperty("othello.network") == null;
+            return defaultEvaluation ? ProbCut.DEFAULT : null;
+        }
+        if (probCut == null) {
+            try {
+                probCut = ProbCut.load(path);
+            } catch (IOException e) {
+                System.err.println("ProbCutのパラメータファイルを読み込めませんでした: " + path + " (" + e.getMessage() + ")");
+            }
+        }
+        return probCut;
+    }
+
+    // 定石ファイルを開く(1度開いたものは次の対局でも使う)。指定がない・開けない場合はnull
+    private OpeningBook loadOpeningBook() {
+        String path = System.getProperty("othello.book");
+        if (path == null) return null;
+        if (openingBook == null) {
+            try {
+                openingBook = OpeningBook.open(path);
+            } catch (IOException e) {
+                System.err.println("定石ファイルを開けませんでした: " + path + " (" + e.getMessage() + ")");
+            }
+        }
+        return openingBook;
+    }
+
     private void setupNetworkGame(String name, String addr, Integer port) {
         isNetworkMatch = true;
         humanPlayer.setPlayerName(name);
@@ -277,17 +363,40 @@ public class Client {
               currentOpponentPlayer.getStoneColor())) return;
         updateStatusAndUI(currentTurn,
             opponentName + " が考えています...", opponentName);
+        stopPondering();
         cpuExecutor.submit(this::handleCpuTurn);
     }
 
+    // 人間の手番の間、CPUに人間の各合法手への応手を先に探索させる(結果は次のCPUの手番で使われる)
+    private void startPondering() {
+        if (!gameActive
+         || !currentTurn.equals(humanPlayer.getStoneColor())
+         || !Othello.hasValidMove(boardState,
+               toOthelloColor(currentTurn))) return;
+        CPU brain = cpuBrain;
+        Integer[][] snapshot = copyBoard(boardState); // 探索中に盤面が変わらないようにコピーを渡す
+        ponderTask = cpuExecutor.submit(() -> brain.ponder(snapshot));
+    }
+
+    // 先読みを止める。CPUの探索は同じスレッドで先読みが戻った後に始まる
+    private void stopPondering() {
+        if (ponderTask == null) return;
+        ponderTask.cancel(false); // 開始前なら取り消す(割り込むと次の探索まで中断されるのでしない)
+        cpuBrain.cancel(); // 実行中なら打ち切る
+        ponderTask = null;
+    }
+
     private void handleCpuTurn() {
         // try {
         //     Thread.sleep(500 + (int)(Math.random()*1000));
         // } catch (InterruptedException e) {
         //     return;
         // }
-        int[] mv = cpuBrain.getCPUOperation(boardState);
+        CPU brain = cpuBrain;
+        int[] mv = brain.getCPUOperation(boardState);
         SwingUtilities.invokeLater(() -> {
+            // 探索中に新しいゲームが始まった・終了した場合は、中断された探索の結果を使わない
+            if (brain != cpuBrain || !gameActive) return;
             if (mv == null || mv[0] < 0) {
                 passCpu();
             } else {
@@ -309,6 +418,7 @@ public class Client {
                     /* 人間番 */
                     refreshBoardUI();
                     updateStatusAndUI(currentTurn, getTurnMessage(), opponentName);
+                    startPondering();
                 }
             }
         });
@@ -329,6 +439,8 @@ public class Client {
         } else if (currentTurn.equals(
                    currentOpponentPlayer.getStoneColor())) {
             startCpuTurn();
+        } else {
+            startPondering();
         }
     }
 
@@ -503,6 +615,7 @@ public class Client {
         gameActive = false;
         try { if (socket!=null) socket.close(); } catch(Exception ignored){}
         if (cpuExecutor!=null) cpuExecutor.shutdownNow();
+        if (cpuBrain!=null) cpuBrain.shutdown();
         if (heartbeatExecutor!=null)
             heartbeatExecutor.shutdownNow();
     }
@@ -0,0 +1,79 @@
+/*
+CPUの強さを、1手あたりに探索するノード数の上限(ノード予算)で決めるプロファイルを保持するクラス
+制限時間で決める強さは、局面によって1手の計算量が大きく変わり、マシンの速さやスレッド数によって強さも変わる。
+ノード予算で決めると、1手の計算量はどの局面でもほぼ一定(予算 + 打ち切りを確認する間隔分)になり、強さはマシンによらない。
+弱い強さでは、探索を浅くするだけでなく、以下の2つで人間らしい間違いを加える。
+    評価のノイズ: 探索の末端の評価値に、局面ごとに決まる±noiseの一様な乱数を足す(同じ局面には同じ値を足すので置換表と矛盾しない)
+    手を選ぶ温度: 最後に探索し終えた深さの全ての手のスコアsから、exp((s - 最善のスコア) / temperature)に比例する確率で手を選ぶ
+ノイズと温度の単位はCPU.evaluateBoardの評価値と同じ(評価関数によって尺度が違うので、既定の評価関数に合わせている)。
+生成後は変更しないので、複数のCPUで共有してよい。
+*/
+public final class Difficulty {
+    // 強さ「弱い」「普通」「強い」のプロファイル(各マスの重み・着手可能数などによる評価関数向け)
+    // 完全読み・必勝読みの閾値は、予算のうち読み切りに使う半分で大抵の局面を読み切れる空きマス数にする。
+    // 「強い」の予算の半分(150万ノード)で読み切れた割合(ランダム局面各20)は、完全読みが空き16マスで15/20・18マスで1/20、
+    // 必勝読みが空き18マスで17/20・20マスで8/20・22マスで3/20だったので、制限時間の強さの閾値(20, 22)より下げて16, 18にしている。
+    public static final Difficulty WEAK = new Difficulty("弱い", 3_000, 0, 0, 24, 12);
+    public static final Difficulty NORMAL = new Difficulty("普通", 150_000, 8, 10, 0, 0);
+    public static final Difficulty STRONG = new Difficulty("強い", 3_000_000, 16, 18, 0, 0);
+
+    private final String name; // 強さの名前
+    private final long nodeBudget; // 1手あたりに探索するノード数の上限(全スレッドの合計)
+    private final int threshold; // 完全読みに移行する空きマスの閾値(予算内に終わる程度にする)
+    private final int wldThreshold; // 必勝読みに移行する空きマスの閾値
+    private final int evaluationNoise; // 末端の評価値に足すノイズの幅(0ならノイズなし)
+    private final int temperature; // 手を選ぶ温度(0なら常に最善手)
+
+    public Difficulty(String name, long nodeBudget, int threshold, int wldThreshold, int evaluationNoise,
+            int temperature) {
+        if (nodeBudget < 1 || threshold < 0 || wldThreshold < threshold || evaluationNoise < 0 || temperature < 0) {
+            throw new IllegalArgumentException("Invalid difficulty: " + name);
+        }
+        this.name = name;
+        this.nodeBudget = nodeBudget;
+        this.threshold = threshold;
+        this.wldThreshold = wldThreshold;
+        this.evaluationNoise = evaluationNoise;
+        this.temperature = temperature;
+    }
+
+    // 強さの名前(弱い, 普通, 強い)に対応するプロファイルを返すメソッド(ノード予算で決めない強さならnull)
+    public static Difficulty forLevel(String level) {
+        for (Difficulty difficulty : new Difficulty[] { WEAK, NORMAL, STRONG }) {
+            if (difficulty.name.equals(level)) {
+                return difficulty;
+            }
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getNodeBudget() {
+        return nodeBudget;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public int getWldThreshold() {
+        return wldThreshold;
+    }
+
+    public int getEvaluationNoise() {
+        return evaluationNoise;
+    }
+
+    public int getTemperature() {
+        return temperature;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (nodes = " + nodeBudget + ", threshold = " + threshold + ", wldThreshold = " + wldThreshold
+                + ", noise = " + evaluationNoise + ", temperature = " + temperature + ")";
+    }
+}
@@ -0,0 +1,284 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class DifficultyDriver {
+    private static final int POSITIONS = 20; // ノード数のテストに使うランダム局面数
+    private static final long NODE_SLACK = 2048; // 予算を超えてよいノード数(打ち切りを確認する間隔と、打ち切らない深さ1の分)
+    private static final int PONDER_THREADS = 4; // 先読みのテストで使うスレッド数(予算は全スレッドで共有する)
+    private static final int ENDGAME_MIN_DEPTH = 8; // 読み切れない終盤の局面で通常探索に求める深さ
+    private static final int SAMPLES = 30; // 手の選び方のテストで乱数の種を変えて選ぶ回数
+    private static final int RANDOM_OPENING = 6; // 対局のテストで最初にランダムに打つ手数
+
+    public static void main(String[] args) {
+        System.out.println("Difficultyクラスのテスト(DifficultyDriver.java)");
+        PrintStream console = System.out;
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream()); // CPUの1手ごとのログを出さない
+
+        // 1. プロファイル
+        System.out.println("\n1. プロファイルのテスト");
+        check("強さの名前に対応するプロファイル", Difficulty.forLevel("弱い") == Difficulty.WEAK
+                && Difficulty.forLevel("普通") == Difficulty.NORMAL && Difficulty.forLevel("強い") == Difficulty.STRONG
+                && Difficulty.forLevel(CPU.LEVEL_MCTS) == null);
+        check("強いほどノード予算が多い", Difficulty.WEAK.getNodeBudget() < Difficulty.NORMAL.getNodeBudget()
+                && Difficulty.NORMAL.getNodeBudget() < Difficulty.STRONG.getNodeBudget());
+        boolean rejected = true;
+        for (long[] p : new long[][] { { 0, 0, 0, 0, 0 }, { 100, 8, 6, 0, 0 }, { 100, 0, 0, -1, 0 },
+                { 100, 0, 0, 0, -1 } }) {
+            try {
+                new Difficulty("test", p[0], (int) p[1], (int) p[2], (int) p[3], (int) p[4]);
+                rejected = false;
+            } catch (IllegalArgumentException e) {
+                // 正しく拒否された
+            }
+        }
+        check("不正な値を拒否する", rejected);
+
+        // 2. 1手あたりのノード数が予算内に収まるか(制限時間の強さと比較)
+        List<BitBoard> positions = new ArrayList<>();
+        List<String> turns = new ArrayList<>();
+        createPositions(new Random(1), positions, turns);
+        System.out.println("\n2. 1手あたりのノード数(" + POSITIONS + " 局面, 序盤 ～ 終盤)");
+        Map<Difficulty, Long> singleThreadNodes = new HashMap<>(); // 1スレッドでの1手あたりの平均ノード数
+        for (Difficulty difficulty : new Difficulty[] { Difficulty.WEAK, Difficulty.NORMAL, Difficulty.STRONG }) {
+            long[] nodes = new long[2];
+            long[] maxNodes = new long[2];
+            long[] minNodes = { Long.MAX_VALUE, Long.MAX_VALUE };
+            long[] maxNanos = new long[2];
+            for (int mode = 0; mode < 2; mode++) { // 0: ノード予算, 1: 制限時間
+                for (int i = 0; i < POSITIONS; i++) {
+                    System.setOut(quiet);
+                    CPU cpu = new CPU(turns.get(i), difficulty.getName());
+                    if (mode == 0) {
+                        cpu.setDifficulty(difficulty);
+                    }
+                    cpu.getCPUOperation(positions.get(i).toBoard());
+                    System.setOut(console);
+                    long n = cpu.getNodes();
+                    nodes[mode] += n;
+                    maxNodes[mode] = Math.max(maxNodes[mode], n);
+                    minNodes[mode] = Math.min(minNodes[mode], n);
+                    maxNanos[mode] = Math.max(maxNanos[mode], cpu.getLastStats().getElapsedNanos());
+                    cpu.shutdown();
+                }
+            }
+            singleThreadNodes.put(difficulty, nodes[0] / POSITIONS);
+            System.out.printf("   %s ノード予算 %d: 平均 %d, 最小 %d, 最大 %d ノード, 最長 %.3f秒%s%n", difficulty.getName(),
+                    difficulty.getNodeBudget(), nodes[0] / POSITIONS, minNodes[0], maxNodes[0], maxNanos[0] / 1e9,
+                    (maxNodes[0] <= difficulty.getNodeBudget() + NODE_SLACK) ? " (成功)" : " (失敗)");
+            System.out.printf("   %s 制限時間 %dms:   平均 %d, 最小 %d, 最大 %d ノード, 最長 %.3f秒%n", difficulty.getName(),
+                    timeLimitOf(difficulty.getName(), quiet, console), nodes[1] / POSITIONS, minNodes[1],
+                    maxNodes[1], maxNanos[1] / 1e9);
+        }
+
+        // 3. 複数スレッドでの1手あたりのノード数と、相手の手番中の先読み(ponder)のノード数
+        System.out.println("\n3. " + PONDER_THREADS + " スレッドでのノード数と先読みのノード数(" + POSITIONS + " 局面)");
+        for (Difficulty difficulty : new Difficulty[] { Difficulty.WEAK, Difficulty.NORMAL, Difficulty.STRONG }) {
+            long totalNodes = 0;
+            long maxNodes = 0;
+            long maxPonderNodes = 0;
+            int pondered = 0;
+            boolean threadsKept = true;
+            for (int i = 0; i < POSITIONS; i++) {
+                BitBoard board = positions.get(i).copy();
+                int opponentColor = turns.get(i).equals("Black") ? BitBoard.BLACK : BitBoard.WHITE;
+                System.setOut(quiet);
+                CPU cpu = new CPU(turns.get(i).equals("Black") ? "White" : "Black", difficulty.getName());
+                cpu.setDifficulty(difficulty);
+                cpu.setThreads(PONDER_THREADS);
+                threadsKept &= (cpu.getThreads() == PONDER_THREADS);
+                pondered += cpu.ponder(board.toBoard());
+                maxPonderNodes = Math.max(maxPonderNodes, cpu.getPonderNodes());
+                board.makeMove(Long.numberOfTrailingZeros(board.getValidMoves(opponentColor)), opponentColor);
+                cpu.getCPUOperation(board.toBoard());
+                System.setOut(console);
+                totalNodes += cpu.getNodes();
+                maxNodes = Math.max(maxNodes, cpu.getNodes());
+                cpu.shutdown();
+            }
+            long limit = difficulty.getNodeBudget() + PONDER_THREADS * NODE_SLACK;
+            // 1スレッドの平均と比べて大きく減っていなければ、予算をスレッド間で共有できている
+            boolean ok = threadsKept && pondered > 0 && maxNodes <= limit && maxPonderNodes <= limit
+                    && totalNodes / POSITIONS * 2 >= singleThreadNodes.get(difficulty);
+            System.out.printf("   %s ノード予算 %d: 1手の平均 %d (1スレッド %d), 最大 %d ノード, 先読みの最大 %d ノード (%d 局面で先読み)%s%n",
+                    difficulty.getName(), difficulty.getNodeBudget(), totalNodes / POSITIONS,
+                    singleThreadNodes.get(difficulty), maxNodes, maxPonderNodes, pondered, ok ? " (成功)" : " (失敗)");
+        }
+
+        // 4. 終盤で読み切れない局面でも、予算の残りで通常探索を深く行うか
+        System.out.println("\n4. 読み切れない終盤の局面での通常探索(" + Difficulty.STRONG.getName() + ", 空き "
+                + Difficulty.STRONG.getWldThreshold() + " マス, " + POSITIONS + " 局面)");
+        List<BitBoard> endgamePositions = new ArrayList<>();
+        List<String> endgameTurns = new ArrayList<>();
+        Random endgameRandom = new Random(3);
+        while (endgamePositions.size() < POSITIONS) {
+            addPosition(endgameRandom, 60 - Difficulty.STRONG.getWldThreshold(), endgamePositions, endgameTurns);
+        }
+        int shallow = 0;
+        int minDepth = Integer.MAX_VALUE;
+        for (int i = 0; i < POSITIONS; i++) {
+            System.setOut(quiet);
+            CPU cpu = new CPU(endgameTurns.get(i), Difficulty.STRONG.getName());
+            cpu.setDifficulty(Difficulty.STRONG);
+            cpu.getCPUOperation(endgamePositions.get(i).toBoard());
+            System.setOut(console);
+            SearchStats stats = cpu.getLastStats();
+            if (stats.getSearchType().equals(SearchStats.TYPE_MIDGAME)) {
+                minDepth = Math.min(minDepth, stats.getCompletedDepth());
+                shallow += (stats.getCompletedDepth() < ENDGAME_MIN_DEPTH) ? 1 : 0;
+            }
+            cpu.shutdown();
+        }
+        System.out.println("   通常探索で選んだ手の最小の深さ: " + ((minDepth == Integer.MAX_VALUE) ? "-" : minDepth)
+                + ", 深さ" + ENDGAME_MIN_DEPTH + "未満: " + shallow + (shallow == 0 ? " (成功)" : " (失敗)"));
+
+        // 5. 乱数の種による手の選び方
+        System.out.println("\n5. 乱数の種による手の選び方(" + SAMPLES + " 回)");
+        BitBoard position = positions.get(0);
+        for (Difficulty difficulty : new Difficulty[] { Difficulty.WEAK, Difficulty.NORMAL }) {
+            Set<Integer> moves = new HashSet<>();
+            boolean reproducible = true;
+            for (int seed = 0; seed < SAMPLES; seed++) {
+                int first = chooseMove(difficulty, turns.get(0), position, seed, quiet, console);
+                reproducible &= (chooseMove(difficulty, turns.get(0), position, seed, quiet, console) == first);
+                moves.add(first);
+            }
+            boolean ok = reproducible && ((difficulty.getTemperature() > 0 || difficulty.getEvaluationNoise() > 0)
+                    ? moves.size() > 1 : moves.size() == 1);
+            System.out.println("   " + difficulty.getName() + ": 選んだ手 " + moves.size() + " 種類, 同じ種で同じ手: "
+                    + (reproducible ? "はい" : "いいえ") + (ok ? " (成功)" : " (失敗)"));
+        }
+
+        // 6. 強さの順序(ノード予算の強さ同士の対局)
+        System.out.println("\n6. 強さの順序(先後を入れ替えた対局)");
+        match(Difficulty.WEAK, Difficulty.NORMAL, 4, quiet, console);
+        match(Difficulty.NORMAL, Difficulty.STRONG, 4, quiet, console);
+
+        System.out.println("\nDifficultyクラスのテストを終了します。");
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println("   " + name + ": " + (ok ? "成功" : "失敗"));
+    }
+
+    // 強さの名前から決まる制限時間(ミリ秒)
+    private static long timeLimitOf(String level, PrintStream quiet, PrintStream console) {
+        System.setOut(quiet);
+        CPU cpu = new CPU("Black", level);
+        cpu.shutdown();
+        System.setOut(console);
+        return cpu.getTimeLimit();
+    }
+
+    // 乱数の種seedのCPUが選ぶ手
+    private static int chooseMove(Difficulty difficulty, String turn, BitBoard board, long seed, PrintStream quiet,
+            PrintStream console) {
+        System.setOut(quiet);
+        CPU cpu = new CPU(turn, difficulty.getName());
+        cpu.setDifficulty(difficulty);
+        cpu.setRandomSeed(seed);
+        int[] operation = cpu.getCPUOperation(board.toBoard());
+        cpu.shutdown();
+        System.setOut(console);
+        return operation[0] * BitBoard.SIZE + operation[1];
+    }
+
+    // weakerとstrongerをgames局対局させ、strongerの勝敗を表示する
+    private static void match(Difficulty weaker, Difficulty stronger, int games, PrintStream quiet,
+            PrintStream console) {
+        int wins = 0;
+        int losses = 0;
+        int draws = 0;
+        for (int game = 0; game < games; game++) {
+            boolean strongerBlack = (game % 2 == 0);
+            System.setOut(quiet);
+            CPU black = createCPU("Black", strongerBlack ? stronger : weaker, game);
+            CPU white = createCPU("White", strongerBlack ? weaker : stronger, game);
+            int diff = playGame(black, white, new Random(game / 2)); // 黒 - 白
+            black.shutdown();
+            white.shutdown();
+            System.setOut(console);
+            int strongerDiff = strongerBlack ? diff : -diff;
+            if (strongerDiff > 0) {
+                wins++;
+            } else if (strongerDiff < 0) {
+                losses++;
+            } else {
+                draws++;
+            }
+        }
+        System.out.println("   " + stronger.getName() + " 対 " + weaker.getName() + ": " + wins + "勝 " + losses + "敗 "
+                + draws + "分" + (wins > losses ? " (成功)" : " (失敗)"));
+    }
+
+    private static CPU createCPU(String turn, Difficulty difficulty, long seed) {
+        CPU cpu = new CPU(turn, difficulty.getName());
+        cpu.setDifficulty(difficulty);
+        cpu.setRandomSeed(seed);
+        return cpu;
+    }
+
+    // 1局対局し、石差(黒 - 白)を返す(最初のRANDOM_OPENING手はランダム)
+    private static int playGame(CPU black, CPU white, Random random) {
+        BitBoard board = new BitBoard();
+        int color = BitBoard.BLACK;
+        for (int ply = 0; ply < RANDOM_OPENING; ply++) {
+            long moves = board.getValidMoves(color);
+            for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                moves &= moves - 1;
+            }
+            board.makeMove(Long.numberOfTrailingZeros(moves), color);
+            color = BitBoard.opponentColor(color);
+        }
+        while (true) {
+            if (board.getValidMoves(color) == 0) {
+                color = BitBoard.opponentColor(color);
+                if (board.getValidMoves(color) == 0) {
+                    break;
+                }
+            }
+            int[] operation = ((color == BitBoard.BLACK) ? black : white).getCPUOperation(board.toBoard());
+            board.makeMove(operation[0] * BitBoard.SIZE + operation[1], color);
+            color = BitBoard.opponentColor(color);
+        }
+        return board.numberOfStone(BitBoard.BLACK) - board.numberOfStone(BitBoard.WHITE);
+    }
+
+    // ランダムに4〜55手進めた、手番側の合法手が2つ以上ある局面(序盤から終盤まで)
+    private static void createPositions(Random random, List<BitBoard> positions, List<String> turns) {
+        while (positions.size() < POSITIONS) {
+            addPosition(random, 4 + random.nextInt(52), positions, turns);
+        }
+    }
+
+    // ランダムにplies手進めた局面を、途中で終局せず手番側の合法手が2つ以上あれば加える
+    private static void addPosition(Random random, int plies, List<BitBoard> positions, List<String> turns) {
+        BitBoard board = new BitBoard();
+        int color = BitBoard.BLACK;
+        for (int ply = 0; ply < plies; ply++) {
+            long moves = board.getValidMoves(color);
+            if (moves == 0) {
+                color = BitBoard.opponentColor(color);
+                moves = board.getValidMoves(color);
+                if (moves == 0) {
+                    return;
+                }
+            }
+            for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                moves &= moves - 1;
+            }
+            board.makeMove(Long.numberOfTrailingZeros(moves), color);
+            color = BitBoard.opponentColor(color);
+        }
+        if (Long.bitCount(board.getValidMoves(color)) >= 2) {
+            positions.add(board);
+            turns.add((color == BitBoard.BLACK) ? "Black" : "White");
+        }
+    }
+}
@@ -0,0 +1,389 @@
+/*
+終盤の完全読み(終局までの探索)を行うクラス
+スコアは手番側から見た最終的な石差(黒石 - 白石を手番側の符号にしたもの, 空きマスは数えない)で返す。
+探索窓を(-1, 1)にすれば勝ち・負け・引き分けだけを判定する必勝読み(WLD)になる。
+
+空きマスの数によって探索方法を切り替える。
+    HASH_EMPTIES以上 : 盤面(BitBoard)上で探索し、置換表と速さ優先(相手の合法手が少ない順)の並べ替えを使う
+    5 - HASH_EMPTIES-1: 黒石・白石のlongを引数で渡して探索し、盤面の書き換え・取り消しを行わない
+                        PARITY_EMPTIES以下では偶数理論(空きマスが奇数個の領域から打つ)だけで並べ替える
+    2 - 4            : 合法手の生成を行わず、残りの空きマスに直接打てるかを試す
+    1                : 最後の1マスは裏返る石の数だけを数えて石差を求める
+
+探索ノード数・beta枝狩りの回数と時間切れの判定は、このクラスを持つSearchWorkerのものを使う。
+(beta枝狩りは合法手を並べ替える段のみ数え、偶数理論で並べる段と残り4マス以下は数えない)
+*/
+class EndgameSolver {
+    // 定数
+    private static final int HASH_EMPTIES = 10; // 置換表を使う最小の空きマス数
+    private static final int PARITY_EMPTIES = 6; // 偶数理論だけで並べ替える最大の空きマス数
+    private static final int MAX_EMPTIES = 64;
+    private static final int MAX_MOVES = 32; // 1局面の合法手の最大数
+    private static final int TT_MOVE_ORDER = 1 << 30; // 置換表の最善手の並べ替えスコア
+    static final int MAX_DISC_DIFF = 64; // 石差の最大値
+
+    private static final long CORNERS = 0x8100000000000081L; // 四隅
+
+    // 盤面の4つの領域(左上, 右上, 左下, 右下の4x4)
+    private static final long[] QUADRANTS = {
+            0x000000000f0f0f0fL, 0x00000000f0f0f0f0L, 0x0f0f0f0f00000000L, 0xf0f0f0f000000000L
+    };
+
+    private final SearchWorker worker; // ノード数・時間切れの管理
+    private final TranspositionTable transpositionTable;
+    private boolean moveOrdering = true; // 手の並べ替えを行うか(falseなら左上から順に探索)
+
+    // 空きマス数ごとの作業用バッファ(探索中に配列を生成しない)
+    private final int[][] moveBuffer = new int[MAX_EMPTIES + 1][MAX_MOVES];
+    private final int[][] orderScoreBuffer = new int[MAX_EMPTIES + 1][MAX_MOVES];
+    private final int[][] smallSquares = new int[5][4]; // 残り4マス以下の空きマスの並び
+
+    EndgameSolver(SearchWorker worker, TranspositionTable transpositionTable) {
+        this.worker = worker;
+        this.transpositionTable = transpositionTable;
+    }
+
+    void setMoveOrdering(boolean moveOrdering) {
+        this.moveOrdering = moveOrdering;
+    }
+
+    /*
+    局面を終局まで読み、手番側から見た石差を返すメソッド
+    board: 現在の盤面(探索後は元に戻っている)
+    currentColor: 手番(BitBoard.BLACK or BitBoard.WHITE)
+    alpha, beta: 石差の探索窓。(-1, 1)なら勝ち・負け・引き分けのみ判定する。
+    戻り値がalpha以下ならその値は上限、beta以上なら下限を表す。
+    */
+    int solve(BitBoard board, int currentColor, int alpha, int beta) {
+        int empties = board.countEmpty();
+        if (empties >= HASH_EMPTIES) {
+            return solveHash(board, currentColor, alpha, beta, empties);
+        }
+        long player = board.getStones(currentColor);
+        long opponent = board.getStones(BitBoard.opponentColor(currentColor));
+        return solveRaw(player, opponent, alpha, beta, empties);
+    }
+
+    /*
+    置換表を使う探索(空きマスがHASH_EMPTIES以上)
+    置換表には石差をそのまま記録し、通常探索とはキーをCPU.ENDGAME_KEYで区別する。
+    */
+    private int solveHash(BitBoard board, int currentColor, int alpha, int beta, int empties) {
+        if (worker.isTimeUp()) {
+            return 0;
+        }
+        int opponentColor = BitBoard.opponentColor(currentColor);
+        long possibleMoves = board.getValidMoves(currentColor);
+        if (possibleMoves == 0) {
+            if (board.getValidMoves(opponentColor) == 0) { // 両者とも打てなければ終局
+                return Long.bitCount(board.getStones(currentColor)) - Long.bitCount(board.getStones(opponentColor));
+            }
+            return -solveHash(board, opponentColor, -beta, -alpha, empties); // パス
+        }
+
+        // 完全読みの結果は常に終局までの正確な値なので、深さを問わず再利用できる
+        long key = board.getHash(currentColor) ^ CPU.ENDGAME_KEY;
+        long entry = transpositionTable.probe(key);
+        if (entry != 0) {
+            int ttScore = TranspositionTable.getScore(entry);
+            int bound = TranspositionTable.getBound(entry);
+            if (bound == TranspositionTable.BOUND_EXACT
+                    || (bound == TranspositionTable.BOUND_LOWER && ttScore >= beta)
+                    || (bound == TranspositionTable.BOUND_UPPER && ttScore <= alpha)) {
+                return ttScore;
+            }
+        }
+        int alphaOrig = alpha;
+        int bestMove = TranspositionTable.NO_MOVE;
+        int ttMove = (entry != 0) ? TranspositionTable.getMove(entry) : TranspositionTable.NO_MOVE;
+
+        int moveCount = orderMoves(board.getStones(currentColor), board.getStones(opponentColor),
+                possibleMoves, ttMove, empties);
+        int[] moveList = moveBuffer[empties];
+        for (int i = 0; i < moveCount; i++) {
+            int move = moveList[i];
+            long flips = board.makeMove(move, currentColor);
+            int score;
+            if (i == 0) {
+                score = -solveHashChild(board, opponentColor, -beta, -alpha, empties - 1);
+            } else {
+                // 2手目以降は最善手より良くならないことを狭い探索窓で確かめ、良かった場合のみ探索し直す
+                score = -solveHashChild(board, opponentColor, -alpha - 1, -alpha, empties - 1);
+                if (score > alpha && score < beta && !worker.isAborted()) {
+                    score = -solveHashChild(board, opponentColor, -beta, -score, empties - 1);
+                }
+            }
+            board.undoMove(move, flips, currentColor);
+            if (worker.isAborted()) {
+                return 0; // 打ち切られた結果は置換表に残さない
+            }
+
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+            }
+            if (alpha >= beta) {
+                worker.countCutoff(i == 0);
+                break;
+            }
+        }
+        transpositionTable.store(key, empties, SearchWorker.boundType(alpha, alphaOrig, beta), alpha, bestMove);
+        return alpha;
+    }
+
+    // 置換表を使う探索から子局面を探索するメソッド
+    private int solveHashChild(BitBoard board, int currentColor, int alpha, int beta, int empties) {
+        if (empties >= HASH_EMPTIES) {
+            return solveHash(board, currentColor, alpha, beta, empties);
+        }
+        long player = board.getStones(currentColor);
+        long opponent = board.getStones(BitBoard.opponentColor(currentColor));
+        return solveRaw(player, opponent, alpha, beta, empties);
+    }
+
+    // 空きマスの数に応じた探索に振り分けるメソッド(置換表を使わない範囲)
+    private int solveRaw(long player, long opponent, int alpha, int beta, int empties) {
+        if (empties > 4) {
+            return solveShallow(player, opponent, alpha, beta, empties);
+        } else if (empties == 0) {
+            return Long.bitCount(player) - Long.bitCount(opponent);
+        }
+        // 残りの空きマスを奇数個の領域から順に並べておく(以降の段ではこの順序を保つ)
+        long empty = ~(player | opponent);
+        long odd = oddQuadrants(empty);
+        int[] squares = smallSquares[empties];
+        int count = 0;
+        for (long bits = empty & odd; bits != 0; bits &= bits - 1) {
+            squares[count++] = Long.numberOfTrailingZeros(bits);
+        }
+        for (long bits = empty & ~odd; bits != 0; bits &= bits - 1) {
+            squares[count++] = Long.numberOfTrailingZeros(bits);
+        }
+        return (empties == 1) ? solve1(player, opponent, squares[0]) : solveSmall(player, opponent, alpha, beta, empties);
+    }
+
+    /*
+    盤面を書き換えずに探索するメソッド(空きマスが5 - HASH_EMPTIES-1)
+    打った後の黒石・白石をそのまま引数で渡すので、取り消しの処理は不要。
+    */
+    private int solveShallow(long player, long opponent, int alpha, int beta, int empties) {
+        if (worker.isTimeUp()) {
+            return 0;
+        }
+        long possibleMoves = BitBoard.getLegalMoves(player, opponent);
+        if (possibleMoves == 0) {
+            if (BitBoard.getLegalMoves(opponent, player) == 0) {
+                return Long.bitCount(player) - Long.bitCount(opponent);
+            }
+            return -solveShallow(opponent, player, -beta, -alpha, empties);
+        }
+
+        if (empties <= PARITY_EMPTIES) {
+            // 空きマスが奇数個の領域の手を先に、偶数個の領域の手を後に探索する
+            long odd = oddQuadrants(~(player | opponent));
+            for (int group = 0; group < 2; group++) {
+                long moves = (group == 0) ? possibleMoves & odd : possibleMoves & ~odd;
+                for (; moves != 0; moves &= moves - 1) {
+                    int move = Long.numberOfTrailingZeros(moves);
+                    long flips = BitBoard.getFlips(player, opponent, move);
+                    int score = -solveRaw(opponent & ~flips, player | flips | (1L << move), -beta, -alpha, empties - 1);
+                    if (worker.isAborted()) {
+                        return 0;
+                    }
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) {
+                            return alpha;
+                        }
+                    }
+                }
+            }
+            return alpha;
+        }
+
+        int moveCount = orderMoves(player, opponent, possibleMoves, TranspositionTable.NO_MOVE, empties);
+        int[] moveList = moveBuffer[empties];
+        for (int i = 0; i < moveCount; i++) {
+            int move = moveList[i];
+            long flips = BitBoard.getFlips(player, opponent, move);
+            long newPlayer = opponent & ~flips;
+            long newOpponent = player | flips | (1L << move);
+            int score;
+            if (i == 0) {
+                score = -solveRaw(newPlayer, newOpponent, -beta, -alpha, empties - 1);
+            } else {
+                score = -solveRaw(newPlayer, newOpponent, -alpha - 1, -alpha, empties - 1);
+                if (score > alpha && score < beta && !worker.isAborted()) {
+                    score = -solveRaw(newPlayer, newOpponent, -beta, -score, empties - 1);
+                }
+            }
+            if (worker.isAborted()) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    worker.countCutoff(i == 0);
+                    break;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    /*
+    残り2 - 4マスの探索
+    smallSquares[empties]に並べた空きマスに順に打てるかを試し、合法手の生成や並べ替えは行わない。
+    打ったマスを除いた空きマスをsmallSquares[empties - 1]に同じ順序で並べて次の段に渡す。
+    */
+    private int solveSmall(long player, long opponent, int alpha, int beta, int empties) {
+        worker.isTimeUp(); // ノード数を数える(打ち切りは上の段で判定する)
+        int[] squares = smallSquares[empties];
+        int[] next = smallSquares[empties - 1];
+        boolean moved = false;
+        for (int i = 0; i < empties; i++) {
+            int move = squares[i];
+            long flips = BitBoard.getFlips(player, opponent, move);
+            if (flips == 0) {
+                continue;
+            }
+            moved = true;
+            for (int j = 0, k = 0; j < empties; j++) {
+                if (j != i) {
+                    next[k++] = squares[j];
+                }
+            }
+            long newPlayer = player | flips | (1L << move);
+            long newOpponent = opponent & ~flips;
+            int score = (empties == 2)
+                    ? -solve1(newOpponent, newPlayer, next[0])
+                    : -solveSmall(newOpponent, newPlayer, -beta, -alpha, empties - 1);
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    return alpha;
+                }
+            }
+        }
+        if (moved) {
+            return alpha;
+        }
+
+        // 打てる場所がなければ、相手が打てる場合のみパスする
+        for (int i = 0; i < empties; i++) {
+            if (BitBoard.getFlips(opponent, player, squares[i]) != 0) {
+                return -solveSmall(opponent, player, -beta, -alpha, empties);
+            }
+        }
+        return Long.bitCount(player) - Long.bitCount(opponent); // 両者とも打てない
+    }
+
+    /*
+    最後の1マスの探索
+    石を置いた盤面は作らず、裏返る石の数だけから石差を計算する。
+    手番側が打てなければ相手が打ち、どちらも打てなければ空きマスを残したまま終局する。
+    */
+    private int solve1(long player, long opponent, int move) {
+        worker.isTimeUp(); // ノード数を数える
+        int diff = 2 * Long.bitCount(player) - (MAX_EMPTIES - 1); // 打つ前の石差(石は全部で63個)
+        int flipped = Long.bitCount(BitBoard.getFlips(player, opponent, move));
+        if (flipped > 0) {
+            return diff + 2 * flipped + 1;
+        }
+        flipped = Long.bitCount(BitBoard.getFlips(opponent, player, move));
+        if (flipped > 0) {
+            return diff - 2 * flipped - 1;
+        }
+        return diff;
+    }
+
+    /*
+    合法手を探索する順に並べてmoveBuffer[empties]に格納し、手の数を返すメソッド
+    置換表の最善手を最初にし、残りは打った後の相手の合法手が少ない順(速さ優先)とする。
+    相手の合法手の数が同じ場合は、空きマスが奇数個の領域の手を先にする。
+    */
+    private int orderMoves(long player, long opponent, long possibleMoves, int ttMove, int empties) {
+        int[] moveList = moveBuffer[empties];
+        int[] orderScores = orderScoreBuffer[empties];
+        long odd = oddQuadrants(~(player | opponent));
+        int count = 0;
+
+        for (long moves = possibleMoves; moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            int orderScore;
+            if (!moveOrdering) {
+                orderScore = 0;
+            } else if (move == ttMove) {
+                orderScore = TT_MOVE_ORDER;
+            } else {
+                long flips = BitBoard.getFlips(player, opponent, move);
+                long placed = player | flips | (1L << move);
+                long opponentMoves = BitBoard.getLegalMoves(opponent & ~flips, placed);
+                int mobility = Long.bitCount(opponentMoves) + Long.bitCount(opponentMoves & CORNERS);
+                int potential = Long.bitCount(BitBoard.neighbors(placed) & ~(placed | opponent) & ~(1L << move));
+                orderScore = -16 * mobility - potential + (int) ((odd >>> move) & 1);
+            }
+
+            // 挿入ソート(スコアの降順、同じスコアなら元の順序を保つ)
+            int i = count++;
+            while (i > 0 && orderScores[i - 1] < orderScore) {
+                orderScores[i] = orderScores[i - 1];
+                moveList[i] = moveList[i - 1];
+                i--;
+            }
+            orderScores[i] = orderScore;
+            moveList[i] = move;
+        }
+        return count;
+    }
+
+    // 空きマスが奇数個ある領域を全て含むマスクを返すメソッド
+    private static long oddQuadrants(long empty) {
+        long odd = 0L;
+        for (long quadrant : QUADRANTS) {
+            if ((Long.bitCount(empty & quadrant) & 1) != 0) {
+                odd |= quadrant;
+            }
+        }
+        return odd;
+    }
+
+    /*
+    石差とCPUの評価値(勝ち: WIN_SCORE + 石差, 負け: -WIN_SCORE + 石差, 引き分け: 0)を相互に変換するメソッド
+    評価値の探索窓(alpha, beta)を石差の探索窓に直すときは、
+    lowerDiff(alpha)以下の石差は評価値がalpha以下、upperDiff(beta)以上の石差は評価値がbeta以上になる。
+    */
+    static int toScore(int discDiff) {
+        if (discDiff > 0) {
+            return CPU.WIN_SCORE + discDiff;
+        } else if (discDiff < 0) {
+            return -CPU.WIN_SCORE + discDiff;
+        } else {
+            return CPU.DRAW_SCORE;
+        }
+    }
+
+    static int lowerDiff(int alpha) {
+        if (alpha > CPU.WIN_SCORE) {
+            return Math.min(alpha - CPU.WIN_SCORE, MAX_DISC_DIFF);
+        } else if (alpha >= CPU.DRAW_SCORE) {
+            return 0;
+        } else if (alpha >= -CPU.WIN_SCORE - 1) {
+            return -1;
+        } else {
+            return Math.max(alpha + CPU.WIN_SCORE, -MAX_DISC_DIFF - 1);
+        }
+    }
+
+    static int upperDiff(int beta) {
+        if (beta < -CPU.WIN_SCORE) {
+            return Math.max(beta + CPU.WIN_SCORE, -MAX_DISC_DIFF);
+        } else if (beta <= CPU.DRAW_SCORE) {
+            return 0;
+        } else if (beta <= CPU.WIN_SCORE + 1) {
+            return 1;
+        } else {
+            return Math.min(beta - CPU.WIN_SCORE, MAX_DISC_DIFF + 1);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.Random;
+
+// EndgameSolverクラスのテスト
+// 空きマスの少ない局面では単純な全探索(枝刈りなし)と結果を比較し、多い局面では探索時間を計測する
+public class EndgameSolverDriver {
+    private static final long SEED = 20250801L; // 局面生成用の乱数シード(固定)
+    private static final int CHECK_POSITIONS = 300; // 全探索と比較する局面数
+    private static final int CHECK_MAX_EMPTIES = 9; // 全探索と比較する局面の最大空きマス数
+    private static final int[] BENCH_EMPTIES = { 14, 16, 18 }; // 時間を計測する空きマス数
+    private static final int BENCH_POSITIONS = 3; // 空きマス数ごとの計測局面数
+
+    public static void main(String[] args) {
+        System.out.println("EndgameSolverクラスのテスト(EndgameSolverDriver.java)");
+        CPU cpu = new CPU("Black", "強い");
+        TranspositionTable table = cpu.getTranspositionTable();
+        SearchWorker worker = new SearchWorker(cpu, table);
+        EndgameSolver solver = new EndgameSolver(worker, table);
+        Random random = new Random(SEED);
+
+        // 1. 全探索との比較
+        System.out.println("\n1. 全探索との比較(空きマス1 - " + CHECK_MAX_EMPTIES + ", " + CHECK_POSITIONS + " 局面)");
+        int exactMismatch = 0;
+        int wldMismatch = 0;
+        for (int n = 0; n < CHECK_POSITIONS; n++) {
+            int empties = 1 + n % CHECK_MAX_EMPTIES;
+            int[] color = new int[1];
+            BitBoard board = createPosition(random, empties, color);
+            if (board == null) {
+                continue;
+            }
+            int expected = minimax(board.getStones(color[0]), board.getStones(BitBoard.opponentColor(color[0])), false);
+            startSearch(worker);
+            table.clear();
+            int exact = solver.solve(board, color[0], -EndgameSolver.MAX_DISC_DIFF - 1, EndgameSolver.MAX_DISC_DIFF + 1);
+            if (exact != expected) {
+                exactMismatch++;
+            }
+            table.clear();
+            int wld = solver.solve(board, color[0], -1, 1);
+            if (Integer.signum(wld) != Integer.signum(expected)) {
+                wldMismatch++;
+            }
+        }
+        System.out.println("   石差の不一致: " + exactMismatch + (exactMismatch == 0 ? " (成功)" : " (失敗)"));
+        System.out.println("   勝敗の不一致: " + wldMismatch + (wldMismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // 2. 評価値との変換
+        System.out.println("\n2. 石差と評価値の変換テスト");
+        int convertMismatch = 0;
+        int[] windows = { Integer.MIN_VALUE + 1, -CPU.WIN_SCORE - 3, -CPU.WIN_SCORE - 1, -CPU.WIN_SCORE, -1, 0, 1,
+                CPU.WIN_SCORE, CPU.WIN_SCORE + 1, CPU.WIN_SCORE + 5, Integer.MAX_VALUE - 1 };
+        for (int bound : windows) {
+            for (int diff = -EndgameSolver.MAX_DISC_DIFF; diff <= EndgameSolver.MAX_DISC_DIFF; diff++) {
+                int score = EndgameSolver.toScore(diff);
+                if ((diff <= EndgameSolver.lowerDiff(bound)) != (score <= bound)
+                        || (diff >= EndgameSolver.upperDiff(bound)) != (score >= bound)) {
+                    convertMismatch++;
+                }
+            }
+        }
+        System.out.println("   不一致: " + convertMismatch + (convertMismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // 3. 探索時間
+        System.out.println("\n3. 探索時間(空きマスごとに " + BENCH_POSITIONS + " 局面の合計)");
+        System.out.println(" 空き | 完全読み(ノード数, ミリ秒) | 必勝読み(ノード数, ミリ秒)");
+        for (int empties : BENCH_EMPTIES) {
+            long exactNodes = 0;
+            long exactTime = 0;
+            long wldNodes = 0;
+            long wldTime = 0;
+            for (int n = 0; n < BENCH_POSITIONS; n++) {
+                int[] color = new int[1];
+                BitBoard board = createPosition(random, empties, color);
+                if (board == null) {
+                    n--;
+                    continue;
+                }
+                table.clear();
+                startSearch(worker);
+                long start = System.nanoTime();
+                solver.solve(board, color[0], -EndgameSolver.MAX_DISC_DIFF - 1, EndgameSolver.MAX_DISC_DIFF + 1);
+                exactTime += System.nanoTime() - start;
+                exactNodes += worker.getNodes();
+
+                table.clear();
+                startSearch(worker);
+                start = System.nanoTime();
+                solver.solve(board, color[0], -1, 1);
+                wldTime += System.nanoTime() - start;
+                wldNodes += worker.getNodes();
+            }
+            System.out.printf("%5d | %12d %8d | %12d %8d%n", empties,
+                    exactNodes, exactTime / 1_000_000L, wldNodes, wldTime / 1_000_000L);
+        }
+
+        System.out.println("\nEndgameSolverクラスのテストを終了します。");
+    }
+
+    // 時間制限なしで探索を始める
+    private static void startSearch(SearchWorker worker) {
+        worker.prepare(Long.MAX_VALUE, true, true, null);
+        worker.startIteration(false);
+    }
+
+    // 初期配置から空きマスがemptiesになるまでランダムに打ち進めた局面を返す(手番はcolor[0])
+    // 途中で終局した場合や、手番側に合法手がない場合はnullを返す
+    private static BitBoard createPosition(Random random, int empties, int[] color) {
+        BitBoard board = new BitBoard();
+        int current = BitBoard.BLACK;
+        while (board.countEmpty() > empties) {
+            long moves = board.getValidMoves(current);
+            if (moves == 0) {
+                current = BitBoard.opponentColor(current);
+                if (board.getValidMoves(current) == 0) {
+                    return null;
+                }
+                continue;
+            }
+            int index = random.nextInt(Long.bitCount(moves));
+            for (int k = 0; k < index; k++) {
+                moves &= moves - 1;
+            }
+            board.makeMove(Long.numberOfTrailingZeros(moves), current);
+            current = BitBoard.opponentColor(current);
+        }
+        if (board.getValidMoves(current) == 0) {
+            return null;
+        }
+        color[0] = current;
+        return board;
+    }
+
+    // 枝刈りを行わない全探索で手番側から見た最終石差を求める
+    private static int minimax(long player, long opponent, boolean passed) {
+        long moves = BitBoard.getLegalMoves(player, opponent);
+        if (moves == 0) {
+            if (passed) {
+                return Long.bitCount(player) - Long.bitCount(opponent); // 両者とも打てないので終局
+            }
+            return -minimax(opponent, player, true);
+        }
+        int best = Integer.MIN_VALUE;
+        for (; moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            long flips = BitBoard.getFlips(player, opponent, move);
+            best = Math.max(best, -minimax(opponent & ~flips, player | flips | (1L << move), false));
+        }
+        return best;
+    }
+}
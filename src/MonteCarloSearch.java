@@ -0,0 +1,435 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+モンテカルロ木探索(MCTS)で手を決めるクラス(CPUの強さ「モンテカルロ」で使う)
+UCB1で選んだ葉から終局までランダムに打ち(プレイアウト)、勝ち・負け・引き分けを木に伝える。
+プレイアウトは盤面をビットボード(long 2つ)のまま進めるので、オブジェクトを生成しない。
+
+ノードは配列で表したノードプールから確保し、探索中にnewしない。子ノードは連続した番号で確保する。
+複数のスレッドが同じ木を同時に探索する(ツリー並列)。降りるときに訪問回数だけを先に加える(バーチャルロス)ことで、
+報酬が戻るまでの間はその手の勝率が下がって見え、他のスレッドが別の手を調べるようになる。
+探索の後は木を残しておき、次の手では前の木のうち実際の局面に対応する部分木を新しいプールに詰めて再利用する。
+*/
+class MonteCarloSearch {
+    // 定数
+    static final int PASS = MoveAnalysis.PASS; // パスを表す手
+    private static final double EXPLORATION = 0.8; // UCB1の探索項の係数
+    private static final int EXPAND_VISITS = 2; // この回数訪問された葉を展開する
+    private static final int REUSE_DEPTH = 2; // 前の木の再利用で実際の局面を探す深さ(自分の手と相手の手)
+    private static final int MAX_PLY = 128; // 木の最大の深さ(パスを含む)
+    private static final int UNEXPANDED = -1; // 子ノードの数: まだ展開していない
+    private static final int EXPANDING = -2; // 子ノードの数: 他のスレッドが展開中
+
+    private final CPU owner; // 中断の要求を共有するCPU
+    private NodePool tree; // 探索中の木
+    private NodePool spare; // 部分木を詰め直すための予備のプール
+    private ForkJoinPool pool; // 木を並列に探索するスレッドプール(必要になった時点で生成)
+
+    // 木の根の局面(黒石, 白石, 手番)。木が空ならrootColorは0
+    private long rootBlack;
+    private long rootWhite;
+    private int rootColor;
+
+    // 探索中の状態
+    private long deadline; // 探索を打ち切る時刻(ナノ秒)
+    private long maxPlayouts; // この1手で行うプレイアウトの上限
+    private final AtomicLong playouts = new AtomicLong(); // この1手で行ったプレイアウトの数
+    private volatile int maxDepth; // 木の中で到達した最大の深さ
+    private long reusedVisits; // 前の木から引き継いだ根の訪問回数
+
+    MonteCarloSearch(CPU owner, int poolNodes) {
+        this.owner = owner;
+        this.tree = new NodePool(poolNodes);
+        this.spare = new NodePool(poolNodes);
+    }
+
+    /*
+    局面(手番color)の手を探索し、{手のビット番号, スコア}を返すメソッド
+    timeLimit(ミリ秒)を過ぎるか、プレイアウトがplayoutLimitに達するか、CPUで中断が要求されると終える。
+    スコアは選んだ手の勝率(引き分けは0.5勝)を-100から100に換算した値(手番側から見た値)。
+    合法手がなければ呼ばないこと。
+    */
+    int[] search(BitBoard board, int color, long timeLimit, long playoutLimit, int threads) {
+        deadline = System.nanoTime() + timeLimit * 1_000_000L;
+        maxPlayouts = playoutLimit;
+        playouts.set(0);
+        maxDepth = 0;
+        reuseTree(board.getBlack(), board.getWhite(), color);
+        reusedVisits = tree.visits.get(0);
+
+        long player = board.getStones(color);
+        long opponent = board.getStones(BitBoard.opponentColor(color));
+        if (tree.childCount.get(0) == UNEXPANDED) {
+            expand(tree, 0, player, opponent); // プレイアウトを1回も行えなくても手を返せるようにする
+        }
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int t = 1; t < threads; t++) {
+            long seed = System.nanoTime() ^ (0x9e3779b97f4a7c15L * t);
+            tasks.add(() -> {
+                runPlayouts(player, opponent, new SplittableRandom(seed));
+                return null;
+            });
+        }
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            ForkJoinPool executor = tasks.isEmpty() ? null : getPool(threads - 1);
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+        } catch (RejectedExecutionException e) {
+            owner.cancel(); // shutdown後は探索を中断する
+        }
+        runPlayouts(player, opponent, new SplittableRandom(System.nanoTime()));
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                owner.cancel();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        // 訪問回数が最も多い手を選ぶ
+        int first = tree.firstChild[0];
+        int best = first;
+        for (int child = first + 1; child < first + tree.childCount.get(0); child++) {
+            if (tree.visits.get(child) > tree.visits.get(best)) {
+                best = child;
+            }
+        }
+        int visits = tree.visits.get(best);
+        int score = (visits == 0) ? 0 : (int) Math.round(100.0 * tree.rewards.get(best) / visits - 100);
+        return new int[] { tree.move[best], score };
+    }
+
+    // 直前のsearchで行ったプレイアウトの数を返すメソッド
+    long getPlayouts() {
+        return playouts.get();
+    }
+
+    // 直前のsearchで木の中で到達した最大の深さを返すメソッド
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    // 直前のsearchで前の木から引き継いだ根の訪問回数を返すメソッド
+    long getReusedVisits() {
+        return reusedVisits;
+    }
+
+    // 現在の木のノード数を返すメソッド
+    int getTreeSize() {
+        return tree.size.get();
+    }
+
+    // 木を捨てるメソッド(新しい対局を始めるときなど)
+    void clear() {
+        rootColor = 0;
+    }
+
+    // 並列探索用のスレッドを停止するメソッド
+    synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    // 時間・プレイアウト数・中断の要求を確認しながらプレイアウトを繰り返すメソッド(各スレッドで実行する)
+    private void runPlayouts(long rootPlayer, long rootOpponent, SplittableRandom random) {
+        int[] path = new int[MAX_PLY + 1];
+        while (playouts.getAndIncrement() < maxPlayouts) {
+            playout(rootPlayer, rootOpponent, path, random);
+            if (System.nanoTime() > deadline || owner.isCancelRequested()) {
+                break;
+            }
+        }
+        playouts.updateAndGet(n -> Math.min(n, maxPlayouts)); // 上限を超えて数えた分を戻す
+    }
+
+    /*
+    根から1回プレイアウトを行うメソッド
+    UCB1で葉まで降り(訪問回数を先に加える)、必要なら展開し、そこから終局までランダムに打って結果を根まで戻す。
+    報酬はノードに入る手を打った側から見た値で、勝ち2, 引き分け1, 負け0とする。
+    */
+    private void playout(long player, long opponent, int[] path, SplittableRandom random) {
+        NodePool nodes = tree;
+        int node = 0;
+        int depth = 0;
+        path[0] = 0;
+        nodes.visits.incrementAndGet(0);
+        while (depth < MAX_PLY) {
+            int count = nodes.childCount.get(node);
+            if (count == UNEXPANDED) {
+                if (nodes.visits.get(node) < EXPAND_VISITS && node != 0) {
+                    break;
+                }
+                count = expand(nodes, node, player, opponent);
+            }
+            if (count <= 0) { // 終局、他のスレッドが展開中、またはプールが一杯
+                break;
+            }
+            node = select(nodes, node, count);
+            nodes.visits.incrementAndGet(node); // バーチャルロス
+            path[++depth] = node;
+            int move = nodes.move[node];
+            if (move != PASS) {
+                long flips = BitBoard.getFlips(player, opponent, move);
+                player |= flips | (1L << move);
+                opponent &= ~flips;
+            }
+            long swap = player;
+            player = opponent;
+            opponent = swap;
+        }
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+
+        int reward = rollout(player, opponent, random); // 葉の手番側から見た報酬
+        for (int i = depth; i >= 1; i--) {
+            reward = 2 - reward; // ノードに入る手を打った側から見た値にする
+            nodes.rewards.addAndGet(path[i], reward);
+        }
+    }
+
+    // UCB1の値が最大の子ノードを返すメソッド(訪問していない子ノードがあればそれを返す)
+    private static int select(NodePool nodes, int node, int count) {
+        int first = nodes.firstChild[node];
+        double logParent = Math.log(Math.max(1, nodes.visits.get(node)));
+        int best = first;
+        double bestValue = Double.NEGATIVE_INFINITY;
+        for (int child = first; child < first + count; child++) {
+            int visits = nodes.visits.get(child);
+            if (visits == 0) {
+                return child;
+            }
+            double value = nodes.rewards.get(child) / (2.0 * visits) + EXPLORATION * Math.sqrt(logParent / visits);
+            if (value > bestValue) {
+                bestValue = value;
+                best = child;
+            }
+        }
+        return best;
+    }
+
+    /*
+    ノードを展開し、子ノードの数を返すメソッド
+    他のスレッドが展開中であればEXPANDINGを、プールが一杯で展開できなければUNEXPANDEDのまま0を返す。
+    合法手がなく相手に合法手があればパスの子ノードを1つ作り、どちらにもなければ終局(子ノード0)とする。
+    */
+    private static int expand(NodePool nodes, int node, long player, long opponent) {
+        if (!nodes.childCount.compareAndSet(node, UNEXPANDED, EXPANDING)) {
+            return nodes.childCount.get(node);
+        }
+        long moves = BitBoard.getLegalMoves(player, opponent);
+        int count = (moves != 0) ? Long.bitCount(moves) : (BitBoard.getLegalMoves(opponent, player) != 0) ? 1 : 0;
+        int first = nodes.allocate(count);
+        if (first < 0) {
+            nodes.childCount.set(node, UNEXPANDED); // プールが一杯なので葉のままにする
+            return 0;
+        }
+        if (moves == 0) {
+            if (count == 1) {
+                nodes.move[first] = PASS;
+            }
+        } else {
+            for (int i = first; moves != 0; moves &= moves - 1, i++) {
+                nodes.move[i] = Long.numberOfTrailingZeros(moves);
+            }
+        }
+        nodes.firstChild[node] = first;
+        nodes.childCount.set(node, count); // 子ノードの内容を書いてから公開する
+        return count;
+    }
+
+    // 終局までランダムに打ち、最初の手番側から見た報酬(勝ち2, 引き分け1, 負け0)を返すメソッド
+    private static int rollout(long player, long opponent, SplittableRandom random) {
+        boolean swapped = false; // playerが最初の手番側の相手になっているか
+        boolean passed = false;
+        while (true) {
+            long moves = BitBoard.getLegalMoves(player, opponent);
+            if (moves == 0) {
+                if (passed) {
+                    break; // 両者とも打てない
+                }
+                passed = true;
+            } else {
+                passed = false;
+                for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                    moves &= moves - 1;
+                }
+                int move = Long.numberOfTrailingZeros(moves);
+                long flips = BitBoard.getFlips(player, opponent, move);
+                player |= flips | (1L << move);
+                opponent &= ~flips;
+            }
+            long swap = player;
+            player = opponent;
+            opponent = swap;
+            swapped = !swapped;
+        }
+        int diff = Long.bitCount(player) - Long.bitCount(opponent);
+        if (swapped) {
+            diff = -diff;
+        }
+        return (diff > 0) ? 2 : (diff == 0) ? 1 : 0;
+    }
+
+    /*
+    前の木の中から局面(black, white, 手番color)に対応するノードを探し、その部分木を根として詰め直すメソッド
+    根から REUSE_DEPTH 手以内に見つからなければ木を空にする。
+    */
+    private void reuseTree(long black, long white, int color) {
+        int found = (rootColor == 0) ? -1
+                : findNode(0, rootBlack, rootWhite, rootColor, black, white, color, REUSE_DEPTH);
+        spare.reset();
+        if (found >= 0) {
+            copySubtree(tree, found, spare);
+        } else {
+            spare.allocate(1); // 新しい根
+        }
+        NodePool swap = tree;
+        tree = spare;
+        spare = swap;
+        rootBlack = black;
+        rootWhite = white;
+        rootColor = color;
+    }
+
+    // nodeの局面から展開済みの子ノードをたどり、目的の局面のノードを返すメソッド(なければ-1)
+    private int findNode(int node, long black, long white, int color, long targetBlack, long targetWhite,
+            int targetColor, int depth) {
+        if (black == targetBlack && white == targetWhite && color == targetColor) {
+            return node;
+        }
+        int count = tree.childCount.get(node);
+        if (depth == 0 || count <= 0) {
+            return -1;
+        }
+        for (int child = tree.firstChild[node]; child < tree.firstChild[node] + count; child++) {
+            int move = tree.move[child];
+            long nextBlack = black;
+            long nextWhite = white;
+            if (move != PASS) {
+                long flips = (color == BitBoard.BLACK) ? BitBoard.getFlips(black, white, move)
+                        : BitBoard.getFlips(white, black, move);
+                if (color == BitBoard.BLACK) {
+                    nextBlack |= flips | (1L << move);
+                    nextWhite &= ~flips;
+                } else {
+                    nextWhite |= flips | (1L << move);
+                    nextBlack &= ~flips;
+                }
+            }
+            int found = findNode(child, nextBlack, nextWhite, BitBoard.opponentColor(color), targetBlack, targetWhite,
+                    targetColor, depth - 1);
+            if (found >= 0) {
+                return found;
+            }
+        }
+        return -1;
+    }
+
+    // fromの部分木(根はnode)を幅優先でtoに写すメソッド(toが一杯になったら残りは葉のままにする)
+    private static void copySubtree(NodePool from, int node, NodePool to) {
+        to.allocate(1);
+        to.copyNode(from, node, 0);
+        int[] queue = new int[2 * from.size.get()]; // {fromの番号, toの番号}の並び
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = node;
+        queue[tail++] = 0;
+        while (head < tail) {
+            int source = queue[head++];
+            int target = queue[head++];
+            int count = from.childCount.get(source);
+            if (count < 0) {
+                continue;
+            }
+            int first = to.allocate(count);
+            if (first < 0) {
+                continue; // 展開していない葉として残す
+            }
+            for (int i = 0; i < count; i++) {
+                to.copyNode(from, from.firstChild[source] + i, first + i);
+                queue[tail++] = from.firstChild[source] + i;
+                queue[tail++] = first + i;
+            }
+            to.firstChild[target] = first;
+            to.childCount.set(target, count);
+        }
+    }
+
+    // スレッドプールを返すメソッド(初回呼び出し時に生成する)
+    private synchronized ForkJoinPool getPool(int parallelism) {
+        if (pool == null || pool.getParallelism() != parallelism) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            pool = new ForkJoinPool(parallelism);
+        }
+        return pool;
+    }
+
+    /*
+    ノードプール(ノードの各値を番号で引く配列の組)
+    ノードの確保は番号を進めるだけで、resetで全て解放する。
+    */
+    private static final class NodePool {
+        final int[] move; // ノードに入る手(パスはPASS)
+        final int[] firstChild; // 最初の子ノードの番号
+        final AtomicIntegerArray childCount; // 子ノードの数(UNEXPANDED, EXPANDINGも使う)
+        final AtomicIntegerArray visits; // 訪問回数(バーチャルロスを含む)
+        final AtomicIntegerArray rewards; // 報酬の合計
+        final AtomicInteger size = new AtomicInteger(); // 確保したノード数
+
+        NodePool(int capacity) {
+            move = new int[capacity];
+            firstChild = new int[capacity];
+            childCount = new AtomicIntegerArray(capacity);
+            visits = new AtomicIntegerArray(capacity);
+            rewards = new AtomicIntegerArray(capacity);
+        }
+
+        // count個の連続したノードを確保し、最初の番号を返す(足りなければ-1)
+        int allocate(int count) {
+            int first;
+            do {
+                first = size.get();
+                if (first + count > move.length) {
+                    return -1;
+                }
+            } while (!size.compareAndSet(first, first + count));
+            for (int i = first; i < first + count; i++) {
+                childCount.set(i, UNEXPANDED);
+                visits.set(i, 0);
+                rewards.set(i, 0);
+            }
+            return first;
+        }
+
+        void reset() {
+            size.set(0);
+        }
+
+        // fromのノードsourceの手・訪問回数・報酬をtargetに写す(子ノードは写さない)
+        void copyNode(NodePool from, int source, int target) {
+            move[target] = from.move[source];
+            visits.set(target, from.visits.get(source));
+            rewards.set(target, from.rewards.get(source));
+        }
+    }
+}
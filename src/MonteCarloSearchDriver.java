@@ -0,0 +1,190 @@
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+public class MonteCarloSearchDriver {
+    private static final int POSITIONS = 30; // 合法手のテストに使うランダム局面数
+    private static final int PLAYOUTS = 3000; // 1手あたりのプレイアウトの上限(合法手・再利用のテスト)
+    private static final long MATCH_TIME_MS = 100; // 対局のテストでの1手あたりの思考時間
+    private static final int MATCH_PAIRS = 2; // 対局のテストで強さごとに先後を入れ替えて行う対局数
+    private static final String[] LEVELS = { "弱い", "普通", "強い" };
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("MonteCarloSearchクラスのテスト(MonteCarloSearchDriver.java)");
+        PrintStream console = System.out;
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream()); // CPUの1手ごとのログを出さない
+
+        // 1. ランダム局面で合法手を返し、プレイアウトの上限を守るか(1スレッド, 2スレッド)
+        System.out.println("\n1. 合法手・プレイアウトの上限のテスト(" + POSITIONS + " 局面, 上限 " + PLAYOUTS + ")");
+        for (int threads = 1; threads <= 2; threads++) {
+            System.setOut(quiet);
+            CPU black = createCPU("Black", threads);
+            CPU white = createCPU("White", threads);
+            Random random = new Random(threads);
+            int illegal = 0;
+            int overBudget = 0;
+            for (int i = 0; i < POSITIONS; i++) {
+                BitBoard board = randomPosition(random);
+                int color = (random.nextBoolean()) ? BitBoard.BLACK : BitBoard.WHITE;
+                if (board.getValidMoves(color) == 0) {
+                    color = BitBoard.opponentColor(color);
+                }
+                CPU cpu = (color == BitBoard.BLACK) ? black : white;
+                int[] operation = cpu.getCPUOperation(board.toBoard());
+                if (operation[0] < 0 || (board.getValidMoves(color) & (1L << (operation[0] * 8 + operation[1]))) == 0) {
+                    illegal++;
+                }
+                if (cpu.getNodes() != PLAYOUTS) {
+                    overBudget++;
+                }
+            }
+            black.shutdown();
+            white.shutdown();
+            System.setOut(console);
+            System.out.println("   " + threads + "スレッド: 合法手でない手: " + illegal + ", プレイアウト数が上限と異なる: " + overBudget
+                    + ((illegal == 0 && overBudget == 0) ? " (成功)" : " (失敗)"));
+        }
+
+        // 2. 相手が打った後に前の木を再利用するか
+        System.out.println("\n2. 前の手の木の再利用のテスト");
+        System.setOut(quiet);
+        CPU cpu = createCPU("Black", 1);
+        BitBoard board = new BitBoard();
+        int[] operation = cpu.getCPUOperation(board.toBoard());
+        board.makeMove(operation[0] * 8 + operation[1], BitBoard.BLACK);
+        board.makeMove(Long.numberOfTrailingZeros(board.getValidMoves(BitBoard.WHITE)), BitBoard.WHITE);
+        ByteArrayOutputStream log = new ByteArrayOutputStream(); // 「(reused 訪問回数)」をログから読む
+        System.setOut(new PrintStream(log, true, "UTF-8"));
+        cpu.getCPUOperation(board.toBoard());
+        System.setOut(console);
+        String line = log.toString("UTF-8").trim();
+        int from = line.indexOf("(reused ") + "(reused ".length();
+        long reused = Long.parseLong(line.substring(from, line.indexOf(')', from)));
+        System.out.println("   " + line);
+        System.out.println("   引き継いだ根の訪問回数: " + reused + (reused > 0 ? " (成功)" : " (失敗)"));
+        cpu.shutdown();
+
+        // 3. 中断
+        System.out.println("\n3. 探索の中断のテスト");
+        System.setOut(quiet);
+        CPU slow = new CPU("Black", CPU.LEVEL_MCTS);
+        slow.setTimeLimit(60_000);
+        Thread canceller = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            slow.cancel();
+        });
+        long start = System.nanoTime();
+        canceller.start();
+        operation = slow.getCPUOperation(new BitBoard().toBoard());
+        long elapsed = (System.nanoTime() - start) / 1_000_000L;
+        canceller.join();
+        slow.shutdown();
+        System.setOut(console);
+        System.out.println("   中断までの時間: " + elapsed + "ms, 手: [" + operation[0] + ", " + operation[1] + "]"
+                + ((elapsed < 1000 && operation[0] >= 0) ? " (成功)" : " (失敗)"));
+
+        // 4. 強さごとの対局(思考時間をそろえて比較する)
+        System.out.println("\n4. 他の強さとの対局(1手" + MATCH_TIME_MS + "ms, 強さごとに" + (2 * MATCH_PAIRS) + "局)");
+        for (String level : LEVELS) {
+            int wins = 0;
+            int losses = 0;
+            int draws = 0;
+            long mctsNanos = 0;
+            long mctsPlayouts = 0;
+            long otherNanos = 0;
+            long otherNodes = 0;
+            for (int game = 0; game < 2 * MATCH_PAIRS; game++) {
+                boolean mctsBlack = (game % 2 == 0);
+                System.setOut(quiet);
+                CPU mcts = new CPU(mctsBlack ? "Black" : "White", CPU.LEVEL_MCTS);
+                CPU other = new CPU(mctsBlack ? "White" : "Black", level);
+                mcts.setTimeLimit(MATCH_TIME_MS);
+                other.setTimeLimit(MATCH_TIME_MS);
+                CPU[] players = mctsBlack ? new CPU[] { mcts, other } : new CPU[] { other, mcts };
+                long[] nanos = new long[2];
+                long[] nodes = new long[2];
+                int diff = playGame(players, nanos, nodes); // 黒 - 白
+                mcts.shutdown();
+                other.shutdown();
+                System.setOut(console);
+                int mctsDiff = mctsBlack ? diff : -diff;
+                if (mctsDiff > 0) {
+                    wins++;
+                } else if (mctsDiff < 0) {
+                    losses++;
+                } else {
+                    draws++;
+                }
+                int m = mctsBlack ? 0 : 1;
+                mctsNanos += nanos[m];
+                mctsPlayouts += nodes[m];
+                otherNanos += nanos[1 - m];
+                otherNodes += nodes[1 - m];
+            }
+            System.out.printf("   対 %s: %d勝 %d敗 %d分, 思考時間 %.1f秒 (%s %.1f秒), %.0f プレイアウト/秒 (%s %.0f ノード/秒)%n",
+                    level, wins, losses, draws, mctsNanos / 1e9, level, otherNanos / 1e9,
+                    mctsPlayouts / (mctsNanos / 1e9), level, otherNodes / (otherNanos / 1e9));
+        }
+
+        System.out.println("\nMonteCarloSearchクラスのテストを終了します。");
+    }
+
+    // プレイアウトの上限を設定したモンテカルロ木探索のCPU
+    private static CPU createCPU(String turn, int threads) {
+        CPU cpu = new CPU(turn, CPU.LEVEL_MCTS);
+        cpu.setTimeLimit(60_000);
+        cpu.setMaxPlayouts(PLAYOUTS);
+        cpu.setThreads(threads);
+        return cpu;
+    }
+
+    // 1局対局し、石差(黒 - 白)を返す。nanos, nodesに黒・白それぞれの思考時間・探索ノード数を加える
+    private static int playGame(CPU[] players, long[] nanos, long[] nodes) {
+        BitBoard board = new BitBoard();
+        int color = BitBoard.BLACK;
+        while (true) {
+            if (board.getValidMoves(color) == 0) {
+                color = BitBoard.opponentColor(color);
+                if (board.getValidMoves(color) == 0) {
+                    break;
+                }
+            }
+            int side = (color == BitBoard.BLACK) ? 0 : 1;
+            long start = System.nanoTime();
+            int[] operation = players[side].getCPUOperation(board.toBoard());
+            nanos[side] += System.nanoTime() - start;
+            nodes[side] += players[side].getNodes();
+            board.makeMove(operation[0] * 8 + operation[1], color);
+            color = BitBoard.opponentColor(color);
+        }
+        return board.numberOfStone(BitBoard.BLACK) - board.numberOfStone(BitBoard.WHITE);
+    }
+
+    // ランダムに10〜50手進めた局面
+    private static BitBoard randomPosition(Random random) {
+        BitBoard board = new BitBoard();
+        int color = BitBoard.BLACK;
+        int plies = 10 + random.nextInt(41);
+        for (int ply = 0; ply < plies; ply++) {
+            long moves = board.getValidMoves(color);
+            if (moves == 0) {
+                color = BitBoard.opponentColor(color);
+                moves = board.getValidMoves(color);
+                if (moves == 0) {
+                    break;
+                }
+            }
+            for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                moves &= moves - 1;
+            }
+            board.makeMove(Long.numberOfTrailingZeros(moves), color);
+            color = BitBoard.opponentColor(color);
+        }
+        return board;
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.Collections;
+import java.util.List;
+
+/*
+CPU.analyzeで求めた1つの合法手の評価を保持するクラス
+スコアは手番側から見た値(大きいほど手番側に有利)で、完全読みの場合は勝ち: WIN_SCORE + 石差, 負け: -WIN_SCORE + 石差となる。
+読み筋(PV)はこの手から始まる予想手順で、置換表に残っている範囲のみ(途中で途切れることがある)。
+*/
+public class MoveAnalysis {
+    public static final int PASS = -1; // 読み筋の中のパス
+
+    private final int move; // 手のビット番号
+    private final int score; // スコア
+    private final int depth; // 探索が完了した深さ(完全読みでは空きマス数)
+    private final boolean exact; // 完全読みの結果か
+    private final List<Integer> principalVariation; // 読み筋(ビット番号の並び, パスはPASS)
+
+    MoveAnalysis(int move, int score, int depth, boolean exact, List<Integer> principalVariation) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.exact = exact;
+        this.principalVariation = Collections.unmodifiableList(principalVariation);
+    }
+
+    public int getX() {
+        return move / 8;
+    }
+
+    public int getY() {
+        return move % 8;
+    }
+
+    public int getMove() {
+        return move;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    public List<Integer> getPrincipalVariation() {
+        return principalVariation;
+    }
+
+    // 読み筋を"[2,3] [2,2] pass ..."の形式で返すメソッド
+    public String getPrincipalVariationText() {
+        StringBuilder text = new StringBuilder();
+        for (int square : principalVariation) {
+            if (text.length() > 0) {
+                text.append(' ');
+            }
+            text.append(square == PASS ? "pass" : "[" + square / 8 + "," + square % 8 + "]");
+        }
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "[" + getX() + ", " + getY() + "] score=" + score + " depth=" + depth + (exact ? " (exact)" : "")
+                + " pv=" + getPrincipalVariationText();
+    }
+}
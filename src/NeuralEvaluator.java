@@ -0,0 +1,228 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/*
+小さな2層のニューラルネットワークで局面を評価するクラス
+    入力  : 各マスの黒石・白石(64マス × 2色 = 128個の0か1)
+    1層目 : 隠れ層のユニットごとに、石があるマス・色の重みの列を足し合わせた値(アキュムレータ)
+    2層目 : 各ユニットの値を0 ～ ACTIVATION_MAXに切り詰め(clipped ReLU)、出力の重みとの積和を評価値とする
+アキュムレータは局面ごとに計算し直さず、BitBoardのmakeMove/undoMoveで、置いた石・裏返した石の列だけを足し引きして差分更新する。
+(石を置くと入力(マス, 自分の色)が1になり、裏返すと入力(マス, 相手の色)が0・入力(マス, 自分の色)が1になる)
+
+重みは全て整数で、1層目はACTIVATION_MAXを1.0とした固定小数点、2層目は石差 × SCALEの単位。
+浮動小数点演算もネイティブのライブラリも使わない。評価値は黒が正で、単位はPatternEvaluatorと同じ石差 × SCALE。
+重みは学習済みの重みファイル(load, WeightTrainer train-nnで作成)から読み込み、生成後は変更しないので、複数のCPU・スレッドで共有してよい。
+
+重みファイルの形式(ビッグエンディアン):
+    int   MAGIC ("OTNN")
+    int   VERSION
+    int   入力数(INPUTS)
+    int   隠れ層のユニット数
+    short × 入力数 × ユニット数: 1層目の重み(入力ごとに、全ユニット分の列を並べる)
+    short × ユニット数: 1層目のバイアス
+    short × ユニット数: 2層目の重み
+    int   2層目のバイアス
+*/
+public final class NeuralEvaluator {
+    static final int MAGIC = 0x4f544e4e; // "OTNN"
+    static final int VERSION = 1;
+    public static final int INPUTS = 2 * BitBoard.SIZE * BitBoard.SIZE; // 入力数(黒石: 0 ～ 63, 白石: 64 ～ 127)
+    public static final int ACTIVATION_MAX = 128; // 隠れ層の値の上限(1.0に相当)
+    private static final int ACTIVATION_SHIFT = 7; // ACTIVATION_MAX = 2^ACTIVATION_SHIFT
+    private static final int MAX_HIDDEN = 1024; // 隠れ層のユニット数の上限(重みファイルの確認用)
+    private static final int MAX_SCORE = CPU.WIN_SCORE - 1; // 評価値の上限(勝敗が確定したスコアと重ならないようにする)
+
+    private final int hidden; // 隠れ層のユニット数
+    private final short[] hiddenBias; // 1層目のバイアス
+    private final short[] outputWeights; // 2層目の重み
+    private final int outputBias; // 2層目のバイアス
+    private final int[] inputColumns; // [入力 × hidden + ユニット] 1層目の重み(アキュムレータの計算し直し用)
+    private final int[] flipColumns; // [入力 × hidden + ユニット] 入力の石を裏返したときの変化(自分の色の列 - 相手の色の列)
+
+    /*
+    inputWeights: [入力 × hidden + ユニット]の1層目の重み, hiddenBias: 1層目のバイアス,
+    outputWeights: 2層目の重み, outputBias: 2層目のバイアス(隠れ層のユニット数はhiddenBiasの長さ)
+    */
+    NeuralEvaluator(short[] inputWeights, short[] hiddenBias, short[] outputWeights, int outputBias) {
+        this.hidden = hiddenBias.length;
+        if (hidden == 0 || hidden > MAX_HIDDEN || inputWeights.length != INPUTS * hidden
+                || outputWeights.length != hidden) {
+            throw new IllegalArgumentException("Invalid network shape: hidden = " + hidden);
+        }
+        this.hiddenBias = hiddenBias;
+        this.outputWeights = outputWeights;
+        this.outputBias = outputBias;
+        this.inputColumns = new int[INPUTS * hidden];
+        this.flipColumns = new int[INPUTS * hidden];
+        int half = INPUTS / 2;
+        for (int input = 0; input < INPUTS; input++) {
+            int opposite = (input < half) ? input + half : input - half; // 同じマスの相手の色の入力
+            for (int h = 0; h < hidden; h++) {
+                inputColumns[input * hidden + h] = inputWeights[input * hidden + h];
+                flipColumns[input * hidden + h] = inputWeights[input * hidden + h] - inputWeights[opposite * hidden + h];
+            }
+        }
+    }
+
+    // 重みファイルを読み込むメソッド
+    public static NeuralEvaluator load(String path) throws IOException {
+        try (InputStream in = new FileInputStream(path)) {
+            return load(in);
+        }
+    }
+
+    // ストリームから重みを読み込むメソッド(ストリームは閉じない)
+    public static NeuralEvaluator load(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a network weights file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported network weights version: " + version);
+        }
+        if (in.readInt() != INPUTS) {
+            throw new IOException("Network inputs do not match this evaluator");
+        }
+        int hidden = in.readInt();
+        if (hidden < 1 || hidden > MAX_HIDDEN) {
+            throw new IOException("Invalid number of hidden units: " + hidden);
+        }
+        short[] inputWeights = readShorts(in, INPUTS * hidden);
+        short[] hiddenBias = readShorts(in, hidden);
+        short[] outputWeights = readShorts(in, hidden);
+        int outputBias = in.readInt();
+        return new NeuralEvaluator(inputWeights, hiddenBias, outputWeights, outputBias);
+    }
+
+    private static short[] readShorts(DataInputStream in, int length) throws IOException {
+        short[] values = new short[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readShort();
+        }
+        return values;
+    }
+
+    // 重みをファイルに書き出すメソッド
+    public static void save(String path, short[] inputWeights, short[] hiddenBias, short[] outputWeights,
+            int outputBias) throws IOException {
+        try (OutputStream out = new FileOutputStream(path)) {
+            save(out, inputWeights, hiddenBias, outputWeights, outputBias);
+        }
+    }
+
+    // 重みをストリームに書き出すメソッド(ストリームは閉じない)
+    public static void save(OutputStream stream, short[] inputWeights, short[] hiddenBias, short[] outputWeights,
+            int outputBias) throws IOException {
+        new NeuralEvaluator(inputWeights, hiddenBias, outputWeights, outputBias); // 形式の確認
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(INPUTS);
+        out.writeInt(hiddenBias.length);
+        for (short[] values : new short[][] { inputWeights, hiddenBias, outputWeights }) {
+            for (short value : values) {
+                out.writeShort(value);
+            }
+        }
+        out.writeInt(outputBias);
+        out.flush();
+    }
+
+    public int getHidden() {
+        return hidden;
+    }
+
+    /*
+    局面を評価するメソッド(黒が正)
+    盤面にこの評価関数のアキュムレータがなければ計算して持たせ、以降はmakeMove/undoMoveで差分更新されたものを使う。
+    */
+    public int evaluate(BitBoard board) {
+        Accumulator accumulator = board.getAccumulator();
+        if (accumulator == null || accumulator.evaluator != this) {
+            accumulator = new Accumulator(this, board.getBlack(), board.getWhite());
+            board.setAccumulator(accumulator);
+        }
+        return output(accumulator.values);
+    }
+
+    // アキュムレータを使わず、石の配置から計算し直して評価するメソッド(差分更新の確認用)
+    public int evaluate(long black, long white) {
+        return output(new Accumulator(this, black, white).values);
+    }
+
+    // 隠れ層の値から評価値を求めるメソッド
+    private int output(int[] values) {
+        long sum = outputBias;
+        for (int h = 0; h < hidden; h++) {
+            int activation = Math.max(0, Math.min(ACTIVATION_MAX, values[h]));
+            sum += activation * outputWeights[h];
+        }
+        return (int) Math.max(-MAX_SCORE, Math.min(MAX_SCORE, sum >> ACTIVATION_SHIFT));
+    }
+
+    /*
+    1層目の値(アキュムレータ)を保持するクラス
+    BitBoardが1つずつ持ち、makeMove/undoMoveのたびにupdateで差分更新する(copyでは複製する)。
+    */
+    static final class Accumulator {
+        private final NeuralEvaluator evaluator; // 重みを持つ評価関数
+        private final int[] values; // 隠れ層のユニットごとの値(バイアス + 石がある入力の重みの和)
+
+        // 石の配置から計算するコンストラクタ
+        Accumulator(NeuralEvaluator evaluator, long black, long white) {
+            this.evaluator = evaluator;
+            int hidden = evaluator.hidden;
+            this.values = new int[hidden];
+            for (int h = 0; h < hidden; h++) {
+                values[h] = evaluator.hiddenBias[h];
+            }
+            int half = INPUTS / 2;
+            for (int offset = 0; offset < INPUTS; offset += half) {
+                long bits = (offset == 0) ? black : white;
+                for (; bits != 0; bits &= bits - 1) {
+                    add(evaluator.inputColumns, (offset + Long.numberOfTrailingZeros(bits)) * hidden, 1);
+                }
+            }
+        }
+
+        // 複製用のコンストラクタ
+        Accumulator(Accumulator other) {
+            this.evaluator = other.evaluator;
+            this.values = other.values.clone();
+        }
+
+        /*
+        マスsqにcolorの石を置き、flipsを裏返したときの差分更新(direction: 打つとき1, 取り消すとき-1)
+        */
+        void update(int sq, long flips, int color, int direction) {
+            int hidden = evaluator.hidden;
+            int offset = (color == BitBoard.BLACK) ? 0 : INPUTS / 2;
+            add(evaluator.inputColumns, (offset + sq) * hidden, direction);
+            for (; flips != 0; flips &= flips - 1) {
+                add(evaluator.flipColumns, (offset + Long.numberOfTrailingZeros(flips)) * hidden, direction);
+            }
+        }
+
+        // 重みの列(columnsのstartから隠れ層のユニット数分)をsign倍して足すメソッド
+        private void add(int[] columns, int start, int sign) {
+            int[] v = values;
+            if (sign > 0) {
+                for (int h = 0; h < v.length; h++) {
+                    v[h] += columns[start + h];
+                }
+            } else {
+                for (int h = 0; h < v.length; h++) {
+                    v[h] -= columns[start + h];
+                }
+            }
+        }
+    }
+}
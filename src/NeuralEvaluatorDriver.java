@@ -0,0 +1,283 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*
+NeuralEvaluatorクラスのテスト
+学習済みの重みファイルを引数(または-Dothello.network)で指定すると、速度の比較にその重みを使い、
+特徴を加えた評価(CPU.evaluate)との対局も行う。指定がなければランダムな重みで1 ～ 3だけを行う。
+    java NeuralEvaluatorDriver [重みファイル]
+*/
+public class NeuralEvaluatorDriver {
+    private static final int HIDDEN = 32; // ランダムな重みのネットワークの隠れ層のユニット数
+    private static final int GAMES = 200; // 差分更新のテストに使うランダムな対局数
+    private static final int POSITIONS = 2000; // 速度比較に使うランダム局面数
+    private static final int BENCH_CALLS = 2_000_000; // 速度比較での評価回数
+    private static final int FIXED_DEPTH = 8; // 探索の速さの比較に使う深さ
+    private static final int SEARCH_POSITIONS = 10; // 探索の速さの比較に使う局面数
+    private static final long MATCH_TIME_MS = 100; // 対局のテストでの1手あたりの思考時間
+    private static final int MATCH_PAIRS = 5; // 対局のテストで先後を入れ替えて行う対局数
+    private static final int RANDOM_OPENING = 6; // 対局のテストで最初にランダムに打つ手数
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("NeuralEvaluatorクラスのテスト(NeuralEvaluatorDriver.java)");
+        Random random = new Random(1);
+        String path = (args.length > 0) ? args[0] : System.getProperty("othello.network");
+        NeuralEvaluator trained = (path != null) ? NeuralEvaluator.load(path) : null;
+
+        // 1. 重みの書き出しと読み込み
+        System.out.println("\n1. 重みの書き出し・読み込みのテスト");
+        short[] inputWeights = randomShorts(random, NeuralEvaluator.INPUTS * HIDDEN, 64);
+        short[] hiddenBias = randomShorts(random, HIDDEN, 64);
+        short[] outputWeights = randomShorts(random, HIDDEN, 256);
+        int outputBias = random.nextInt(2001) - 1000;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        NeuralEvaluator.save(bytes, inputWeights, hiddenBias, outputWeights, outputBias);
+        byte[] data = bytes.toByteArray();
+        NeuralEvaluator network = NeuralEvaluator.load(new ByteArrayInputStream(data));
+        NeuralEvaluator original = new NeuralEvaluator(inputWeights, hiddenBias, outputWeights, outputBias);
+        List<BitBoard> positions = new ArrayList<>();
+        for (int i = 0; i < POSITIONS; i++) {
+            positions.add(randomPosition(random, random.nextInt(61)));
+        }
+        boolean same = network.getHidden() == HIDDEN;
+        for (BitBoard board : positions) {
+            same &= network.evaluate(board.getBlack(), board.getWhite())
+                    == original.evaluate(board.getBlack(), board.getWhite());
+        }
+        check("読み込んだ重みで同じ評価値になる", same);
+        BitBoard initial = new BitBoard();
+        check("盤面に持たせた値での評価と計算し直した評価が同じ",
+                network.evaluate(initial) == network.evaluate(initial.getBlack(), initial.getWhite()));
+        boolean rejected = true;
+        for (byte[] broken : new byte[][] { Arrays.copyOf(data, 8), Arrays.copyOf(data, data.length - 1),
+                withInt(data, 0, 0x12345678), withInt(data, 4, 99), withInt(data, 8, 64), withInt(data, 12, 0) }) {
+            try {
+                NeuralEvaluator.load(new ByteArrayInputStream(broken));
+                rejected = false;
+            } catch (IOException e) {
+                // 正しく拒否された
+            }
+        }
+        check("壊れた重みファイルを読み込まない", rejected);
+
+        // 2. 差分更新した値と計算し直した値の比較
+        System.out.println("\n2. 差分更新のテスト(" + GAMES + " 局のランダムな対局)");
+        int mismatches = 0;
+        long checks = 0;
+        for (int game = 0; game < GAMES; game++) {
+            BitBoard board = new BitBoard();
+            network.evaluate(board); // アキュムレータを持たせる
+            int color = BitBoard.BLACK;
+            while (true) {
+                long moves = board.getValidMoves(color);
+                if (moves == 0) {
+                    color = BitBoard.opponentColor(color);
+                    moves = board.getValidMoves(color);
+                    if (moves == 0) {
+                        break;
+                    }
+                }
+                // 全ての合法手を打って戻し、打った後の評価値と戻した後の評価値を確かめる
+                int before = network.evaluate(board);
+                for (long m = moves; m != 0; m &= m - 1) {
+                    int sq = Long.numberOfTrailingZeros(m);
+                    long flips = board.makeMove(sq, color);
+                    mismatches += (network.evaluate(board) != network.evaluate(board.getBlack(), board.getWhite())) ? 1 : 0;
+                    board.undoMove(sq, flips, color);
+                    mismatches += (network.evaluate(board) != before) ? 1 : 0;
+                    checks += 2;
+                }
+                for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                    moves &= moves - 1;
+                }
+                board.makeMove(Long.numberOfTrailingZeros(moves), color);
+                color = BitBoard.opponentColor(color);
+                if (random.nextInt(8) == 0) { // 複製した盤面でも差分更新が続くか
+                    board = board.copy();
+                }
+                mismatches += (network.evaluate(board) != network.evaluate(board.getBlack(), board.getWhite())) ? 1 : 0;
+                checks++;
+            }
+        }
+        System.out.println("   " + checks + " 回の比較で一致しなかった回数: " + mismatches + (mismatches == 0 ? " (成功)" : " (失敗)"));
+        BitBoard shared = new BitBoard();
+        original.evaluate(shared);
+        check("別の重みの評価関数に切り替えても正しく評価する",
+                network.evaluate(shared) == network.evaluate(shared.getBlack(), shared.getWhite()));
+
+        // 3. 評価の速さと探索の速さ
+        NeuralEvaluator benchNetwork = (trained != null) ? trained : network;
+        System.out.println("\n3. 評価の速さの比較(隠れ層 " + benchNetwork.getHidden() + " ユニット, " + BENCH_CALLS + " 回)");
+        long sum = 0;
+        double[] nanos = new double[3];
+        for (int round = 0; round < 3; round++) { // 1, 2回目はJITのウォームアップ
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCH_CALLS; i++) {
+                sum += CPU.evaluateCells(positions.get(i % POSITIONS));
+            }
+            long middle = System.nanoTime();
+            for (int i = 0; i < BENCH_CALLS; i++) {
+                sum += CPU.evaluate(positions.get(i % POSITIONS));
+            }
+            long end = System.nanoTime();
+            for (int i = 0; i < BENCH_CALLS; i++) { // 探索と同じく、1手打って評価し、戻す
+                BitBoard board = positions.get(i % POSITIONS);
+                int color = (board.countEmpty() % 2 == 0) ? BitBoard.BLACK : BitBoard.WHITE;
+                long moves = board.getValidMoves(color);
+                if (moves == 0) {
+                    sum += benchNetwork.evaluate(board);
+                    continue;
+                }
+                int sq = Long.numberOfTrailingZeros(moves);
+                long flips = board.makeMove(sq, color);
+                sum += benchNetwork.evaluate(board);
+                board.undoMove(sq, flips, color);
+            }
+            nanos[0] = (double) (middle - start) / BENCH_CALLS;
+            nanos[1] = (double) (end - middle) / BENCH_CALLS;
+            nanos[2] = (double) (System.nanoTime() - end) / BENCH_CALLS;
+        }
+        System.out.printf("   各マスの重み: %.1f ns/回, 特徴を加えた評価: %.1f ns/回, ニューラルネットワーク(1手打って戻す分を含む): %.1f ns/回 (合計 %d)%n",
+                nanos[0], nanos[1], nanos[2], sum);
+
+        PrintStream console = System.out;
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream()); // CPUの1手ごとのログを出さない
+        System.out.println("   深さ" + FIXED_DEPTH + "の探索(" + SEARCH_POSITIONS + " 局面, 1スレッド):");
+        String[] names = { "各マスの重み", "特徴を加えた評価", "ニューラルネットワーク" };
+        List<BitBoard> searchPositions = new ArrayList<>(); // 黒番で合法手が2つ以上ある中盤の局面
+        for (BitBoard board : positions) {
+            int empty = board.countEmpty();
+            if (searchPositions.size() < SEARCH_POSITIONS && empty % 2 == 0 && empty >= 24 && empty <= 44
+                    && Long.bitCount(board.getValidMoves(BitBoard.BLACK)) >= 2) {
+                searchPositions.add(board);
+            }
+        }
+        for (int e = 0; e < names.length; e++) {
+            long nodes = 0;
+            long elapsed = 0;
+            for (BitBoard board : searchPositions) {
+                System.setOut(quiet);
+                CPU cpu = createCPU("Black", e, benchNetwork);
+                cpu.setTimeLimit(3_600_000L);
+                cpu.setMaxDepth(FIXED_DEPTH);
+                cpu.setThreshold(0, 0);
+                cpu.getCPUOperation(board.toBoard());
+                System.setOut(console);
+                nodes += cpu.getNodes();
+                elapsed += cpu.getLastStats().getElapsedNanos();
+                cpu.shutdown();
+            }
+            System.out.printf("      %s: %d ノード %.2f秒 (%.0f ノード/秒)%n", names[e], nodes, elapsed / 1e9,
+                    nodes / (elapsed / 1e9));
+        }
+
+        // 4. 特徴を加えた評価との対局(思考時間をそろえて比較する)
+        if (trained == null) {
+            System.out.println("\n4. 対局のテストは重みファイルを指定したときに行います");
+        } else {
+            System.out.println("\n4. 特徴を加えた評価との対局(1手" + MATCH_TIME_MS + "ms, " + (2 * MATCH_PAIRS) + "局)");
+            int wins = 0;
+            int losses = 0;
+            int draws = 0;
+            for (int game = 0; game < 2 * MATCH_PAIRS; game++) {
+                boolean networkBlack = (game % 2 == 0);
+                System.setOut(quiet);
+                CPU black = createCPU("Black", networkBlack ? 2 : 1, trained);
+                CPU white = createCPU("White", networkBlack ? 1 : 2, trained);
+                black.setTimeLimit(MATCH_TIME_MS);
+                white.setTimeLimit(MATCH_TIME_MS);
+                int diff = playGame(black, white, new Random(game / 2)); // 黒 - 白
+                black.shutdown();
+                white.shutdown();
+                System.setOut(console);
+                int networkDiff = networkBlack ? diff : -diff;
+                if (networkDiff > 0) {
+                    wins++;
+                } else if (networkDiff < 0) {
+                    losses++;
+                } else {
+                    draws++;
+                }
+            }
+            System.out.println("   " + wins + "勝 " + losses + "敗 " + draws + "分" + (wins >= losses ? " (成功)" : " (失敗)"));
+        }
+
+        System.out.println("\nNeuralEvaluatorクラスのテストを終了します。");
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println("   " + name + ": " + (ok ? "成功" : "失敗"));
+    }
+
+    /*
+    強さ「強い」のCPU(evaluation 0: 各マスの重み, 1: 特徴を加えた評価, 2: ニューラルネットワーク)
+    Multi-ProbCutの組み込みのパラメータは特徴を加えた評価に合わせたものなので、比較のため全て枝刈りなしにする。
+    */
+    private static CPU createCPU(String turn, int evaluation, NeuralEvaluator network) {
+        CPU cpu = new CPU(turn, "強い");
+        cpu.setProbCut(null);
+        cpu.setEvaluationFeatures(evaluation != 0);
+        cpu.setNeuralEvaluator((evaluation == 2) ? network : null);
+        return cpu;
+    }
+
+    private static short[] randomShorts(Random random, int length, int range) {
+        short[] values = new short[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (short) (random.nextInt(2 * range + 1) - range);
+        }
+        return values;
+    }
+
+    // dataのoffsetバイト目からのintをvalueに書き換えた複製
+    private static byte[] withInt(byte[] data, int offset, int value) {
+        byte[] result = data.clone();
+        for (int i = 0; i < 4; i++) {
+            result[offset + i] = (byte) (value >>> (24 - 8 * i));
+        }
+        return result;
+    }
+
+    // 1局対局し、石差(黒 - 白)を返す(最初のRANDOM_OPENING手はランダム)
+    private static int playGame(CPU black, CPU white, Random random) {
+        BitBoard board = randomPosition(random, RANDOM_OPENING);
+        int color = (board.countEmpty() % 2 == 0) ? BitBoard.BLACK : BitBoard.WHITE;
+        while (true) {
+            if (board.getValidMoves(color) == 0) {
+                color = BitBoard.opponentColor(color);
+                if (board.getValidMoves(color) == 0) {
+                    break;
+                }
+            }
+            int[] operation = ((color == BitBoard.BLACK) ? black : white).getCPUOperation(board.toBoard());
+            board.makeMove(operation[0] * BitBoard.SIZE + operation[1], color);
+            color = BitBoard.opponentColor(color);
+        }
+        return board.numberOfStone(BitBoard.BLACK) - board.numberOfStone(BitBoard.WHITE);
+    }
+
+    // 初期局面からランダムにplies手進めた局面(パスの後の手番は石の数からは分からないので、パスが起きたら打ち切る)
+    private static BitBoard randomPosition(Random random, int plies) {
+        BitBoard board = new BitBoard();
+        int color = BitBoard.BLACK;
+        for (int ply = 0; ply < plies; ply++) {
+            long moves = board.getValidMoves(color);
+            if (moves == 0) {
+                break;
+            }
+            for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                moves &= moves - 1;
+            }
+            board.makeMove(Long.numberOfTrailingZeros(moves), color);
+            color = BitBoard.opponentColor(color);
+        }
+        return board;
+    }
+}
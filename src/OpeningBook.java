@@ -0,0 +1,186 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/*
+序盤の定石(局面ごとの各手のスコア)を保持するクラス
+定石ファイルはキーの順に並べた固定長のエントリの列で、読み込まずにメモリマップして二分探索する。
+ファイルは読み取り専用でマップするので、同じファイルを複数のプロセス・CPUで同時に使ってよい(OSのページを共有する)。
+
+局面のキーは、盤面を回転・反転した8通りのうちZobristハッシュ値(手番を含む)が最小のものとし、
+手もその向きに変換して記録する。これにより対称な局面は1つのエントリで引ける。
+スコアは定石を作成したときの探索結果(手番側から見た値)で、単位はCPUの評価値と同じ。
+
+定石ファイルの形式(ビッグエンディアン):
+    int MAGIC ("OTBK"), int VERSION, long エントリ数
+    以降1エントリごとに long 局面のキー, int 手(キーの向きでのビット番号), int スコア
+    (キーの昇順、同じキーの中では手の昇順に並べる)
+*/
+public final class OpeningBook {
+    static final int MAGIC = 0x4f54424b; // "OTBK"
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int ENTRY_BYTES = 16;
+    private static final int MAX_ENTRIES = (Integer.MAX_VALUE - HEADER_BYTES) / ENTRY_BYTES; // 1つのマップに収まる数
+
+    private final MappedByteBuffer buffer; // 定石ファイル全体(読み取り専用)
+    private final int entries; // エントリ数
+
+    private OpeningBook(MappedByteBuffer buffer, int entries) {
+        this.buffer = buffer;
+        this.entries = entries;
+    }
+
+    // 定石ファイルをメモリマップして開くメソッド
+    public static OpeningBook open(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Not an opening book file: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // 閉じた後も有効
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not an opening book file: " + path);
+            }
+            int version = buffer.getInt(4);
+            if (version != VERSION) {
+                throw new IOException("Unsupported opening book version: " + version);
+            }
+            long entries = buffer.getLong(8);
+            if (entries < 0 || HEADER_BYTES + entries * ENTRY_BYTES != channel.size()) {
+                throw new IOException("Broken opening book file: " + path);
+            }
+            return new OpeningBook(buffer, (int) entries);
+        }
+    }
+
+    /*
+    エントリ({局面のキー, 手, スコア})を並べ替えて定石ファイルに書き出すメソッド(定石の作成用)
+    手はkeyOfで求めた向き(canonicalSquareで変換したもの)で渡す。
+    */
+    public static void write(String path, List<long[]> bookEntries) throws IOException {
+        if (bookEntries.size() > MAX_ENTRIES) {
+            throw new IOException("Too many opening book entries: " + bookEntries.size());
+        }
+        List<long[]> sorted = new ArrayList<>(bookEntries);
+        sorted.sort(Comparator.<long[]>comparingLong(e -> e[0]).thenComparingLong(e -> e[1]));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sorted.size());
+            for (long[] entry : sorted) {
+                out.writeLong(entry[0]);
+                out.writeInt((int) entry[1]);
+                out.writeInt((int) entry[2]);
+            }
+        }
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    // 局面のキー(8通りの回転・反転のうちハッシュ値が最小のもの)を返すメソッド
+    public static long keyOf(BitBoard board, int color) {
+        return keyOf(board, color, canonicalSymmetry(board, color));
+    }
+
+    // キーを与える回転・反転の番号を返すメソッド(BitBoard.transformの番号)
+    public static int canonicalSymmetry(BitBoard board, int color) {
+        int best = 0;
+        long bestKey = keyOf(board, color, 0);
+        for (int symmetry = 1; symmetry < BitBoard.SYMMETRIES; symmetry++) {
+            long key = keyOf(board, color, symmetry);
+            if (key < bestKey) {
+                bestKey = key;
+                best = symmetry;
+            }
+        }
+        return best;
+    }
+
+    private static long keyOf(BitBoard board, int color, int symmetry) {
+        long hash = Zobrist.hash(BitBoard.transform(board.getBlack(), symmetry),
+                BitBoard.transform(board.getWhite(), symmetry));
+        return (color == BitBoard.WHITE) ? hash ^ Zobrist.SIDE_KEY : hash;
+    }
+
+    // 手sqをキーの向きに変換するメソッド(定石の作成用)
+    public static int canonicalSquare(BitBoard board, int color, int sq) {
+        return BitBoard.transformSquare(sq, canonicalSymmetry(board, color));
+    }
+
+    /*
+    局面の定石の手を{手のビット番号, スコア}の並びで返すメソッド(定石にない局面なら空)
+    手は実際の盤面の向きに戻し、合法手でないもの(ハッシュ値の衝突)は除く。
+    */
+    public List<int[]> lookup(BitBoard board, int color) {
+        List<int[]> moves = new ArrayList<>();
+        int symmetry = canonicalSymmetry(board, color);
+        long key = keyOf(board, color, symmetry);
+        long legal = board.getValidMoves(color);
+        for (int i = firstIndex(key); i < entries && keyAt(i) == key; i++) {
+            int move = BitBoard.inverseTransformSquare(buffer.getInt(HEADER_BYTES + i * ENTRY_BYTES + 8), symmetry);
+            if ((legal & (1L << move)) != 0) {
+                moves.add(new int[] { move, buffer.getInt(HEADER_BYTES + i * ENTRY_BYTES + 12) });
+            }
+        }
+        return moves;
+    }
+
+    // 局面が定石に含まれているかを返すメソッド
+    public boolean contains(BitBoard board, int color) {
+        long key = keyOf(board, color);
+        int i = firstIndex(key);
+        return i < entries && keyAt(i) == key;
+    }
+
+    /*
+    定石から手を選び、{手のビット番号, スコア}を返すメソッド(定石にない局面ならnull)
+    最善のスコアからrandomness以内の手の中から等確率で選ぶ(0なら常に最善手)。
+    */
+    public int[] selectMove(BitBoard board, int color, int randomness, Random random) {
+        List<int[]> moves = lookup(board, color);
+        if (moves.isEmpty()) {
+            return null;
+        }
+        int best = Integer.MIN_VALUE;
+        for (int[] move : moves) {
+            best = Math.max(best, move[1]);
+        }
+        List<int[]> candidates = new ArrayList<>();
+        for (int[] move : moves) {
+            if (move[1] >= best - Math.max(0, randomness)) {
+                candidates.add(move);
+            }
+        }
+        return candidates.get(random.nextInt(candidates.size()));
+    }
+
+    // キーがkey以上になる最初のエントリの番号(二分探索)
+    private int firstIndex(long key) {
+        int low = 0;
+        int high = entries;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keyAt(mid) < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private long keyAt(int index) {
+        return buffer.getLong(HEADER_BYTES + index * ENTRY_BYTES);
+    }
+}
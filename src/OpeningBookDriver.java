@@ -0,0 +1,178 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class OpeningBookDriver {
+    private static final int BOOK_PLIES = 5; // テスト用の定石に入れる手数
+    private static final int SEARCH_DEPTH = 3; // テスト用の定石を作るときの探索深さ
+    private static final int LOOKUPS = 200_000; // 速度計測での検索回数
+    private static final int SELECTIONS = 200; // 手の選び方のテストでの試行回数
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("OpeningBookクラスのテスト(OpeningBookDriver.java)");
+        File file = File.createTempFile("book", ".bin");
+        file.deleteOnExit();
+
+        // 1. 定石の作成と読み込み
+        System.out.println("\n1. 定石の作成(" + BOOK_PLIES + "手, 深さ" + SEARCH_DEPTH + ")と読み込み");
+        CPU searcher = new CPU("Black", "強い");
+        searcher.setTimeLimit(3_600_000L);
+        searcher.setMaxDepth(SEARCH_DEPTH);
+        List<BitBoard> boards = new ArrayList<>();
+        List<Integer> colors = new ArrayList<>();
+        List<long[]> entries = new ArrayList<>();
+        Set<Long> keys = new HashSet<>();
+        collect(new BitBoard(), BitBoard.BLACK, 0, searcher, boards, colors, entries, keys);
+        OpeningBook.write(file.getPath(), entries);
+        OpeningBook book = OpeningBook.open(file.getPath());
+        System.out.println("   局面数: " + keys.size() + " (対称な局面をまとめる前: " + boards.size() + "), エントリ数: " + book.size()
+                + (book.size() == entries.size() ? " (成功)" : " (失敗)"));
+
+        // 2. 回転・反転した局面でも同じ手(を変換したもの)とスコアが返るか、返る手が合法手か
+        System.out.println("\n2. 回転・反転した局面の検索のテスト");
+        int mismatch = 0;
+        int checked = 0;
+        for (int i = 0; i < boards.size(); i++) {
+            BitBoard board = boards.get(i);
+            int color = colors.get(i);
+            Set<Long> expected = toSet(book.lookup(board, color), 0);
+            if (expected.isEmpty()) {
+                mismatch++;
+            }
+            for (int s = 0; s < BitBoard.SYMMETRIES; s++) {
+                BitBoard image = new BitBoard(BitBoard.transform(board.getBlack(), s),
+                        BitBoard.transform(board.getWhite(), s));
+                List<int[]> moves = book.lookup(image, color);
+                long legal = image.getValidMoves(color);
+                for (int[] move : moves) {
+                    if ((legal & (1L << move[0])) == 0) {
+                        mismatch++;
+                    }
+                }
+                if (!toSet(moves, s).equals(expected)) {
+                    mismatch++;
+                }
+                checked++;
+            }
+        }
+        System.out.println("   不一致数: " + mismatch + " / " + checked + (mismatch == 0 ? " (成功)" : " (失敗)"));
+        BitBoard outside = new BitBoard();
+        for (String move : new String[] { "f5", "d6", "c3", "d3", "c4", "f4" }) {
+            outside.makeMove(BookBuilder.parseMove(move.charAt(0), move.charAt(1)),
+                    (outside.countEmpty() % 2 == 0) ? BitBoard.BLACK : BitBoard.WHITE);
+        }
+        System.out.println("   定石にない局面では空: "
+                + (book.lookup(outside, BitBoard.BLACK).isEmpty() && !book.contains(outside, BitBoard.BLACK)
+                        ? "成功" : "失敗"));
+
+        // 3. 形式の異なるファイル
+        System.out.println("\n3. 形式の異なるファイルのテスト");
+        File broken = File.createTempFile("book", ".bin");
+        broken.deleteOnExit();
+        try (RandomAccessFile out = new RandomAccessFile(broken, "rw")) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeLong(10); // エントリ数がファイルの大きさと合わない
+        }
+        boolean rejected = false;
+        try {
+            OpeningBook.open(broken.getPath());
+        } catch (IOException e) {
+            rejected = true;
+        }
+        System.out.println("   壊れたファイルを開かない: " + (rejected ? "成功" : "失敗"));
+
+        // 4. 検索の速さ
+        System.out.println("\n4. 検索の速さ(" + LOOKUPS + " 回)");
+        long sum = 0;
+        double nanos = 0;
+        for (int round = 0; round < 2; round++) { // 1回目はJITのウォームアップ
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                int k = i % boards.size();
+                sum += book.lookup(boards.get(k), colors.get(k)).size();
+            }
+            nanos = (double) (System.nanoTime() - start) / LOOKUPS;
+        }
+        System.out.printf("   %.2f μs/回%s%n", nanos / 1000, (sum > 0 && nanos < 100_000) ? " (成功)" : " (失敗)");
+
+        // 5. 手の選び方(randomness)
+        System.out.println("\n5. 定石の手の選び方のテスト(初期局面で" + SELECTIONS + "回)");
+        BitBoard initial = new BitBoard();
+        Random random = new Random(1);
+        int best = Integer.MIN_VALUE;
+        for (int[] move : book.lookup(initial, BitBoard.BLACK)) {
+            best = Math.max(best, move[1]);
+        }
+        boolean alwaysBest = true;
+        Set<Integer> chosen = new HashSet<>();
+        for (int i = 0; i < SELECTIONS; i++) {
+            alwaysBest &= book.selectMove(initial, BitBoard.BLACK, 0, random)[1] == best;
+            chosen.add(book.selectMove(initial, BitBoard.BLACK, Integer.MAX_VALUE / 2, random)[0]);
+        }
+        System.out.println("   randomness = 0 で常に最善のスコアの手: " + (alwaysBest ? "成功" : "失敗"));
+        System.out.println("   randomnessを大きくすると選ばれた手の種類: " + chosen.size() + (chosen.size() == 4 ? " (成功)" : " (失敗)"));
+
+        // 6. CPUでの利用
+        System.out.println("\n6. CPUでの定石の利用のテスト");
+        CPU cpu = new CPU("White", "強い");
+        cpu.setOpeningBook(book, BOOK_PLIES, 0);
+        BitBoard afterF5 = new BitBoard();
+        afterF5.makeMove(BookBuilder.parseMove('f', '5'), BitBoard.BLACK);
+        int[] operation = cpu.getCPUOperation(afterF5.toBoard());
+        int move = operation[0] * BitBoard.SIZE + operation[1];
+        boolean inBook = false;
+        for (int[] entry : book.lookup(afterF5, BitBoard.WHITE)) {
+            inBook |= entry[0] == move && entry[1] == cpu.getLastScore();
+        }
+        System.out.println("   定石の手を返す: "
+                + (inBook && SearchStats.TYPE_BOOK.equals(cpu.getLastStats().getSearchType()) ? "成功" : "失敗"));
+        cpu.setOpeningBook(book, 1, 0); // 2手目以降は定石を使わない
+        cpu.setTimeLimit(100);
+        cpu.getCPUOperation(afterF5.toBoard());
+        System.out.println("   定石を使う手数を超えたら探索する: "
+                + (!SearchStats.TYPE_BOOK.equals(cpu.getLastStats().getSearchType()) ? "成功" : "失敗"));
+        cpu.shutdown();
+        searcher.shutdown();
+
+        System.out.println("\nOpeningBookクラスのテストを終了します。");
+    }
+
+    // plies手目までの全ての局面を探索して定石のエントリを作る
+    private static void collect(BitBoard board, int color, int ply, CPU searcher, List<BitBoard> boards,
+            List<Integer> colors, List<long[]> entries, Set<Long> keys) {
+        if (ply >= BOOK_PLIES) {
+            return;
+        }
+        boards.add(board.copy());
+        colors.add(color);
+        long key = OpeningBook.keyOf(board, color);
+        boolean first = keys.add(key);
+        String turn = (color == BitBoard.BLACK) ? "Black" : "White";
+        for (MoveAnalysis analysis : searcher.analyze(board.toBoard(), turn)) {
+            if (first) {
+                entries.add(new long[] { key, OpeningBook.canonicalSquare(board, color, analysis.getMove()),
+                        analysis.getScore() });
+            }
+            if (ply + 1 < BOOK_PLIES - 1 || analysis.getMove() % 3 == 0) { // 最後の手数は一部だけたどる
+                BitBoard next = board.copy();
+                next.makeMove(analysis.getMove(), color);
+                collect(next, BitBoard.opponentColor(color), ply + 1, searcher, boards, colors, entries, keys);
+            }
+        }
+    }
+
+    // {手, スコア}の並びを、手を回転・反転symmetryで戻した{手, スコア}の集合にする
+    private static Set<Long> toSet(List<int[]> moves, int symmetry) {
+        Set<Long> set = new HashSet<>();
+        for (int[] move : moves) {
+            set.add(((long) BitBoard.inverseTransformSquare(move[0], symmetry) << 32) | (move[1] & 0xffffffffL));
+        }
+        return set;
+    }
+}
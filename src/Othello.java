@@ -130,6 +130,12 @@ public class Othello {
         }
     }
 
+    // 盤面と手番から局面のZobristハッシュ値(64bit)を取得するメソッド
+    // 同じ局面なら実行するたびに同じ値になるので、キャッシュや定石データのキーとして保存できる
+    public static long getHash(Integer[][] tempBoard, String turn) {
+        return BitBoard.fromBoard(tempBoard).getHash(getStoneColor(turn));
+    }
+
     // 石の数を取得するメソッド
     public static int numberOfStone(Integer[][] tempBoard, int color) {
 
@@ -148,41 +154,27 @@ public class Othello {
 
     // 設置可能場所があるか否か
     public static boolean hasValidMove(Integer[][] tempBoard, String turn) {
+        return getValidMovesMask(tempBoard, turn) != 0;
+    }
 
-        int color = (turn.equals("Black")) ? BLACK : WHITE;
-
-        if (numberOfStone(tempBoard, color) == 0) {
-            return false;
+    // 色に応じて石の設置可能場所を64bitのマスク(ビット番号 x * 8 + y)で返すメソッド
+    public static long getValidMovesMask(Integer tempBoard[][], String turn) {
+        int color = getStoneColor(turn);
+        if (color == -1) {
+            return 0L; // 手番情報が不正
         }
-
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                if (isValidMove(tempBoard, i, j, turn)) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        return BitBoard.fromBoard(tempBoard).getValidMoves(color);
     }
 
     // 色に応じて石の設置可能場所をboard形式で返すメソッド
     public static Integer[][] getValidMovesBoard(Integer tempBoard[][], String turn) {
         Integer[][] validMoves = new Integer[SIZE][SIZE]; // returnする配列
+        long mask = getValidMovesMask(tempBoard, turn);
 
-        // 置けない場所は-1とする
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                validMoves[i][j] = -1;
-            }
-        }
-
-        // 各マス目において
+        // 設置可能な場所はCANPLACE、置けない場所は-1とする
         for (int x = 0; x < SIZE; x++) {
             for (int y = 0; y < SIZE; y++) {
-                if (isValidMove(tempBoard, x, y, turn)) {
-                    validMoves[x][y] = CANPLACE; // 設置可能
-                }
+                validMoves[x][y] = ((mask & BitBoard.square(x, y)) != 0) ? CANPLACE : -1;
             }
         }
 
@@ -191,16 +183,14 @@ public class Othello {
 
     // 色に応じて石の設置可能場所を配列形式で返すメソッド
     public static List<int[]> getValidMovesArray(Integer tempBoard[][], String turn) {
-
-        List<int[]> validMoves = new ArrayList<>();
-
-        // 各マス目において
-        for (int x = 0; x < SIZE; x++) {
-            for (int y = 0; y < SIZE; y++) {
-                if (isValidMove(tempBoard, x, y, turn)) {
-                    validMoves.add(new int[] { x, y });
-                }
-            }
+        long mask = getValidMovesMask(tempBoard, turn);
+        List<int[]> validMoves = new ArrayList<>(Long.bitCount(mask));
+
+        // 下位ビットから順に取り出す(従来と同じ行優先の順序になる)
+        while (mask != 0) {
+            int sq = Long.numberOfTrailingZeros(mask);
+            validMoves.add(new int[] { sq / SIZE, sq % SIZE });
+            mask &= mask - 1;
         }
 
         return validMoves; // 設置可能場所を配列形式で返す
@@ -208,47 +198,21 @@ public class Othello {
 
     // 操作を反映し、石を裏返すメソッド
     public static void makeMove(Integer[][] tempBoard, int x, int y, String turn) {
-
-        // まず置く場所に石を置く
-        if ("Black".equals(turn)) {
-            tempBoard[x][y] = BLACK;
-        } else if ("White".equals(turn)) {
-            tempBoard[x][y] = WHITE;
-        }
-
-        // 便宜上Stringの手番情報をintの色に変換
         int player = getStoneColor(turn);
-        int opponent = getStoneColor(opponentTurn(turn));
-
-        // 設置場所について8方向においてそれぞれ確認するための8方向
-        int[][] directions = {
-                { -1, -1 }, { -1, 0 }, { -1, 1 },
-                { 0, -1 },             { 0, 1 },
-                { 1, -1 },  { 1, 0 },  { 1, 1 }
-        };
-
-        // 空きマスにおいて8方向それぞれを見ていく
-        for (int[] dir : directions) {
-            List<int[]> toFlip = new ArrayList<>();
-
-            int i = x + dir[0], j = y + dir[1];
-            boolean hasOpponentBetween = false; // 裏返せる石があるか（設置が可能なのか）
+        if (player == -1) {
+            return; // 手番情報が不正
+        }
 
-            // 相手の石を飛び越えて自分の石があるかを確認（設置可能条件を確認）
-            // まず裏返す候補になりうる石があるかを確認
-            while (i >= 0 && i < 8 && j >= 0 && j < 8 && tempBoard[i][j] == opponent) {
-                toFlip.add(new int[] { i, j });
-                i += dir[0];
-                j += dir[1];
-                hasOpponentBetween = true;
-            }
+        // 裏返す石をビットマスクで一度に求める
+        BitBoard bitBoard = BitBoard.fromBoard(tempBoard);
+        long toFlip = BitBoard.getFlips(bitBoard.getStones(player),
+                bitBoard.getStones(BitBoard.opponentColor(player)), x * SIZE + y);
 
-            // その裏返す候補が本当に裏返せるか（自分の石で挟めるのか）を確認して、実際に裏返す
-            if (hasOpponentBetween && i >= 0 && i < 8 && j >= 0 && j < 8 && tempBoard[i][j] == player) {
-                for (int[] positionToFlip : toFlip) {
-                    tempBoard[positionToFlip[0]][positionToFlip[1]] = player;
-                }
-            }
+        // まず置く場所に石を置き、裏返る石だけを書き換える
+        tempBoard[x][y] = player;
+        for (; toFlip != 0; toFlip &= toFlip - 1) {
+            int sq = Long.numberOfTrailingZeros(toFlip);
+            tempBoard[sq / SIZE][sq % SIZE] = player;
         }
     }
 
@@ -0,0 +1,412 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/*
+石の並び方(パターン)ごとの重みを足し合わせて局面を評価するクラス
+使うパターンは以下の8種類で、盤面を回転・反転すると重なるもの(対称なもの)は同じ重みの表を共有する。
+    EDGE_X    : 辺の8マス + 両端のXマス(10マス, 4か所)
+    CORNER_2X5: 隅を含む2×5の長方形(10マス, 8か所)
+    CORNER_3X3: 隅を含む3×3の正方形(9マス, 4か所)
+    DIAG8     : 隅から隅への対角線(8マス, 2か所)
+    DIAG7 ～ DIAG4: 対角線に平行な斜めの列(7 ～ 4マス, 各4か所)
+各パターンのマスの状態(空き: 0, 黒: 1, 白: 2)を3進数として読んだ値を添字とし、合計34か所の重みの和を評価値とする。
+重みは局面の進行度(石の数)で分けた段階(phase)ごとに持つ。
+パターン自身の対称性で移り合う添字(symmetricIndex)の重みを同じ値にしておくと、回転・反転した局面の評価値が一致する。
+
+評価値は黒が正で、単位は石差 × SCALE。
+重みは学習済みの重みファイル(load)から読み込み、生成後は変更しないので、複数のCPU・スレッドで共有してよい。
+複数の局面をまとめて評価する場合(evaluate(long[], long[], int, int[]))は、Vector API(jdk.incubator.vector)で
+複数の局面を並べて計算するVectorPatternEvaluatorを使う。このクラスは別にコンパイルし、実行時に
+--add-modules jdk.incubator.vector と -Dothello.vector=true を指定した場合だけ読み込まれる
+(使わなければ1局面ずつ評価する。評価値はどちらも同じ)。Java 17では表の参照がSIMD命令にならず1局面ずつの評価より遅いため、既定では使わない。
+
+重みファイルの形式(ビッグエンディアン):
+    int   MAGIC ("OTPW")
+    int   VERSION
+    int   段階数
+    int   パターン数(PATTERNS)
+    int × パターン数: 各パターンのマス数
+    short × (段階数 × 各パターンの3^マス数の合計): 段階ごと・パターンごとの重み
+*/
+public final class PatternEvaluator {
+    static final int MAGIC = 0x4f545057; // "OTPW"
+    static final int VERSION = 1;
+    public static final int SCALE = 64; // 石差1あたりの評価値
+
+    // パターンの種類
+    static final int EDGE_X = 0;
+    static final int CORNER_2X5 = 1;
+    static final int CORNER_3X3 = 2;
+    static final int DIAG8 = 3;
+    static final int DIAG7 = 4;
+    static final int DIAG6 = 5;
+    static final int DIAG5 = 6;
+    static final int DIAG4 = 7;
+    static final int PATTERNS = 8;
+    static final int[] PATTERN_SIZE = { 10, 10, 9, 8, 7, 6, 5, 4 }; // 各パターンのマス数
+    static final int[] PATTERN_LENGTH = new int[PATTERNS]; // 各パターンの重みの数(3^マス数)
+
+    // 各特徴(盤面上の34か所)がどのパターンの重みを使うか(computeIndicesで求める添字の順)
+    static final int[] FEATURE_PATTERN = {
+            EDGE_X, EDGE_X, EDGE_X, EDGE_X,
+            CORNER_2X5, CORNER_2X5, CORNER_2X5, CORNER_2X5, CORNER_2X5, CORNER_2X5, CORNER_2X5, CORNER_2X5,
+            CORNER_3X3, CORNER_3X3, CORNER_3X3, CORNER_3X3,
+            DIAG8, DIAG8,
+            DIAG7, DIAG7, DIAG7, DIAG7,
+            DIAG6, DIAG6, DIAG6, DIAG6,
+            DIAG5, DIAG5, DIAG5, DIAG5,
+            DIAG4, DIAG4, DIAG4, DIAG4
+    };
+    static final int FEATURES = FEATURE_PATTERN.length;
+
+    // 各パターン自身の対称性(左右反転・転置・逆順)で桁iが移る桁。CORNER_2X5は対称性を持たない
+    private static final int[][] SYMMETRIC_DIGIT = {
+            { 7, 6, 5, 4, 3, 2, 1, 0, 9, 8 },
+            { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 },
+            { 0, 3, 6, 1, 4, 7, 2, 5, 8 },
+            { 7, 6, 5, 4, 3, 2, 1, 0 },
+            { 6, 5, 4, 3, 2, 1, 0 },
+            { 5, 4, 3, 2, 1, 0 },
+            { 4, 3, 2, 1, 0 },
+            { 3, 2, 1, 0 }
+    };
+
+    static final int MAX_SCORE = CPU.WIN_SCORE - 1; // 評価値の上限(勝敗が確定したスコアと重ならないようにする)
+
+    // 対角線(マス(x, x + k))のマスク
+    static final long DIAG8_MASK = 0x8040201008040201L;
+    static final long DIAG7_MASK = 0x0080402010080402L;
+    static final long DIAG6_MASK = 0x0000804020100804L;
+    static final long DIAG5_MASK = 0x0000008040201008L;
+    static final long DIAG4_MASK = 0x0000000080402010L;
+    static final long[] DIAG_MASKS = { DIAG7_MASK, DIAG6_MASK, DIAG5_MASK, DIAG4_MASK }; // オフセット1 ～ 4
+    static final long COLUMN_GATHER = 0x0101010101010101L; // 各列のビットを最上位の行に集める乗数
+
+    // 10bit以下のビット列を、各ビットを3進数の1桁とみなした値に変換する表(ビットiが3^iの桁)
+    static final int[] TERNARY = new int[1 << 10];
+
+    static {
+        for (int p = 0; p < PATTERNS; p++) {
+            int length = 1;
+            for (int i = 0; i < PATTERN_SIZE[p]; i++) {
+                length *= 3;
+            }
+            PATTERN_LENGTH[p] = length;
+        }
+        for (int bits = 0; bits < TERNARY.length; bits++) {
+            int value = 0;
+            for (int i = 9; i >= 0; i--) {
+                value = value * 3 + ((bits >>> i) & 1);
+            }
+            TERNARY[bits] = value;
+        }
+    }
+
+    private final int phases; // 段階数
+    private final short[][][] weights; // [段階][パターン][添字]
+    private final BatchEvaluator batchEvaluator; // 複数の局面をまとめて評価する実装(nullなら1局面ずつ評価する)
+
+    // 複数の局面をまとめて評価する実装(VectorPatternEvaluator)が持つメソッド
+    interface BatchEvaluator {
+        // blacks[i], whites[i] (0 <= i < count)の局面の評価値をscores[i]に格納する
+        void evaluate(long[] blacks, long[] whites, int count, int[] scores);
+    }
+
+    // weights: [段階][パターン][添字]の重み(各段階・各パターンの長さはPATTERN_LENGTHと一致すること)
+    PatternEvaluator(short[][][] weights) {
+        this(weights, false);
+    }
+
+    // vector: trueならVector APIによるまとめての評価を使えるか試す
+    PatternEvaluator(short[][][] weights, boolean vector) {
+        if (weights.length == 0) {
+            throw new IllegalArgumentException("Pattern weights must have at least one phase");
+        }
+        for (short[][] phaseWeights : weights) {
+            if (phaseWeights.length != PATTERNS) {
+                throw new IllegalArgumentException("Pattern weights must have " + PATTERNS + " patterns");
+            }
+            for (int p = 0; p < PATTERNS; p++) {
+                if (phaseWeights[p].length != PATTERN_LENGTH[p]) {
+                    throw new IllegalArgumentException("Pattern " + p + " must have " + PATTERN_LENGTH[p] + " weights");
+                }
+            }
+        }
+        this.phases = weights.length;
+        this.weights = weights;
+        this.batchEvaluator = vector ? loadBatchEvaluator(this) : null;
+    }
+
+    /*
+    VectorPatternEvaluatorを読み込むメソッド
+    クラスがない・jdk.incubator.vectorモジュールが読み込まれていない・-Dothello.vector=trueが指定されていない場合はnullを返す。
+    VectorPatternEvaluatorはコンパイルにもモジュールの指定が必要なので、直接参照せずに名前で読み込む。
+    */
+    private static BatchEvaluator loadBatchEvaluator(PatternEvaluator evaluator) {
+        if (!Boolean.parseBoolean(System.getProperty("othello.vector", "false"))) {
+            return null;
+        }
+        try {
+            Class<?> type = Class.forName("VectorPatternEvaluator");
+            return (BatchEvaluator) type.getDeclaredConstructor(PatternEvaluator.class).newInstance(evaluator);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    // 重みファイルを読み込むメソッド
+    public static PatternEvaluator load(String path) throws IOException {
+        try (InputStream in = new FileInputStream(path)) {
+            return load(in);
+        }
+    }
+
+    // ストリームから重みを読み込むメソッド(ストリームは閉じない)
+    public static PatternEvaluator load(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a pattern weights file");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported pattern weights version: " + version);
+        }
+        int phases = in.readInt();
+        if (phases < 1 || phases > 60) {
+            throw new IOException("Invalid number of phases: " + phases);
+        }
+        if (in.readInt() != PATTERNS) {
+            throw new IOException("Pattern set does not match this evaluator");
+        }
+        for (int p = 0; p < PATTERNS; p++) {
+            if (in.readInt() != PATTERN_SIZE[p]) {
+                throw new IOException("Pattern set does not match this evaluator");
+            }
+        }
+        short[][][] weights = new short[phases][PATTERNS][];
+        for (int phase = 0; phase < phases; phase++) {
+            for (int p = 0; p < PATTERNS; p++) {
+                short[] table = new short[PATTERN_LENGTH[p]];
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = in.readShort();
+                }
+                weights[phase][p] = table;
+            }
+        }
+        return new PatternEvaluator(weights, true);
+    }
+
+    // 重みをファイルに書き出すメソッド
+    public static void save(String path, short[][][] weights) throws IOException {
+        try (OutputStream out = new FileOutputStream(path)) {
+            save(out, weights);
+        }
+    }
+
+    // 重みをストリームに書き出すメソッド(ストリームは閉じない)
+    public static void save(OutputStream stream, short[][][] weights) throws IOException {
+        new PatternEvaluator(weights); // 形式の確認
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(weights.length);
+        out.writeInt(PATTERNS);
+        for (int p = 0; p < PATTERNS; p++) {
+            out.writeInt(PATTERN_SIZE[p]);
+        }
+        for (short[][] phaseWeights : weights) {
+            for (short[] table : phaseWeights) {
+                for (short weight : table) {
+                    out.writeShort(weight);
+                }
+            }
+        }
+        out.flush();
+    }
+
+    /*
+    パターン自身の対称性で移した配置の添字を返すメソッド(重みの学習用)
+    辺やXマスの左右反転、3×3の転置、斜めの列の逆順などは、盤面を回転・反転した局面で同じ位置に現れるので、
+    回転・反転した局面の評価値を一致させるには、indexとsymmetricIndex(pattern, index)の重みを同じ値にする。
+    */
+    public static int symmetricIndex(int pattern, int index) {
+        int[] digitMap = SYMMETRIC_DIGIT[pattern];
+        int[] digits = new int[digitMap.length];
+        for (int i = 0; i < digits.length; i++) {
+            digits[digitMap[i]] = index % 3;
+            index /= 3;
+        }
+        int result = 0;
+        for (int i = digits.length - 1; i >= 0; i--) {
+            result = result * 3 + digits[i];
+        }
+        return result;
+    }
+
+    public int getPhases() {
+        return phases;
+    }
+
+    // 段階phase・パターンpatternの重みの表(VectorPatternEvaluator用。変更しないこと)
+    short[] getWeights(int phase, int pattern) {
+        return weights[phase][pattern];
+    }
+
+    // 複数の局面をまとめて評価するときにVector APIを使うか
+    public boolean isVectorized() {
+        return batchEvaluator != null;
+    }
+
+    // 石の数から段階を求めるメソッド(4個: 0 ～ 64個: phases - 1)
+    public static int phaseOf(int discs, int phases) {
+        return (discs - 4) * phases / 61;
+    }
+
+    // 局面を評価するメソッド(黒が正)
+    public int evaluate(BitBoard board) {
+        return evaluate(board.getBlack(), board.getWhite());
+    }
+
+    /*
+    blacks[i], whites[i] (0 <= i < count)の局面をまとめて評価し、評価値(黒が正)をscores[i]に格納するメソッド
+    Vector APIが使えれば複数の局面を並べて計算し、使えなければ1局面ずつ評価する(どちらも評価値は同じ)。
+    */
+    public void evaluate(long[] blacks, long[] whites, int count, int[] scores) {
+        BatchEvaluator batch = batchEvaluator;
+        if (batch != null) {
+            batch.evaluate(blacks, whites, count, scores);
+        } else {
+            evaluateEach(blacks, whites, count, scores);
+        }
+    }
+
+    // 複数の局面を1局面ずつ評価するメソッド(Vector APIを使わない場合の処理, 比較用)
+    void evaluateEach(long[] blacks, long[] whites, int count, int[] scores) {
+        for (int i = 0; i < count; i++) {
+            scores[i] = evaluate(blacks[i], whites[i]);
+        }
+    }
+
+    // 黒石がblack, 白石がwhiteの局面を評価するメソッド(黒が正)
+    public int evaluate(long black, long white) {
+        short[][] w = weights[phaseOf(Long.bitCount(black | white), phases)];
+
+        // 盤面を回転・反転した8通りの配置を求め、各パターンは左上の隅(または上辺・主対角線)の位置で読み取る
+        long bT = BitBoard.transpose(black), wT = BitBoard.transpose(white);
+        long bV = BitBoard.flipVertical(black), wV = BitBoard.flipVertical(white);
+        long bH = BitBoard.mirror(black), wH = BitBoard.mirror(white);
+        long bVH = BitBoard.flipVertical(bH), wVH = BitBoard.flipVertical(wH);
+        long bTV = BitBoard.transpose(bV), wTV = BitBoard.transpose(wV);
+        long bTH = BitBoard.transpose(bH), wTH = BitBoard.transpose(wH);
+        long bTVH = BitBoard.transpose(bVH), wTVH = BitBoard.transpose(wVH);
+
+        int score = w[EDGE_X][edgeX(black, white)] + w[EDGE_X][edgeX(bT, wT)]
+                + w[EDGE_X][edgeX(bV, wV)] + w[EDGE_X][edgeX(bTH, wTH)];
+        score += w[CORNER_2X5][corner2x5(black, white)] + w[CORNER_2X5][corner2x5(bT, wT)]
+                + w[CORNER_2X5][corner2x5(bV, wV)] + w[CORNER_2X5][corner2x5(bH, wH)]
+                + w[CORNER_2X5][corner2x5(bVH, wVH)] + w[CORNER_2X5][corner2x5(bTV, wTV)]
+                + w[CORNER_2X5][corner2x5(bTH, wTH)] + w[CORNER_2X5][corner2x5(bTVH, wTVH)];
+        score += w[CORNER_3X3][corner3x3(black, white)] + w[CORNER_3X3][corner3x3(bV, wV)]
+                + w[CORNER_3X3][corner3x3(bH, wH)] + w[CORNER_3X3][corner3x3(bVH, wVH)];
+        score += w[DIAG8][diagonal(black, white, DIAG8_MASK, 0)] + w[DIAG8][diagonal(bH, wH, DIAG8_MASK, 0)];
+        score += diagonals(w[DIAG7], DIAG7_MASK, 1, black, white, bT, wT, bH, wH, bTH, wTH);
+        score += diagonals(w[DIAG6], DIAG6_MASK, 2, black, white, bT, wT, bH, wH, bTH, wTH);
+        score += diagonals(w[DIAG5], DIAG5_MASK, 3, black, white, bT, wT, bH, wH, bTH, wTH);
+        score += diagonals(w[DIAG4], DIAG4_MASK, 4, black, white, bT, wT, bH, wH, bTH, wTH);
+        return Math.max(-MAX_SCORE, Math.min(MAX_SCORE, score));
+    }
+
+    /*
+    局面の34か所の特徴の添字を求めるメソッド(重みの学習用)
+    indices[i]はFEATURE_PATTERN[i]のパターンの重みの添字となる。evaluateと同じ順・同じ読み取り方をする。
+    */
+    public static void computeIndices(long black, long white, int[] indices) {
+        long bT = BitBoard.transpose(black), wT = BitBoard.transpose(white);
+        long bV = BitBoard.flipVertical(black), wV = BitBoard.flipVertical(white);
+        long bH = BitBoard.mirror(black), wH = BitBoard.mirror(white);
+        long bVH = BitBoard.flipVertical(bH), wVH = BitBoard.flipVertical(wH);
+        long bTV = BitBoard.transpose(bV), wTV = BitBoard.transpose(wV);
+        long bTH = BitBoard.transpose(bH), wTH = BitBoard.transpose(wH);
+        long bTVH = BitBoard.transpose(bVH), wTVH = BitBoard.transpose(wVH);
+
+        int i = 0;
+        indices[i++] = edgeX(black, white);
+        indices[i++] = edgeX(bT, wT);
+        indices[i++] = edgeX(bV, wV);
+        indices[i++] = edgeX(bTH, wTH);
+        indices[i++] = corner2x5(black, white);
+        indices[i++] = corner2x5(bT, wT);
+        indices[i++] = corner2x5(bV, wV);
+        indices[i++] = corner2x5(bH, wH);
+        indices[i++] = corner2x5(bVH, wVH);
+        indices[i++] = corner2x5(bTV, wTV);
+        indices[i++] = corner2x5(bTH, wTH);
+        indices[i++] = corner2x5(bTVH, wTVH);
+        indices[i++] = corner3x3(black, white);
+        indices[i++] = corner3x3(bV, wV);
+        indices[i++] = corner3x3(bH, wH);
+        indices[i++] = corner3x3(bVH, wVH);
+        indices[i++] = diagonal(black, white, DIAG8_MASK, 0);
+        indices[i++] = diagonal(bH, wH, DIAG8_MASK, 0);
+        for (int k = 1; k <= 4; k++) {
+            long mask = DIAG_MASKS[k - 1];
+            indices[i++] = diagonal(black, white, mask, k);
+            indices[i++] = diagonal(bT, wT, mask, k);
+            indices[i++] = diagonal(bH, wH, mask, k);
+            indices[i++] = diagonal(bTH, wTH, mask, k);
+        }
+    }
+
+    // 対角線に平行な列の4か所(主対角線の上下、反対の対角線の上下)の重みの和
+    private static int diagonals(short[] table, long mask, int offset, long black, long white, long bT, long wT,
+            long bH, long wH, long bTH, long wTH) {
+        return table[diagonal(black, white, mask, offset)] + table[diagonal(bT, wT, mask, offset)]
+                + table[diagonal(bH, wH, mask, offset)] + table[diagonal(bTH, wTH, mask, offset)];
+    }
+
+    // 上辺の8マス(0, 0) ～ (0, 7)とXマス(1, 1), (1, 6)の添字
+    private static int edgeX(long black, long white) {
+        return ternary(edgeXBits(black)) + 2 * ternary(edgeXBits(white));
+    }
+
+    private static int edgeXBits(long bits) {
+        return (int) ((bits & 0xff) | ((bits >>> 1) & 0x100) | ((bits >>> 5) & 0x200));
+    }
+
+    // 左上の隅の2×5((0, 0) ～ (0, 4), (1, 0) ～ (1, 4))の添字
+    private static int corner2x5(long black, long white) {
+        return ternary(corner2x5Bits(black)) + 2 * ternary(corner2x5Bits(white));
+    }
+
+    private static int corner2x5Bits(long bits) {
+        return (int) ((bits & 0x1f) | ((bits >>> 3) & 0x3e0));
+    }
+
+    // 左上の隅の3×3の添字
+    private static int corner3x3(long black, long white) {
+        return ternary(corner3x3Bits(black)) + 2 * ternary(corner3x3Bits(white));
+    }
+
+    private static int corner3x3Bits(long bits) {
+        return (int) ((bits & 0x7) | ((bits >>> 5) & 0x38) | ((bits >>> 10) & 0x1c0));
+    }
+
+    // マス(x, x + offset)の列の添字
+    // 各マスは別々の列にあるので、乗算で最上位の行に集めると列の順に並ぶ
+    private static int diagonal(long black, long white, long mask, int offset) {
+        int b = (int) (((black & mask) * COLUMN_GATHER) >>> (56 + offset));
+        int w = (int) (((white & mask) * COLUMN_GATHER) >>> (56 + offset));
+        return ternary(b) + 2 * ternary(w);
+    }
+
+    private static int ternary(int bits) {
+        return TERNARY[bits];
+    }
+}
@@ -0,0 +1,265 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class PatternEvaluatorDriver {
+    private static final int SIZE = 8;
+    private static final int POSITIONS = 3000; // テストに使うランダム局面数
+    private static final int BENCH_CALLS = 2_000_000; // 速度比較での評価回数
+    private static final int PHASES = 6;
+
+    // 盤面の変換(新しい盤面のマス(x, y)に元の盤面のどのマスが来るか)
+    private static final int I = 0, T = 1, V = 2, H = 3, VH = 4, TV = 5, TH = 6, TVH = 7;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("PatternEvaluatorクラスのテスト(PatternEvaluatorDriver.java)");
+        List<BitBoard> positions = createPositions(new Random(1));
+
+        // 1. 盤面の反転
+        System.out.println("\n1. 盤面の反転(transpose, mirror)のテスト");
+        int mismatch = 0;
+        for (BitBoard board : positions) {
+            long bits = board.getBlack();
+            if (BitBoard.transpose(bits) != transformSlow(bits, T)
+                    || BitBoard.mirror(bits) != transformSlow(bits, H)) {
+                mismatch++;
+            }
+        }
+        System.out.println("   不一致数: " + mismatch + (mismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // 2. 特徴の添字を1マスずつ数えた結果と比較
+        System.out.println("\n2. 特徴の添字のテスト(" + positions.size() + " 局面)");
+        mismatch = 0;
+        int[] indices = new int[PatternEvaluator.FEATURES];
+        for (BitBoard board : positions) {
+            PatternEvaluator.computeIndices(board.getBlack(), board.getWhite(), indices);
+            int[] expected = computeIndicesSlow(board);
+            for (int i = 0; i < indices.length; i++) {
+                if (indices[i] != expected[i]) {
+                    mismatch++;
+                }
+            }
+        }
+        System.out.println("   不一致数: " + mismatch + (mismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // 3. 評価値が特徴の重みの和と一致し、回転・反転した局面でも同じになるか
+        System.out.println("\n3. 回転・反転した局面の評価値のテスト(パターン自身の対称性で揃えたランダムな重み)");
+        short[][][] weights = randomWeights(new Random(2));
+        PatternEvaluator evaluator = new PatternEvaluator(weights);
+        mismatch = 0;
+        int checked = 0;
+        for (BitBoard board : positions) {
+            int score = evaluator.evaluate(board);
+            int[] features = computeIndicesSlow(board);
+            int expected = 0;
+            int phase = PatternEvaluator.phaseOf(Long.bitCount(board.getBlack() | board.getWhite()), PHASES);
+            for (int i = 0; i < features.length; i++) {
+                expected += weights[phase][PatternEvaluator.FEATURE_PATTERN[i]][features[i]];
+            }
+            if (score != expected) {
+                mismatch++;
+            }
+            for (int t = T; t <= TVH; t++) {
+                BitBoard image = new BitBoard(transformSlow(board.getBlack(), t), transformSlow(board.getWhite(), t));
+                if (evaluator.evaluate(image) != score) {
+                    mismatch++;
+                }
+                checked++;
+            }
+        }
+        System.out.println("   不一致数: " + mismatch + " / " + checked + (mismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // 4. 重みファイルの書き出しと読み込み
+        System.out.println("\n4. 重みファイルの書き出し・読み込みのテスト");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PatternEvaluator.save(out, weights);
+        byte[] bytes = out.toByteArray();
+        PatternEvaluator loaded = PatternEvaluator.load(new ByteArrayInputStream(bytes));
+        mismatch = (loaded.getPhases() == PHASES) ? 0 : 1;
+        for (BitBoard board : positions) {
+            if (loaded.evaluate(board) != evaluator.evaluate(board)) {
+                mismatch++;
+            }
+        }
+        System.out.println("   ファイルサイズ: " + bytes.length + " バイト (" + PHASES + " 段階)");
+        System.out.println("   不一致数: " + mismatch + (mismatch == 0 ? " (成功)" : " (失敗)"));
+        bytes[4] = 99; // バージョンを壊す
+        boolean rejected = false;
+        try {
+            PatternEvaluator.load(new ByteArrayInputStream(bytes));
+        } catch (IOException e) {
+            rejected = true;
+        }
+        System.out.println("   形式の異なるファイルを読み込まない: " + (rejected ? "成功" : "失敗"));
+
+        // 5. 速度比較
+        System.out.println("\n5. 速度比較(" + BENCH_CALLS + " 回評価)");
+        long sum = 0;
+        for (int round = 0; round < 2; round++) { // 1回目はJITのウォームアップ
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCH_CALLS; i++) {
+                sum += CPU.evaluate(positions.get(i % positions.size()));
+            }
+            double cellTime = (double) (System.nanoTime() - start) / BENCH_CALLS;
+            start = System.nanoTime();
+            for (int i = 0; i < BENCH_CALLS; i++) {
+                sum += evaluator.evaluate(positions.get(i % positions.size()));
+            }
+            double patternTime = (double) (System.nanoTime() - start) / BENCH_CALLS;
+            if (round == 1) {
+                System.out.printf("   各マスの重み: %.1f ns/回, パターン評価: %.1f ns/回%n", cellTime, patternTime);
+            }
+        }
+        if (sum == 42) {
+            System.out.println(); // 最適化で計算が省かれないようにする
+        }
+
+        System.out.println("\nPatternEvaluatorクラスのテストを終了します。");
+    }
+
+    // 34か所の特徴の添字を、変換した盤面の各マスを1つずつ読んで求める
+    private static int[] computeIndicesSlow(BitBoard board) {
+        int[] indices = new int[PatternEvaluator.FEATURES];
+        int i = 0;
+        for (int t : new int[] { I, T, V, TH }) {
+            indices[i++] = readSquares(board, t, edgeXSquares());
+        }
+        for (int t : new int[] { I, T, V, H, VH, TV, TH, TVH }) {
+            indices[i++] = readSquares(board, t, rectangleSquares(2, 5));
+        }
+        for (int t : new int[] { I, V, H, VH }) {
+            indices[i++] = readSquares(board, t, rectangleSquares(3, 3));
+        }
+        for (int t : new int[] { I, H }) {
+            indices[i++] = readSquares(board, t, diagonalSquares(0));
+        }
+        for (int k = 1; k <= 4; k++) {
+            for (int t : new int[] { I, T, H, TH }) {
+                indices[i++] = readSquares(board, t, diagonalSquares(k));
+            }
+        }
+        return indices;
+    }
+
+    // 変換した盤面のsquaresのマスを順に読み、3進数の添字(squares[i]が3^iの桁)にする
+    private static int readSquares(BitBoard board, int transform, List<int[]> squares) {
+        Integer[][] cells = new BitBoard(transformSlow(board.getBlack(), transform),
+                transformSlow(board.getWhite(), transform)).toBoard();
+        int index = 0;
+        for (int i = squares.size() - 1; i >= 0; i--) {
+            int[] sq = squares.get(i);
+            index = index * 3 + cells[sq[0]][sq[1]];
+        }
+        return index;
+    }
+
+    private static List<int[]> edgeXSquares() {
+        List<int[]> squares = new ArrayList<>();
+        for (int y = 0; y < SIZE; y++) {
+            squares.add(new int[] { 0, y });
+        }
+        squares.add(new int[] { 1, 1 });
+        squares.add(new int[] { 1, 6 });
+        return squares;
+    }
+
+    private static List<int[]> rectangleSquares(int rows, int cols) {
+        List<int[]> squares = new ArrayList<>();
+        for (int x = 0; x < rows; x++) {
+            for (int y = 0; y < cols; y++) {
+                squares.add(new int[] { x, y });
+            }
+        }
+        return squares;
+    }
+
+    private static List<int[]> diagonalSquares(int offset) {
+        List<int[]> squares = new ArrayList<>();
+        for (int x = 0; x + offset < SIZE; x++) {
+            squares.add(new int[] { x, x + offset });
+        }
+        return squares;
+    }
+
+    // 1マスずつ移して盤面を変換する
+    private static long transformSlow(long bits, int transform) {
+        long result = 0;
+        for (int x = 0; x < SIZE; x++) {
+            for (int y = 0; y < SIZE; y++) {
+                int[] from = source(x, y, transform);
+                if ((bits & BitBoard.square(from[0], from[1])) != 0) {
+                    result |= BitBoard.square(x, y);
+                }
+            }
+        }
+        return result;
+    }
+
+    // 変換後のマス(x, y)に移る元の盤面のマス
+    private static int[] source(int x, int y, int transform) {
+        switch (transform) {
+            case T:
+                return new int[] { y, x };
+            case V:
+                return new int[] { 7 - x, y };
+            case H:
+                return new int[] { x, 7 - y };
+            case VH:
+                return new int[] { 7 - x, 7 - y };
+            case TV:
+                return new int[] { 7 - y, x };
+            case TH:
+                return new int[] { y, 7 - x };
+            case TVH:
+                return new int[] { 7 - y, 7 - x };
+            default:
+                return new int[] { x, y };
+        }
+    }
+
+    private static short[][][] randomWeights(Random random) {
+        short[][][] weights = new short[PHASES][PatternEvaluator.PATTERNS][];
+        for (int phase = 0; phase < PHASES; phase++) {
+            for (int p = 0; p < PatternEvaluator.PATTERNS; p++) {
+                short[] table = new short[PatternEvaluator.PATTERN_LENGTH[p]];
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (short) (random.nextInt(2001) - 1000);
+                }
+                for (int i = 0; i < table.length; i++) {
+                    table[PatternEvaluator.symmetricIndex(p, i)] = table[i];
+                }
+                weights[phase][p] = table;
+            }
+        }
+        return weights;
+    }
+
+    // ランダム対局の途中局面を集める
+    private static List<BitBoard> createPositions(Random random) {
+        List<BitBoard> positions = new ArrayList<>();
+        while (positions.size() < POSITIONS) {
+            BitBoard board = new BitBoard();
+            int color = BitBoard.BLACK;
+            int passes = 0;
+            while (passes < 2) {
+                long moves = board.getValidMoves(color);
+                if (moves == 0) {
+                    passes++;
+                } else {
+                    passes = 0;
+                    int index = random.nextInt(Long.bitCount(moves));
+                    for (int k = 0; k < index; k++) {
+                        moves &= moves - 1;
+                    }
+                    board.makeMove(Long.numberOfTrailingZeros(moves), color);
+                    positions.add(board.copy());
+                }
+                color = BitBoard.opponentColor(color);
+            }
+        }
+        return positions;
+    }
+}
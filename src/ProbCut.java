@@ -0,0 +1,192 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Locale;
+
+/*
+Multi-ProbCut(選択的な枝刈り)のパラメータを保持するクラス
+深さdの探索のスコアvは、同じ局面の浅い深さd'の探索のスコアv'から v ≒ 傾き × v' + 切片 と予測でき、
+予測の誤差は標準偏差σの正規分布に近い。そこで深さdのノードでは先に深さd'の幅0の探索を行い、
+    v' >= (beta + CUT_THRESHOLD × σ - 切片) / 傾き  なら深さdの探索もbeta以上になるとみなしてbetaを返し、
+    v' <= (alpha - CUT_THRESHOLD × σ - 切片) / 傾き なら深さdの探索もalpha以下になるとみなしてalphaを返す。
+どちらでもなければ通常どおり深さdまで探索する。浅い探索の中でも同じ枝刈りを行う。
+傾き・切片・σは局面の進行度(石の数)の段階ごと・深さの組(d, d')ごとに、ProbCutTrainerでこのプログラム自身の探索結果から求める。
+
+パラメータは各マスの重み・着手可能数などによる評価関数(CPU.evaluate)に合わせたものなので、
+パターン評価(PatternEvaluator)を使う場合は、同じ重みファイルでProbCutTrainerを実行して求めたパラメータを読み込む。
+
+パラメータファイルの形式(テキスト、1行1組、#で始まる行は無視する):
+    段階 深さ 浅い深さ 傾き 切片 標準偏差
+生成後は変更しないので、複数のCPU・スレッドで共有してよい。
+*/
+public final class ProbCut {
+    public static final int STAGES = 4; // 進行度の段階数
+    public static final int MIN_DEPTH = 3; // 枝刈りを試す最小の残り深さ
+    public static final int MAX_DEPTH = 16; // 枝刈りを試す最大の残り深さ(これより深いノードでは通常どおり探索する)
+    static final double CUT_THRESHOLD = 1.5; // 予測がこの標準偏差の数だけ探索窓の外にあれば枝刈りする
+    private static final int SCORE_LIMIT = CPU.WIN_SCORE / 2; // 探索窓がこれより広い場合(評価値の範囲外)は枝刈りしない
+
+    // このプログラムの評価関数で求めたパラメータ(java ProbCutTrainer ファイル 1500 12 で作成, 1347局面)
+    private static final String DEFAULT_PARAMETERS = ""
+            + "# 段階 深さ 浅い深さ 傾き 切片 標準偏差\n"
+            + "0 3 1 1.0261 2.0713 7.6493\n"
+            + "0 4 2 1.0335 0.4260 5.8906\n"
+            + "0 5 1 1.0827 2.3731 9.7141\n"
+            + "0 6 2 1.0666 0.9814 7.6993\n"
+            + "0 7 3 1.0758 0.0448 7.9360\n"
+            + "0 8 4 1.0460 1.6107 6.7905\n"
+            + "0 9 3 1.1089 -0.1701 9.8340\n"
+            + "0 10 4 1.1079 2.0539 8.1429\n"
+            + "0 11 5 1.1309 -0.4557 8.4316\n"
+            + "0 12 6 1.1231 1.7878 7.8116\n"
+            + "1 3 1 1.0951 3.1299 11.7120\n"
+            + "1 4 2 1.0956 -0.0935 10.8274\n"
+            + "1 5 1 1.1839 4.1714 16.1963\n"
+            + "1 6 2 1.1652 0.5448 15.0235\n"
+            + "1 7 3 1.1317 1.1074 14.3181\n"
+            + "1 8 4 1.1262 1.1933 14.0181\n"
+            + "1 9 3 1.2022 2.2530 18.5780\n"
+            + "1 10 4 1.1942 1.7277 17.2035\n"
+            + "1 11 5 1.1962 2.3733 14.6715\n"
+            + "1 12 6 1.1911 0.5292 13.7854\n"
+            + "2 3 1 1.0506 3.8749 19.6413\n"
+            + "2 4 2 1.0623 -0.0724 20.0298\n"
+            + "2 5 1 1.1266 4.4911 31.2322\n"
+            + "2 6 2 1.1362 -0.5972 29.8164\n"
+            + "2 7 3 1.1648 1.1261 27.6098\n"
+            + "2 8 4 1.1486 -0.4589 22.6142\n"
+            + "2 9 3 1.2288 3.4694 34.9429\n"
+            + "2 10 4 1.2217 -1.1808 29.9113\n"
+            + "2 11 5 1.2120 4.4069 30.1833\n"
+            + "2 12 6 1.2148 -1.3100 28.7328\n"
+            + "3 3 1 1.0308 6.7805 27.2123\n"
+            + "3 4 2 1.0467 3.3951 25.1816\n"
+            + "3 5 1 1.0865 13.6308 37.2013\n"
+            + "3 6 2 1.1055 3.8527 32.6830\n"
+            + "3 7 3 1.1151 8.7840 30.3583\n"
+            + "3 8 4 1.1267 -1.1466 28.6533\n"
+            + "3 9 3 1.2001 12.8847 38.4331\n"
+            + "3 10 4 1.2182 -3.0512 39.8374\n"
+            + "3 11 5 1.2400 7.6466 40.1715\n"
+            + "3 12 6 1.2774 -5.5202 49.0238\n";
+
+    // 各マスの重み・着手可能数などによる評価関数用のパラメータ
+    public static final ProbCut DEFAULT = parseDefault();
+
+    private final int[][] shallowDepth = new int[STAGES][MAX_DEPTH + 1]; // 段階・深さごとの浅い探索の深さ(0なら枝刈りしない)
+    private final double[][] slope = new double[STAGES][MAX_DEPTH + 1];
+    private final double[][] intercept = new double[STAGES][MAX_DEPTH + 1];
+    private final double[][] sigma = new double[STAGES][MAX_DEPTH + 1];
+
+    private ProbCut() {
+    }
+
+    // 局面の石の数から進行度の段階を求めるメソッド
+    public static int stageOf(int discs) {
+        return (discs - 4) * STAGES / 61;
+    }
+
+    // 深さの組(depth, shallowDepth)のパラメータを返すメソッド(0番目: 浅い深さ, 1番目以降: 傾き, 切片, 標準偏差)
+    // パラメータがなければnullを返す
+    public double[] getParameters(int stage, int depth) {
+        if (depth < MIN_DEPTH || depth > MAX_DEPTH || shallowDepth[stage][depth] == 0) {
+            return null;
+        }
+        return new double[] { shallowDepth[stage][depth], slope[stage][depth], intercept[stage][depth],
+                sigma[stage][depth] };
+    }
+
+    // 残り深さdepthのノードで行う浅い探索の深さを返すメソッド(枝刈りを試さない場合は0)
+    int getShallowDepth(int stage, int depth) {
+        return (depth < MIN_DEPTH || depth > MAX_DEPTH) ? 0 : shallowDepth[stage][depth];
+    }
+
+    // 浅い探索のスコアがこの値以上なら深い探索もbeta以上とみなせる値(探索窓が評価値の範囲外ならInteger.MAX_VALUE)
+    int highBound(int stage, int depth, int beta) {
+        if (beta > SCORE_LIMIT) {
+            return Integer.MAX_VALUE;
+        }
+        double bound = (beta + CUT_THRESHOLD * sigma[stage][depth] - intercept[stage][depth]) / slope[stage][depth];
+        return (int) Math.ceil(bound);
+    }
+
+    // 浅い探索のスコアがこの値以下なら深い探索もalpha以下とみなせる値(探索窓が評価値の範囲外ならInteger.MIN_VALUE)
+    int lowBound(int stage, int depth, int alpha) {
+        if (alpha < -SCORE_LIMIT) {
+            return Integer.MIN_VALUE;
+        }
+        double bound = (alpha - CUT_THRESHOLD * sigma[stage][depth] - intercept[stage][depth]) / slope[stage][depth];
+        return (int) Math.floor(bound);
+    }
+
+    // パラメータファイルを読み込むメソッド
+    public static ProbCut load(String path) throws IOException {
+        try (Reader reader = new FileReader(path)) {
+            return load(reader);
+        }
+    }
+
+    // パラメータを読み込むメソッド(readerは閉じない)
+    public static ProbCut load(Reader source) throws IOException {
+        ProbCut probCut = new ProbCut();
+        BufferedReader reader = new BufferedReader(source);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\\s+");
+            if (fields.length != 6) {
+                throw new IOException("Invalid ProbCut parameters at line " + lineNumber + ": " + line);
+            }
+            try {
+                int stage = Integer.parseInt(fields[0]);
+                int depth = Integer.parseInt(fields[1]);
+                int shallow = Integer.parseInt(fields[2]);
+                double a = Double.parseDouble(fields[3]);
+                double b = Double.parseDouble(fields[4]);
+                double s = Double.parseDouble(fields[5]);
+                if (stage < 0 || stage >= STAGES || depth < MIN_DEPTH || depth > MAX_DEPTH || shallow < 1
+                        || shallow >= depth || !(a > 0) || !(s >= 0) || Double.isNaN(b)) {
+                    throw new IOException("Invalid ProbCut parameters at line " + lineNumber + ": " + line);
+                }
+                probCut.shallowDepth[stage][depth] = shallow;
+                probCut.slope[stage][depth] = a;
+                probCut.intercept[stage][depth] = b;
+                probCut.sigma[stage][depth] = s;
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid ProbCut parameters at line " + lineNumber + ": " + line);
+            }
+        }
+        return probCut;
+    }
+
+    // パラメータをファイルに書き出すメソッド(parameters[段階][深さ]はgetParametersと同じ形式, nullの組は書かない)
+    public static void save(String path, double[][][] parameters) throws IOException {
+        try (PrintWriter out = new PrintWriter(path, "UTF-8")) {
+            out.println("# 段階 深さ 浅い深さ 傾き 切片 標準偏差");
+            for (int stage = 0; stage < parameters.length; stage++) {
+                for (int depth = 0; depth < parameters[stage].length; depth++) {
+                    double[] p = parameters[stage][depth];
+                    if (p != null) {
+                        out.printf(Locale.ROOT, "%d %d %d %.4f %.4f %.4f%n", stage, depth, (int) p[0], p[1], p[2], p[3]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static ProbCut parseDefault() {
+        try {
+            return load(new StringReader(DEFAULT_PARAMETERS));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
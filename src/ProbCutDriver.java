@@ -0,0 +1,199 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ProbCutDriver {
+    private static final int POSITIONS = 10; // 探索のテストに使うランダム局面数
+    private static final int FIXED_DEPTH = 9; // 同じ深さでの比較に使う深さ
+    private static final long SEARCH_TIME_MS = 3000; // 同じ時間での比較に使う思考時間(強さ「強い」と同じ)
+    private static final long MATCH_TIME_MS = 100; // 対局のテストでの1手あたりの思考時間
+    private static final int MATCH_PAIRS = 3; // 対局のテストで先後を入れ替えて行う対局数
+    private static final int RANDOM_OPENING = 6; // 対局のテストで最初にランダムに打つ手数
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("ProbCutクラスのテスト(ProbCutDriver.java)");
+        PrintStream console = System.out;
+        PrintStream quiet = new PrintStream(OutputStream.nullOutputStream()); // CPUの1手ごとのログを出さない
+
+        // 1. パラメータの書き出しと読み込み
+        System.out.println("\n1. パラメータファイルの書き出し・読み込みのテスト");
+        File file = File.createTempFile("probcut", ".txt");
+        file.deleteOnExit();
+        double[][][] parameters = new double[ProbCut.STAGES][ProbCut.MAX_DEPTH + 1][];
+        parameters[1][6] = new double[] { 2, 1.25, -3.5, 12.75 };
+        ProbCut.save(file.getPath(), parameters);
+        ProbCut loaded = ProbCut.load(file.getPath());
+        double[] p = loaded.getParameters(1, 6);
+        check("書き出した値を読み込める", p != null && p[0] == 2 && p[1] == 1.25 && p[2] == -3.5 && p[3] == 12.75
+                && loaded.getParameters(0, 6) == null);
+        check("予測の範囲(傾き1.25, 切片-3.5, 標準偏差12.75)", loaded.highBound(1, 6, 20)
+                == (int) Math.ceil((20 + ProbCut.CUT_THRESHOLD * 12.75 + 3.5) / 1.25)
+                && loaded.lowBound(1, 6, 20) == (int) Math.floor((20 - ProbCut.CUT_THRESHOLD * 12.75 + 3.5) / 1.25));
+        check("評価値の範囲外の探索窓では枝刈りしない", loaded.highBound(1, 6, Integer.MAX_VALUE - 1) == Integer.MAX_VALUE
+                && loaded.lowBound(1, 6, Integer.MIN_VALUE + 1) == Integer.MIN_VALUE);
+        boolean rejected = true;
+        for (String broken : new String[] { "0 6 2 1.0 0.0", "0 6 6 1.0 0.0 5.0", "0 6 2 -1.0 0.0 5.0",
+                "9 6 2 1.0 0.0 5.0", "0 6 2 x 0.0 5.0" }) {
+            try {
+                ProbCut.load(new StringReader(broken));
+                rejected = false;
+            } catch (IOException e) {
+                // 正しく拒否された
+            }
+        }
+        check("不正な行を読み込まない", rejected);
+        int pairs = 0;
+        for (int stage = 0; stage < ProbCut.STAGES; stage++) {
+            for (int depth = ProbCut.MIN_DEPTH; depth <= ProbCut.MAX_DEPTH; depth++) {
+                pairs += (ProbCut.DEFAULT.getParameters(stage, depth) != null) ? 1 : 0;
+            }
+        }
+        check("組み込みのパラメータ(" + pairs + " 組)", pairs > 0);
+
+        // 2. 同じ深さでの比較(ノード数と選んだ手の一致)
+        List<BitBoard> positions = new ArrayList<>();
+        List<String> turns = new ArrayList<>();
+        createPositions(new Random(1), positions, turns);
+        System.out.println("\n2. 同じ深さ(" + FIXED_DEPTH + ")での比較(" + POSITIONS + " 局面)");
+        long[] nodes = new long[2];
+        long[] nanos = new long[2];
+        int[][] moves = new int[2][POSITIONS];
+        for (int f = 0; f < 2; f++) {
+            for (int i = 0; i < POSITIONS; i++) {
+                System.setOut(quiet);
+                CPU cpu = createCPU(turns.get(i), f == 1);
+                cpu.setTimeLimit(3_600_000L);
+                cpu.setMaxDepth(FIXED_DEPTH);
+                cpu.getCPUOperation(positions.get(i).toBoard());
+                System.setOut(console);
+                nodes[f] += cpu.getNodes();
+                nanos[f] += cpu.getLastStats().getElapsedNanos();
+                moves[f][i] = cpu.getLastStats().getMove();
+                cpu.shutdown();
+            }
+        }
+        int same = 0;
+        for (int i = 0; i < POSITIONS; i++) {
+            same += (moves[0][i] == moves[1][i]) ? 1 : 0;
+        }
+        System.out.printf("   枝刈りなし: %d ノード %.2f秒, Multi-ProbCut: %d ノード %.2f秒 (%.1f%%)%s%n", nodes[0],
+                nanos[0] / 1e9, nodes[1], nanos[1] / 1e9, 100.0 * nodes[1] / nodes[0], (nodes[1] < nodes[0]) ? " (成功)" : " (失敗)");
+        System.out.println("   選んだ手が一致した局面: " + same + " / " + POSITIONS);
+
+        // 3. 同じ思考時間で到達する深さ
+        System.out.println("\n3. 同じ思考時間(" + SEARCH_TIME_MS + "ms)で探索し終えた深さ(" + POSITIONS + " 局面)");
+        int[] depthSum = new int[2];
+        for (int f = 0; f < 2; f++) {
+            for (int i = 0; i < POSITIONS; i++) {
+                System.setOut(quiet);
+                CPU cpu = createCPU(turns.get(i), f == 1);
+                cpu.setTimeLimit(SEARCH_TIME_MS);
+                cpu.getCPUOperation(positions.get(i).toBoard());
+                System.setOut(console);
+                depthSum[f] += cpu.getLastStats().getCompletedDepth();
+                cpu.shutdown();
+            }
+        }
+        System.out.printf("   平均の深さ 枝刈りなし: %.1f, Multi-ProbCut: %.1f%s%n", (double) depthSum[0] / POSITIONS,
+                (double) depthSum[1] / POSITIONS, (depthSum[1] > depthSum[0]) ? " (成功)" : " (失敗)");
+
+        // 4. 枝刈りなしのCPUとの対局(思考時間をそろえて比較する)
+        System.out.println("\n4. 枝刈りなしとの対局(1手" + MATCH_TIME_MS + "ms, " + (2 * MATCH_PAIRS) + "局)");
+        int wins = 0;
+        int losses = 0;
+        int draws = 0;
+        for (int game = 0; game < 2 * MATCH_PAIRS; game++) {
+            boolean probCutBlack = (game % 2 == 0);
+            System.setOut(quiet);
+            CPU black = createCPU("Black", probCutBlack);
+            CPU white = createCPU("White", !probCutBlack);
+            black.setTimeLimit(MATCH_TIME_MS);
+            white.setTimeLimit(MATCH_TIME_MS);
+            int diff = playGame(black, white, new Random(game / 2)); // 黒 - 白
+            black.shutdown();
+            white.shutdown();
+            System.setOut(console);
+            int probCutDiff = probCutBlack ? diff : -diff;
+            if (probCutDiff > 0) {
+                wins++;
+            } else if (probCutDiff < 0) {
+                losses++;
+            } else {
+                draws++;
+            }
+        }
+        System.out.println("   " + wins + "勝 " + losses + "敗 " + draws + "分" + (wins >= losses ? " (成功)" : " (失敗)"));
+
+        System.out.println("\nProbCutクラスのテストを終了します。");
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println("   " + name + ": " + (ok ? "成功" : "失敗"));
+    }
+
+    // 強さ「強い」のCPU(probCutがfalseなら枝刈りなし)
+    private static CPU createCPU(String turn, boolean probCut) {
+        CPU cpu = new CPU(turn, "強い");
+        cpu.setProbCut(probCut ? ProbCut.DEFAULT : null);
+        return cpu;
+    }
+
+    // 1局対局し、石差(黒 - 白)を返す(最初のRANDOM_OPENING手はランダム)
+    private static int playGame(CPU black, CPU white, Random random) {
+        BitBoard board = new BitBoard();
+        int color = BitBoard.BLACK;
+        for (int ply = 0; ply < RANDOM_OPENING; ply++) {
+            long moves = board.getValidMoves(color);
+            for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                moves &= moves - 1;
+            }
+            board.makeMove(Long.numberOfTrailingZeros(moves), color);
+            color = BitBoard.opponentColor(color);
+        }
+        while (true) {
+            if (board.getValidMoves(color) == 0) {
+                color = BitBoard.opponentColor(color);
+                if (board.getValidMoves(color) == 0) {
+                    break;
+                }
+            }
+            int[] operation = ((color == BitBoard.BLACK) ? black : white).getCPUOperation(board.toBoard());
+            board.makeMove(operation[0] * BitBoard.SIZE + operation[1], color);
+            color = BitBoard.opponentColor(color);
+        }
+        return board.numberOfStone(BitBoard.BLACK) - board.numberOfStone(BitBoard.WHITE);
+    }
+
+    // ランダムに10〜34手進めた、手番側の合法手が2つ以上ある中盤の局面
+    private static void createPositions(Random random, List<BitBoard> positions, List<String> turns) {
+        while (positions.size() < POSITIONS) {
+            BitBoard board = new BitBoard();
+            int color = BitBoard.BLACK;
+            int plies = 10 + random.nextInt(25);
+            for (int ply = 0; ply < plies; ply++) {
+                long moves = board.getValidMoves(color);
+                if (moves == 0) {
+                    color = BitBoard.opponentColor(color);
+                    moves = board.getValidMoves(color);
+                    if (moves == 0) {
+                        break;
+                    }
+                }
+                for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                    moves &= moves - 1;
+                }
+                board.makeMove(Long.numberOfTrailingZeros(moves), color);
+                color = BitBoard.opponentColor(color);
+            }
+            if (Long.bitCount(board.getValidMoves(color)) >= 2) {
+                positions.add(board);
+                turns.add((color == BitBoard.BLACK) ? "Black" : "White");
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+Multi-ProbCut(ProbCut)のパラメータを、このプログラム自身の探索結果から求めるツール
+ローカルのCPUだけで動き、局面ごとの探索は複数のスレッドで並列に行う。
+
+1. 自己対戦(序盤のRANDOM_PLIES手はランダム、以降は深さPLAY_DEPTHのCPU)で局面を作る。
+   局面ごとに止める手数はランダムに決め、進行度の段階が偏らないようにする。
+2. 各局面を枝刈りなしで深さ1, 2, ..., 最大深さまで探索し、深さごとのスコア(手番側から見た値)を記録する。
+3. 段階ごと・深さdごとに、浅い深さd' = shallowDepthFor(d)のスコアから深さdのスコアを予測する直線を
+   最小二乗法で求め、傾き・切片・残差の標準偏差をパラメータファイルに書き出す。
+-Dothello.weights=重みファイル を指定すると、パターン評価での探索結果からパラメータを求める。
+
+使い方:
+    java ProbCutTrainer パラメータファイル 局面数 [最大深さ] [スレッド数]
+*/
+public class ProbCutTrainer {
+    private static final int RANDOM_PLIES = 8; // 序盤にランダムに打つ手数
+    private static final int MAX_PLIES = 52; // 局面を作るときに進める最大の手数
+    private static final int PLAY_DEPTH = 2; // 局面を作るときのCPUの探索深さ
+    private static final int DEFAULT_MAX_DEPTH = 10; // パラメータを求める最大の深さのデフォルト値
+    private static final int MIN_SAMPLES = 20; // パラメータを求めるのに必要な最小の局面数
+    private static final long NO_TIME_LIMIT = 3_600_000L;
+    private static final int TT_SIZE_MB = 32; // 探索用のCPUの置換表のサイズ
+    private static final int POSITIONS_PER_REPORT = 50; // 進み具合を表示する間隔(局面数)
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("使い方: java ProbCutTrainer パラメータファイル 局面数 [最大深さ] [スレッド数]");
+            System.exit(1);
+        }
+        int positions = Integer.parseInt(args[1]);
+        int maxDepth = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_MAX_DEPTH;
+        maxDepth = Math.max(ProbCut.MIN_DEPTH, Math.min(maxDepth, ProbCut.MAX_DEPTH));
+        int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        List<int[]> samples = collect(positions, maxDepth, threads);
+        double[][][] parameters = fit(samples, maxDepth);
+        ProbCut.save(args[0], parameters);
+        for (int stage = 0; stage < ProbCut.STAGES; stage++) {
+            for (int depth = ProbCut.MIN_DEPTH; depth <= maxDepth; depth++) {
+                double[] p = parameters[stage][depth];
+                if (p != null) {
+                    System.out.printf("段階 %d 深さ %2d <- %d: 傾き %.3f, 切片 %6.2f, 標準偏差 %6.2f%n", stage, depth,
+                            (int) p[0], p[1], p[2], p[3]);
+                }
+            }
+        }
+        System.out.println(samples.size() + "局面から求めたパラメータを " + args[0] + " に書き出しました");
+    }
+
+    // 深さdepthのノードで行う浅い探索の深さ(深さの半分程度で、偶奇をdepthにそろえる)
+    static int shallowDepthFor(int depth) {
+        int shallow = depth / 2;
+        if ((depth - shallow) % 2 != 0) {
+            shallow--;
+        }
+        return Math.max(1, shallow);
+    }
+
+    /*
+    positions個の局面を作って探索し、{段階, 深さ1のスコア, 深さ2のスコア, ...}の並びを返すメソッド
+    */
+    static List<int[]> collect(int positions, int maxDepth, int threads) throws Exception {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // CPUの1手ごとのログを出さない
+        long start = System.nanoTime();
+        AtomicInteger next = new AtomicInteger();
+        List<int[]> samples = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            PatternEvaluator evaluator = loadPatternEvaluator();
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(executor.submit(() -> {
+                    CPU[] players = { createCPU("Black", PLAY_DEPTH, evaluator), createCPU("White", PLAY_DEPTH, evaluator) };
+                    CPU[] searchers = { createCPU("Black", maxDepth, evaluator), createCPU("White", maxDepth, evaluator) };
+                    for (int i = next.getAndIncrement(); i < positions; i = next.getAndIncrement()) {
+                        Random random = new Random(i);
+                        BitBoard board = new BitBoard();
+                        int color = createPosition(board, players, random, RANDOM_PLIES
+                                + random.nextInt(MAX_PLIES - RANDOM_PLIES + 1));
+                        if (color == 0) {
+                            continue; // 合法手が2つ以上ある局面を作れなかった
+                        }
+                        int[] sample = new int[maxDepth + 1];
+                        sample[0] = ProbCut.stageOf(Long.bitCount(board.getBlack() | board.getWhite()));
+                        CPU searcher = searchers[(color == BitBoard.BLACK) ? 0 : 1];
+                        int depths = Math.min(maxDepth, board.countEmpty());
+                        for (int depth = 1; depth <= depths; depth++) {
+                            searcher.setMaxDepth(depth);
+                            searcher.getCPUOperation(board.toBoard());
+                            sample[depth] = searcher.getLastScore();
+                        }
+                        if (depths < maxDepth) {
+                            continue; // 最大深さまで探索できない終盤の局面は使わない
+                        }
+                        synchronized (samples) {
+                            samples.add(sample);
+                            if (samples.size() % POSITIONS_PER_REPORT == 0) {
+                                console.printf("%d局面 (%.0f秒)%n", samples.size(), (System.nanoTime() - start) / 1e9);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+            System.setOut(console);
+        }
+        return samples;
+    }
+
+    // 重みファイルが指定されていれば読み込む
+    private static PatternEvaluator loadPatternEvaluator() throws IOException {
+        String weights = System.getProperty("othello.weights");
+        return (weights != null) ? PatternEvaluator.load(weights) : null;
+    }
+
+    // 枝刈りなし・固定深さのCPU(完全読みは行わない)
+    private static CPU createCPU(String turn, int depth, PatternEvaluator evaluator) {
+        CPU cpu = new CPU(turn, "強い", TT_SIZE_MB);
+        cpu.setTimeLimit(NO_TIME_LIMIT);
+        cpu.setMaxDepth(depth);
+        cpu.setThreshold(0, 0);
+        cpu.setProbCut(null);
+        cpu.setPatternEvaluator(evaluator);
+        return cpu;
+    }
+
+    /*
+    初期局面からplies手進めた局面をboardに作り、その局面の手番を返すメソッド
+    最初のRANDOM_PLIES手はランダムに、以降はplayersで打つ。手番側の合法手が1つ以下の局面になった場合は0を返す。
+    */
+    private static int createPosition(BitBoard board, CPU[] players, Random random, int plies) {
+        int color = BitBoard.BLACK;
+        for (int ply = 0; ply < plies; ply++) {
+            long moves = board.getValidMoves(color);
+            if (moves == 0) {
+                color = BitBoard.opponentColor(color);
+                moves = board.getValidMoves(color);
+                if (moves == 0) {
+                    return 0; // 終局
+                }
+            }
+            int move;
+            if (ply < RANDOM_PLIES) {
+                for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                    moves &= moves - 1;
+                }
+                move = Long.numberOfTrailingZeros(moves);
+            } else {
+                int[] operation = players[(color == BitBoard.BLACK) ? 0 : 1].getCPUOperation(board.toBoard());
+                move = operation[0] * BitBoard.SIZE + operation[1];
+            }
+            board.makeMove(move, color);
+            color = BitBoard.opponentColor(color);
+        }
+        return (Long.bitCount(board.getValidMoves(color)) >= 2) ? color : 0;
+    }
+
+    /*
+    段階ごと・深さごとに、浅い探索のスコアxから深い探索のスコアyを予測する直線 y = 傾き × x + 切片 を最小二乗法で求めるメソッド
+    戻り値[段階][深さ]は{浅い深さ, 傾き, 切片, 残差の標準偏差}(局面が足りない組はnull)
+    */
+    static double[][][] fit(List<int[]> samples, int maxDepth) {
+        double[][][] parameters = new double[ProbCut.STAGES][ProbCut.MAX_DEPTH + 1][];
+        for (int stage = 0; stage < ProbCut.STAGES; stage++) {
+            for (int depth = ProbCut.MIN_DEPTH; depth <= maxDepth; depth++) {
+                int shallow = shallowDepthFor(depth);
+                int n = 0;
+                double sumX = 0;
+                double sumY = 0;
+                for (int[] sample : samples) {
+                    if (sample[0] == stage) {
+                        n++;
+                        sumX += sample[shallow];
+                        sumY += sample[depth];
+                    }
+                }
+                if (n < MIN_SAMPLES) {
+                    continue;
+                }
+                double meanX = sumX / n;
+                double meanY = sumY / n;
+                double covariance = 0;
+                double variance = 0;
+                for (int[] sample : samples) {
+                    if (sample[0] == stage) {
+                        covariance += (sample[shallow] - meanX) * (sample[depth] - meanY);
+                        variance += (sample[shallow] - meanX) * (sample[shallow] - meanX);
+                    }
+                }
+                if (variance == 0 || covariance <= 0) {
+                    continue;
+                }
+                double slope = covariance / variance;
+                double intercept = meanY - slope * meanX;
+                double squaredError = 0;
+                for (int[] sample : samples) {
+                    if (sample[0] == stage) {
+                        double residual = sample[depth] - (slope * sample[shallow] + intercept);
+                        squaredError += residual * residual;
+                    }
+                }
+                parameters[stage][depth] = new double[] { shallow, slope, intercept, Math.sqrt(squaredError / n) };
+            }
+        }
+        return parameters;
+    }
+}
@@ -0,0 +1,335 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// 固定の局面集合に対してCPUの探索を行い、探索ノード数と結果を比較するクラス
+// (探索の高速化の前後で、同じ結果をより少ないノード数で得られているかを確認する)
+public class SearchBenchDriver {
+    private static final int SIZE = 8;
+    private static final long SEED = 20250701L; // 局面生成用の乱数シード(固定)
+    private static final int[] PLIES = { 8, 16, 24, 32, 40, 46, 50 }; // 初期配置からランダムに打つ手数
+    private static final int DEPTH = 6; // 通常探索の深さ
+    private static final long NO_TIME_LIMIT = 3_600_000L; // 時間では打ち切らない
+    private static final int THRESHOLD = 12; // 完全読みに移行する空きマス数(ベンチマークの結果を変えないよう固定)
+    private static final long CANCEL_DELAY_MS = 300; // 中断テストで探索を開始してから中断するまでの時間
+    private static final int THREADS = 4; // 並列探索の比較で使うスレッド数
+    private static final long PONDER_CANCEL_MS = 50; // 先読みを途中で止める場合の先読みの時間
+
+    public static void main(String[] args) {
+        System.out.println("CPU探索のベンチマーク(SearchBenchDriver.java)");
+        System.out.println("通常探索は深さ" + DEPTH + "、空きマス" + THRESHOLD + "以下は完全読み\n");
+
+        List<Integer[][]> positions = new ArrayList<>();
+        List<String> turns = new ArrayList<>();
+        createPositions(positions, turns);
+
+        long totalBefore = 0;
+        long totalAfter = 0;
+        long[] cutoffsBefore = new long[2]; // {beta枝狩りの回数, 最初の手で起きた回数}
+        long[] cutoffsAfter = new long[2];
+        int mismatch = 0;
+        int statsMismatch = 0;
+        System.out.println(" No 空き | 並べ替えなし(手, スコア, ノード数) | 並べ替えあり(手, スコア, ノード数) | 比率");
+        for (int i = 0; i < positions.size(); i++) {
+            Integer[][] board = positions.get(i);
+            String turn = turns.get(i);
+
+            CPU before = createCPU(turn, false);
+            int[] moveBefore = before.getCPUOperation(board);
+            CPU after = createCPU(turn, true);
+            int[] moveAfter = after.getCPUOperation(board);
+
+            boolean same = moveBefore[0] == moveAfter[0] && moveBefore[1] == moveAfter[1]
+                    && before.getLastScore() == after.getLastScore();
+            if (!same) {
+                mismatch++;
+            }
+            totalBefore += before.getNodes();
+            totalAfter += after.getNodes();
+            addCutoffs(cutoffsBefore, before.getLastStats());
+            addCutoffs(cutoffsAfter, after.getLastStats());
+            if (after.getLastStats().getNodes() != after.getNodes()
+                    || after.getLastStats().getScore() != after.getLastScore()) {
+                statsMismatch++;
+            }
+            System.out.printf("%3d %4d | (%d,%d) %7d %10d | (%d,%d) %7d %10d | %.2f%s%n",
+                    i + 1, BitBoard.fromBoard(board).countEmpty(),
+                    moveBefore[0], moveBefore[1], before.getLastScore(), before.getNodes(),
+                    moveAfter[0], moveAfter[1], after.getLastScore(), after.getNodes(),
+                    (double) after.getNodes() / before.getNodes(), same ? "" : " (結果不一致)");
+        }
+        System.out.printf("%n合計ノード数: %d -> %d (%.2f)%n", totalBefore, totalAfter, (double) totalAfter / totalBefore);
+        System.out.println("結果の不一致: " + mismatch + (mismatch == 0 ? " (成功)" : " (失敗)"));
+        System.out.printf("最初の手でのbeta枝狩りの割合: %.3f -> %.3f%n",
+                (double) cutoffsBefore[1] / cutoffsBefore[0], (double) cutoffsAfter[1] / cutoffsAfter[0]);
+        System.out.println("統計情報の不一致: " + statsMismatch + (statsMismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // PVS・aspiration windowの有無で同じ手・スコアになり、ノード数が減るか
+        System.out.println("\nPVS・aspiration windowの比較(並べ替えあり)");
+        String[] variants = { "なし", "PVS", "PVS+aspiration" };
+        long[] variantNodes = new long[variants.length];
+        int variantMismatch = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            Integer[][] board = positions.get(i);
+            String turn = turns.get(i);
+            int[] reference = null;
+            int referenceScore = 0;
+            for (int v = 0; v < variants.length; v++) {
+                CPU cpu = createCPU(turn, true);
+                cpu.setPrincipalVariationSearch(v >= 1);
+                if (v < 2) {
+                    cpu.setAspirationWindow(0);
+                }
+                int[] move = cpu.getCPUOperation(board);
+                variantNodes[v] += cpu.getNodes();
+                if (v == 0) {
+                    reference = move;
+                    referenceScore = cpu.getLastScore();
+                } else if (!sameMove(reference, move) || cpu.getLastScore() != referenceScore) {
+                    variantMismatch++;
+                    System.out.printf("%3d: %s (%d,%d) %d / (%d,%d) %d (結果不一致)%n", i + 1, variants[v],
+                            reference[0], reference[1], referenceScore, move[0], move[1], cpu.getLastScore());
+                }
+            }
+        }
+        for (int v = 0; v < variants.length; v++) {
+            System.out.printf("%s: %d ノード (%.2f)%n", variants[v], variantNodes[v],
+                    (double) variantNodes[v] / variantNodes[0]);
+        }
+        System.out.println("結果の不一致: " + variantMismatch + (variantMismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // 並列探索が1スレッドの探索と同じ手・スコアを返すか
+        System.out.println("\n並列探索(" + THREADS + "スレッド)と1スレッドの比較");
+        long serialTime = 0;
+        long parallelTime = 0;
+        int parallelMismatch = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            Integer[][] board = positions.get(i);
+            String turn = turns.get(i);
+
+            CPU serial = createCPU(turn, true);
+            long start = System.nanoTime();
+            int[] moveSerial = serial.getCPUOperation(board);
+            serialTime += System.nanoTime() - start;
+
+            CPU parallel = createCPU(turn, true);
+            parallel.setThreads(THREADS);
+            start = System.nanoTime();
+            int[] moveParallel = parallel.getCPUOperation(board);
+            parallelTime += System.nanoTime() - start;
+            parallel.shutdown();
+
+            if (moveSerial[0] != moveParallel[0] || moveSerial[1] != moveParallel[1]
+                    || serial.getLastScore() != parallel.getLastScore()) {
+                parallelMismatch++;
+                System.out.printf("%3d: (%d,%d) %d / (%d,%d) %d (結果不一致)%n", i + 1,
+                        moveSerial[0], moveSerial[1], serial.getLastScore(),
+                        moveParallel[0], moveParallel[1], parallel.getLastScore());
+            }
+        }
+        System.out.printf("探索時間: %dms -> %dms (利用可能なコア数: %d)%n", serialTime / 1_000_000L,
+                parallelTime / 1_000_000L, Runtime.getRuntime().availableProcessors());
+        System.out.println("結果の不一致: " + parallelMismatch + (parallelMismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // 全ての合法手の評価(analyze)が、手ごとに探索し直した結果と一致するか
+        System.out.println("\n全ての合法手の評価(analyze)と手ごとの探索の比較");
+        long analysisNodes = 0;
+        long separateNodes = 0;
+        int analysisMismatch = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            Integer[][] board = positions.get(i);
+            String turn = turns.get(i);
+            CPU analyzer = createCPU(turn, true);
+            List<MoveAnalysis> analyses = analyzer.analyze(board, turn);
+            analysisNodes += analyzer.getNodes();
+
+            // 最善の評価がgetCPUOperationの結果と一致するか
+            CPU player = createCPU(turn, true);
+            int[] move = player.getCPUOperation(board);
+            MoveAnalysis top = analyses.get(0);
+            boolean searched = !SearchStats.TYPE_NONE.equals(player.getLastStats().getSearchType());
+            if (top.getX() != move[0] || top.getY() != move[1] || (searched && top.getScore() != player.getLastScore())) {
+                analysisMismatch++;
+            }
+            // 各手のスコアが、その手を打った後の局面を相手側で探索した結果と一致するか
+            for (MoveAnalysis analysis : analyses) {
+                Integer[][] next = BitBoard.fromBoard(board).toBoard();
+                Othello.makeMove(next, analysis.getX(), analysis.getY(), turn);
+                String opponent = Othello.opponentTurn(turn);
+                if (!Othello.hasValidMove(next, opponent)) {
+                    continue; // 相手がパスする局面は比較しない
+                }
+                CPU reply = createCPU(opponent, true);
+                if (!analysis.isExact()) {
+                    reply.setMaxDepth(analysis.getDepth() - 1);
+                }
+                reply.getCPUOperation(next);
+                separateNodes += reply.getNodes();
+                // 相手の合法手が1つだけの場合は探索されずスコアが残らないため比較しない
+                boolean replySearched = !SearchStats.TYPE_NONE.equals(reply.getLastStats().getSearchType());
+                if (replySearched && analysis.getDepth() > 1 && -reply.getLastScore() != analysis.getScore()) {
+                    analysisMismatch++;
+                }
+            }
+            if (i == 0) {
+                System.out.println("   局面1の評価:");
+                for (MoveAnalysis analysis : analyses) {
+                    System.out.println("     " + analysis);
+                }
+            }
+        }
+        System.out.printf("   ノード数: 手ごとの探索 %d, analyze %d (%.2f)%n", separateNodes, analysisNodes,
+                (double) analysisNodes / separateNodes);
+        System.out.println("   結果の不一致: " + analysisMismatch + (analysisMismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // 先読み(ponder)した結果が先読みなしの探索と一致し、応答が速くなるか
+        System.out.println("\n先読み(ponder)と先読みなしの比較(相手は最後の合法手を打つ)");
+        long freshTime = 0;
+        long ponderedTime = 0;
+        long partialTime = 0;
+        int ponderMismatch = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            Integer[][] board = positions.get(i);
+            String turn = turns.get(i);
+            String opponent = Othello.opponentTurn(turn);
+            CPU pondered = createCPU(turn, true);
+            CPU partial = createCPU(turn, true);
+            int[] move = pondered.getCPUOperation(board);
+            partial.getCPUOperation(board);
+            Integer[][] afterMove = BitBoard.fromBoard(board).toBoard();
+            Othello.makeMove(afterMove, move[0], move[1], turn);
+            long replies = BitBoard.fromBoard(afterMove).getValidMoves(Othello.getStoneColor(opponent));
+            if (replies == 0) {
+                continue; // 相手がパスする局面は比較しない
+            }
+            int reply = 63 - Long.numberOfLeadingZeros(replies);
+            Integer[][] next = BitBoard.fromBoard(afterMove).toBoard();
+            Othello.makeMove(next, reply / SIZE, reply % SIZE, opponent);
+
+            CPU fresh = createCPU(turn, true);
+            long start = System.nanoTime();
+            int[] freshMove = fresh.getCPUOperation(next);
+            freshTime += System.nanoTime() - start;
+
+            // 全ての応手を先読みし終えた場合(探索せずに結果を返す)
+            pondered.ponder(afterMove);
+            start = System.nanoTime();
+            int[] ponderedMove = pondered.getCPUOperation(next);
+            ponderedTime += System.nanoTime() - start;
+
+            // 先読みを途中で止めた場合(置換表の内容だけを再利用する)
+            Thread thread = new Thread(() -> partial.ponder(afterMove));
+            thread.start();
+            try {
+                Thread.sleep(PONDER_CANCEL_MS);
+                partial.cancel();
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            start = System.nanoTime();
+            int[] partialMove = partial.getCPUOperation(next);
+            partialTime += System.nanoTime() - start;
+
+            if (!sameMove(freshMove, ponderedMove) || !sameMove(freshMove, partialMove)
+                    || fresh.getLastScore() != pondered.getLastScore()
+                    || fresh.getLastScore() != partial.getLastScore()) {
+                ponderMismatch++;
+                System.out.printf("%3d: (%d,%d) %d / (%d,%d) %d / (%d,%d) %d (結果不一致)%n", i + 1,
+                        freshMove[0], freshMove[1], fresh.getLastScore(),
+                        ponderedMove[0], ponderedMove[1], pondered.getLastScore(),
+                        partialMove[0], partialMove[1], partial.getLastScore());
+            }
+        }
+        System.out.printf("   応答時間: 先読みなし %dms, 先読み完了 %dms, 先読み中断(%dms) %dms%n",
+                freshTime / 1_000_000L, ponderedTime / 1_000_000L, PONDER_CANCEL_MS, partialTime / 1_000_000L);
+        System.out.println("   結果の不一致: " + ponderMismatch + (ponderMismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // 探索の中断(cancel, 割り込み)に速やかに応じ、合法手を返すか
+        System.out.println("\n探索の中断テスト(制限時間" + NO_TIME_LIMIT / 1000 + "秒の探索を" + CANCEL_DELAY_MS + "ms後に中断)");
+        Integer[][] board = positions.get(0);
+        String turn = turns.get(0);
+        testCancel("cancel()", board, turn, false);
+        testCancel("Thread.interrupt()", board, turn, true);
+    }
+
+    // 別スレッドで探索を開始し、一定時間後に中断して戻るまでの時間と返された手を確認する
+    private static void testCancel(String name, Integer[][] board, String turn, boolean interrupt) {
+        CPU cpu = new CPU(turn, "強い");
+        cpu.setTimeLimit(NO_TIME_LIMIT);
+        int[][] result = new int[1][];
+        Thread thread = new Thread(() -> result[0] = cpu.getCPUOperation(board));
+        thread.start();
+        try {
+            Thread.sleep(CANCEL_DELAY_MS);
+            long start = System.nanoTime();
+            if (interrupt) {
+                thread.interrupt();
+            } else {
+                cpu.cancel();
+            }
+            thread.join(NO_TIME_LIMIT);
+            long latency = (System.nanoTime() - start) / 1_000_000L;
+            boolean legal = result[0] != null && Othello.isValidMove(board, result[0][0], result[0][1], turn);
+            System.out.println("   " + name + ": " + latency + "msで終了, 返された手: "
+                    + (legal ? "(" + result[0][0] + "," + result[0][1] + ") (成功)" : "不正 (失敗)"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean sameMove(int[] a, int[] b) {
+        return a[0] == b[0] && a[1] == b[1];
+    }
+
+    private static void addCutoffs(long[] total, SearchStats stats) {
+        total[0] += stats.getBetaCutoffs();
+        total[1] += stats.getFirstMoveCutoffs();
+    }
+
+    // 比較用のCPUを生成する(時間制限なし・固定深さ)
+    private static CPU createCPU(String turn, boolean moveOrdering) {
+        CPU cpu = new CPU(turn, "強い");
+        cpu.setTimeLimit(NO_TIME_LIMIT);
+        cpu.setMaxDepth(DEPTH);
+        cpu.setThreshold(THRESHOLD, THRESHOLD);
+        cpu.setMoveOrdering(moveOrdering);
+        cpu.setProbCut(null); // Multi-ProbCutは手の順序や置換表の内容で結果が変わるので、結果の一致を比べるここでは使わない
+        return cpu;
+    }
+
+    // 初期配置から固定シードでランダムに打ち進めた局面を生成する
+    private static void createPositions(List<Integer[][]> positions, List<String> turns) {
+        Random random = new Random(SEED);
+        for (int plies : PLIES) {
+            for (int n = 0; n < 3; n++) {
+                BitBoard board = new BitBoard();
+                int color = BitBoard.BLACK;
+                int played = 0;
+                while (played < plies) {
+                    long moves = board.getValidMoves(color);
+                    if (moves == 0) {
+                        color = BitBoard.opponentColor(color);
+                        if (board.getValidMoves(color) == 0) {
+                            break; // 終局
+                        }
+                        continue;
+                    }
+                    int index = random.nextInt(Long.bitCount(moves));
+                    for (int k = 0; k < index; k++) {
+                        moves &= moves - 1;
+                    }
+                    board.makeMove(Long.numberOfTrailingZeros(moves), color);
+                    color = BitBoard.opponentColor(color);
+                    played++;
+                }
+                if (board.getValidMoves(color) == 0) {
+                    continue; // 手番側に合法手がない局面は使わない
+                }
+                positions.add(board.toBoard());
+                turns.add(color == BitBoard.BLACK ? "Black" : "White");
+            }
+        }
+    }
+}
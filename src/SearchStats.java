@@ -0,0 +1,129 @@
+/*
+CPUの1手分の探索(getCPUOperation)の統計情報を保持するクラス
+探索が終わった時点の値を記録したもので、生成後に値は変わらない。
+toString()は「key=value」を空白で区切った1行の形式で、ログから集計しやすいようにしている。
+*/
+public class SearchStats {
+    // 探索の種類
+    public static final String TYPE_NONE = "none"; // 探索しなかった(パス、合法手が1つ)
+    public static final String TYPE_MIDGAME = "midgame"; // 反復深化による通常探索
+    public static final String TYPE_EXACT = "exact"; // 完全読み
+    public static final String TYPE_WLD = "wld"; // 必勝読み
+    public static final String TYPE_BOOK = "book"; // 定石
+    public static final String TYPE_MCTS = "mcts"; // モンテカルロ木探索(ノード数はプレイアウト数、深さは木の最大の深さ)
+
+    private final String searchType; // 選んだ手を決めた探索の種類
+    private final int move; // 選んだ手のビット番号(パスは-1)
+    private final int score; // 選んだ手のスコア
+    private final int completedDepth; // 探索が完了した深さ(完全読み・必勝読みでは空きマス数)
+    private final long nodes; // 探索したノード数(全スレッドの合計)
+    private final long endgameNodes; // そのうち完全読み・必勝読みのノード数
+    private final long betaCutoffs; // beta枝狩りの回数
+    private final long firstMoveCutoffs; // そのうち最初に探索した手で起きた回数
+    private final long ttProbes; // 置換表の参照回数
+    private final long ttHits; // 置換表で局面が見つかった回数
+    private final long elapsedNanos; // 探索時間(ナノ秒)
+    private final int threads; // 探索に使ったスレッド数
+
+    SearchStats(String searchType, int move, int score, int completedDepth, long nodes, long endgameNodes,
+            long betaCutoffs, long firstMoveCutoffs, long ttProbes, long ttHits, long elapsedNanos, int threads) {
+        this.searchType = searchType;
+        this.move = move;
+        this.score = score;
+        this.completedDepth = completedDepth;
+        this.nodes = nodes;
+        this.endgameNodes = endgameNodes;
+        this.betaCutoffs = betaCutoffs;
+        this.firstMoveCutoffs = firstMoveCutoffs;
+        this.ttProbes = ttProbes;
+        this.ttHits = ttHits;
+        this.elapsedNanos = elapsedNanos;
+        this.threads = threads;
+    }
+
+    // 探索を行わなかった場合(パス)の統計情報
+    static SearchStats empty(int threads) {
+        return new SearchStats(TYPE_NONE, -1, 0, 0, 0, 0, 0, 0, 0, 0, 0, threads);
+    }
+
+    public String getSearchType() {
+        return searchType;
+    }
+
+    public int getMove() {
+        return move;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getEndgameNodes() {
+        return endgameNodes;
+    }
+
+    public long getMidgameNodes() {
+        return nodes - endgameNodes;
+    }
+
+    // 1秒あたりの探索ノード数
+    public long getNodesPerSecond() {
+        return (elapsedNanos == 0) ? 0 : (long) (nodes * 1e9 / elapsedNanos);
+    }
+
+    public long getBetaCutoffs() {
+        return betaCutoffs;
+    }
+
+    public long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    // beta枝狩りのうち最初の手で起きた割合(手の並べ替えの良さの目安)
+    public double getFirstMoveCutoffRate() {
+        return (betaCutoffs == 0) ? 0.0 : (double) firstMoveCutoffs / betaCutoffs;
+    }
+
+    public long getTtProbes() {
+        return ttProbes;
+    }
+
+    public long getTtHits() {
+        return ttHits;
+    }
+
+    public double getTtHitRate() {
+        return (ttProbes == 0) ? 0.0 : (double) ttHits / ttProbes;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1_000_000L;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public String toString() {
+        String moveText = (move < 0) ? "pass" : "[" + move / 8 + "," + move % 8 + "]";
+        return String.format(java.util.Locale.ROOT,
+                "type=%s move=%s score=%d depth=%d nodes=%d nps=%d midgame_nodes=%d endgame_nodes=%d"
+                + " cutoffs=%d first_cutoff_rate=%.3f tt_probes=%d tt_hit_rate=%.3f time_ms=%d threads=%d",
+                searchType, moveText, score, completedDepth, nodes, getNodesPerSecond(), getMidgameNodes(),
+                endgameNodes, betaCutoffs, getFirstMoveCutoffRate(), ttProbes, getTtHitRate(),
+                getElapsedMillis(), threads);
+    }
+}
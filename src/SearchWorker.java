@@ -0,0 +1,376 @@
+/*
+CPUの探索処理(NegaAlpha探索・完全読み)を行うクラス
+完全読みはスレッドごとに持つEndgameSolverで行う。探索中の盤面、手数、手の並べ替え用の表、ノード数などのスレッドごとに必要な状態を持つ。
+並列探索ではスレッドごとに1つずつ使い、置換表と打ち切りの要求はCPUを通して全てのワーカーで共有する。
+*/
+class SearchWorker {
+    // 定数
+    private static final int MAX_PLY = 128; // 探索するルートからの最大手数(パスを含む)
+    private static final int MAX_MOVES = 32; // 1局面の合法手の最大数(オセロでは33以上にならない)
+    private static final int TT_MOVE_ORDER = 1 << 30; // 置換表の最善手の並べ替えスコア
+    private static final int KILLER1_ORDER = 1 << 29; // 1番目のキラー手の並べ替えスコア
+    private static final int KILLER2_ORDER = 1 << 28; // 2番目のキラー手の並べ替えスコア
+    private static final long TIME_CHECK_INTERVAL = 1023; // 時間を確認する間隔(ノード数 - 1, 2のべき乗 - 1)
+    private static final int PVS_MIN_DEPTH = 3; // 幅0の探索窓で調べる残り深さの下限(これより浅いと探索し直しの分だけノードが増える)
+
+    private final CPU owner; // 打ち切りの要求・評価関数を共有するCPU
+    private final TranspositionTable transpositionTable; // 全てのワーカーで共有する置換表
+    private final EndgameSolver endgameSolver; // 完全読み用
+
+    // 探索中の状態
+    private long deadline; // 探索を打ち切る時刻(ナノ秒)
+    private boolean canAbort; // 現在の探索を時間切れで打ち切ってよいか
+    private boolean aborted; // 探索を打ち切ったか
+    private long nodes; // 探索したノード数
+    private long endgameNodes; // そのうち完全読み・必勝読みのノード数
+    private long betaCutoffs; // beta枝狩りの回数
+    private long firstMoveCutoffs; // そのうち最初に探索した手で起きた回数
+    private int ply; // ルートからの手数(パスを含む)
+
+    // 手の並べ替え(ムーブオーダリング)用
+    private boolean moveOrdering = true; // 手の並べ替えを行うか(falseなら左上から順に探索)
+    private boolean principalVariationSearch = true; // 2番目以降の手を幅0の探索窓で調べるか(PVS)
+    private ProbCut probCut; // Multi-ProbCutのパラメータ(nullなら枝刈りしない)
+    private final int[][] moveBuffer = new int[MAX_PLY][MAX_MOVES]; // 手数ごとの並べ替え済みの合法手
+    private final int[][] orderScoreBuffer = new int[MAX_PLY][MAX_MOVES]; // 並べ替え用のスコア
+    private final int[][] killerMoves = new int[MAX_PLY][2]; // 手数ごとのキラー手(直近でbeta枝狩りを起こした手)
+    private final int[][] history = new int[2][64]; // 色ごと・マスごとのヒストリー値
+
+    SearchWorker(CPU owner, TranspositionTable transpositionTable) {
+        this.owner = owner;
+        this.transpositionTable = transpositionTable;
+        this.endgameSolver = new EndgameSolver(this, transpositionTable);
+    }
+
+    // 1手分の探索(getCPUOperation)の開始時に呼ぶメソッド
+    void prepare(long deadline, boolean moveOrdering, boolean principalVariationSearch, ProbCut probCut) {
+        this.deadline = deadline;
+        this.moveOrdering = moveOrdering;
+        this.principalVariationSearch = principalVariationSearch;
+        this.probCut = probCut;
+        this.endgameSolver.setMoveOrdering(moveOrdering);
+        this.nodes = 0;
+        this.endgameNodes = 0;
+        this.betaCutoffs = 0;
+        this.firstMoveCutoffs = 0;
+        clearOrderingTables();
+    }
+
+    // 反復深化の各深さの探索の開始時に呼ぶメソッド
+    void startIteration(boolean canAbort) {
+        this.canAbort = canAbort;
+        this.aborted = false;
+    }
+
+    /*
+    ルート局面で手moveを打った後の局面を探索し、ルートの手番から見たスコアを返すメソッド
+    board: ルート局面(探索後は元に戻っている)
+    perfect: trueなら完全読み、falseなら深さdepthの通常探索
+    alpha, beta: ルートの手番から見た探索窓
+    完全読みのスコアは石差を評価値(EndgameSolver.toScore)に直し、探索窓の範囲に収めて返す。
+    */
+    int searchRootMove(BitBoard board, int move, int stoneColor, int color, int depth, boolean perfect,
+            int alpha, int beta) {
+        if (alpha >= beta) {
+            return alpha; // 探索窓が空(必勝読みで既に勝ちの手が見つかっている)
+        }
+        long flips = board.makeMove(move, stoneColor);
+        ply = 1;
+        long startNodes = nodes;
+        int score;
+        if (perfect) { // 完全読み
+            int alphaDiff = EndgameSolver.lowerDiff(alpha);
+            int betaDiff = Math.max(EndgameSolver.upperDiff(beta), alphaDiff + 1);
+            int opponentColor = BitBoard.opponentColor(stoneColor);
+            int discDiff = -endgameSolver.solve(board, opponentColor, -betaDiff, -alphaDiff);
+            score = Math.max(alpha, Math.min(beta, EndgameSolver.toScore(discDiff)));
+            endgameNodes += nodes - startNodes;
+        } else { // 通常探索(NegaAlpha法)
+            score = -negaAlpha(board, depth - 1, -color, -beta, -alpha);
+            // depthを1減らし、相手のcolorで呼び出す
+        }
+        ply = 0;
+        board.undoMove(move, flips, stoneColor);
+        return score;
+    }
+
+    boolean isAborted() {
+        return aborted;
+    }
+
+    long getNodes() {
+        return nodes;
+    }
+
+    long getEndgameNodes() {
+        return endgameNodes;
+    }
+
+    long getBetaCutoffs() {
+        return betaCutoffs;
+    }
+
+    long getFirstMoveCutoffs() {
+        return firstMoveCutoffs;
+    }
+
+    // beta枝狩りの回数を数えるメソッド(firstMove: 最初に探索した手で起きたか)
+    void countCutoff(boolean firstMove) {
+        betaCutoffs++;
+        if (firstMove) {
+            firstMoveCutoffs++;
+        }
+    }
+
+    // 手の並べ替え用の情報を新しい探索に向けて初期化するメソッド
+    // キラー手は消去し、ヒストリー値は過去の探索の影響を残しつつ半分にする
+    void clearOrderingTables() {
+        for (int[] killers : killerMoves) {
+            killers[0] = TranspositionTable.NO_MOVE;
+            killers[1] = TranspositionTable.NO_MOVE;
+        }
+        for (int[] colorHistory : history) {
+            for (int sq = 0; sq < colorHistory.length; sq++) {
+                colorHistory[sq] /= 2;
+            }
+        }
+    }
+
+    /*
+    合法手を探索する順に並べてmoveBuffer[ply]に格納し、手の数を返すメソッド
+        1. 置換表に記録された最善手
+        2. キラー手(同じ手数で直近にbeta枝狩りを起こした手)
+        3. ヒストリー値(beta枝狩りを起こした回数を深さで重み付けしたもの)の大きい順
+    並べ替えを行わない設定の場合は従来通り左上から順に並べる。
+    */
+    private int orderMoves(long possibleMoves, int currentColor, int ttMove) {
+        int[] moveList = moveBuffer[ply];
+        int[] orderScores = orderScoreBuffer[ply];
+        int count = 0;
+
+        for (long moves = possibleMoves; moves != 0; moves &= moves - 1) {
+            int move = Long.numberOfTrailingZeros(moves);
+            int orderScore;
+            if (!moveOrdering) {
+                orderScore = 0;
+            } else if (move == ttMove) {
+                orderScore = TT_MOVE_ORDER;
+            } else if (move == killerMoves[ply][0]) {
+                orderScore = KILLER1_ORDER;
+            } else if (move == killerMoves[ply][1]) {
+                orderScore = KILLER2_ORDER;
+            } else {
+                orderScore = Math.min(history[currentColor - 1][move], KILLER2_ORDER - 1);
+            }
+
+            // 挿入ソート(スコアの降順、同じスコアなら元の順序を保つ)
+            int i = count++;
+            while (i > 0 && orderScores[i - 1] < orderScore) {
+                orderScores[i] = orderScores[i - 1];
+                moveList[i] = moveList[i - 1];
+                i--;
+            }
+            orderScores[i] = orderScore;
+            moveList[i] = move;
+        }
+        return count;
+    }
+
+    // beta枝狩りを起こした手をキラー手・ヒストリー値に反映するメソッド
+    private void recordCutoff(int move, int depth, int currentColor) {
+        if (killerMoves[ply][0] != move) {
+            killerMoves[ply][1] = killerMoves[ply][0];
+            killerMoves[ply][0] = move;
+        }
+        history[currentColor - 1][move] += depth * depth;
+    }
+
+    // 探索ノード数を数え、一定間隔で制限時間とノード数の上限を確認するメソッド
+    // ノード数は一定間隔ごとにCPUの全ワーカー共通の合計に足し、合計が上限(ノード予算)を超えたかを調べる
+    // どちらかを超えていればabortedをtrueにし、探索中の各ノードはすぐに戻る
+    // 他のワーカーが打ち切った場合や中断が要求された場合、スレッドが割り込まれた場合も同じ間隔で検知する
+    boolean isTimeUp() {
+        nodes++;
+        if ((nodes & TIME_CHECK_INTERVAL) == 0 && !aborted) {
+            boolean overBudget = owner.addSharedNodes(TIME_CHECK_INTERVAL + 1);
+            if (owner.isStopRequested() || (canAbort && (overBudget || System.nanoTime() > deadline))) {
+                aborted = true;
+                owner.requestStop(); // 他のワーカーにも打ち切りを知らせる
+            }
+        }
+        return aborted;
+    }
+
+    /*
+    NegaAlpha法（Alpha-Beta探索のNegaMaxバージョン）に基づいて盤面を探索し、
+    現在の手番プレイヤーにとっての最善の評価値を返すメソッド（通常探索用）。
+    
+    board: 現在の盤面。子ノードの探索中はmakeMove/undoMoveでその場で書き換えられ、
+           メソッドから戻るときには呼び出し時の状態に戻っている。
+    depth: 現在の探索の残り深さ。0になると探索を打ち切り、静的評価を行う。
+    color: 現在の手番プレイヤーを示す符号(1: 黒, -1: 白)
+    alpha: 現在の探索窓の下限値。このプレイヤーが保証できる最低スコア。
+    beta: 現在の探索窓の上限値。相手プレイヤーが許容する最高スコア。
+          相手が最善手を指すと仮定しているため、これ以上のスコアは得られない。
+    return: この局面から探索した結果、現在のプレイヤーが得られる最善の評価値。
+
+    PVS(Principal Variation Search): 並べ替えで最善と予想した最初の手だけを探索窓(alpha, beta)で探索し、
+    2番目以降の手は幅0の探索窓(alpha, alpha + 1)でalphaを超えるかだけを調べる。
+    超えた場合のみ(alpha, beta)で探索し直す。並べ替えが当たっていれば大半の手が少ないノード数で否定される。
+    残り深さがPVS_MIN_DEPTH未満のノードでは子の探索が安く、探索し直しの分だけノードが増えるので全ての手を(alpha, beta)で探索する。
+
+    Multi-ProbCut: 幅0の探索窓のノードでは、ProbCutのパラメータで浅い探索の結果から深い探索の結果を予測し、
+    探索窓の外になる可能性が高ければ子ノードを探索せずに打ち切る(枝刈りした結果は置換表に記録しない)。
+     */
+    int negaAlpha(BitBoard board, int depth, int color, int alpha, int beta) {
+        try {
+            // 時間切れなら探索を打ち切る(戻り値は使われない)
+            if (isTimeUp()) {
+                return 0;
+            }
+
+            // 現在のノードでの手番を特定
+            int currentColor = (color == 1) ? BitBoard.BLACK : BitBoard.WHITE;
+
+            // 指定されたdepthまで探索したら、手番側から見た静的評価を返す
+            // (合法手は、着手可能数を使う評価関数で評価値が探索窓の中になりうる場合だけevaluateLeafの中で求める)
+            if (depth == 0) {
+                return owner.evaluateLeaf(board, color, alpha, beta);
+            }
+
+            // 合法手をビットマスクで求める(終局の判定・終局での評価・子ノードの生成で同じものを使う)
+            // 相手の合法手は、手番側に合法手がない場合の終局の判定にだけ必要
+            long possibleMoves = board.getValidMoves(currentColor);
+            if (possibleMoves == 0) {
+                long opponentMoves = board.getValidMoves(BitBoard.opponentColor(currentColor));
+                if (opponentMoves == 0) { // 現在の局面で対局終了している(両者とも合法手がない)
+                    return color * owner.evaluateBoard(board, 0, 0);
+                }
+            }
+
+            // 置換表を参照し、同じ局面を同じ深さで探索済みならその結果を使う
+            // (深さが一致する場合のみ使うことで、手の順序によらず固定深さの探索と同じ結果になる)
+            long key = board.getHash(currentColor);
+            long entry = transpositionTable.probe(key);
+            if (entry != 0 && TranspositionTable.getDepth(entry) == depth) {
+                int ttScore = TranspositionTable.getScore(entry);
+                int bound = TranspositionTable.getBound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && ttScore >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && ttScore <= alpha)) {
+                    return ttScore;
+                }
+            }
+            int alphaOrig = alpha; // 置換表に記録するスコアの種類の判定用
+            int bestMove = TranspositionTable.NO_MOVE;
+            int ttMove = (entry != 0) ? TranspositionTable.getMove(entry) : TranspositionTable.NO_MOVE;
+
+            // 合法手がない場合
+            if (possibleMoves == 0) {
+                // depthを維持して再帰探索
+                ply++;
+                int score = -negaAlpha(board, depth, -color, -beta, -alpha);
+                ply--;
+                return score;
+            }
+
+            // Multi-ProbCut: 浅い探索の結果から、深い探索が探索窓の外になると予測できれば打ち切る
+            if (probCut != null && beta - alpha == 1) {
+                int stage = ProbCut.stageOf(Long.bitCount(board.getBlack() | board.getWhite()));
+                int shallow = probCut.getShallowDepth(stage, depth);
+                if (shallow > 0) {
+                    int high = probCut.highBound(stage, depth, beta);
+                    if (high != Integer.MAX_VALUE && negaAlpha(board, shallow, color, high - 1, high) >= high
+                            && !aborted) {
+                        return beta;
+                    }
+                    int low = probCut.lowBound(stage, depth, alpha);
+                    if (low != Integer.MIN_VALUE && negaAlpha(board, shallow, color, low, low + 1) <= low
+                            && !aborted) {
+                        return alpha;
+                    }
+                    if (aborted) {
+                        return 0;
+                    }
+                }
+            }
+
+            // 合法手を有望な順に並べ替える
+            int moveCount = orderMoves(possibleMoves, currentColor, ttMove);
+            int[] moveList = moveBuffer[ply];
+
+            // 各合法手について再帰的にNegaAlpha探索を実行
+            for (int i = 0; i < moveCount; i++) {
+                int move = moveList[i];
+                // 現在選択している合法手で打つ(盤面はコピーせずその場で書き換える)
+                long flips = board.makeMove(move, currentColor);
+                // 再帰探索
+                  // 探索の深さは1減らす
+                  // 相手始点になるので探索窓は反転して渡す
+                  // 返ってくるスコアも相手始点なので逆符号にする
+                ply++;
+                int score;
+                if (i == 0 || !principalVariationSearch || depth < PVS_MIN_DEPTH) {
+                    score = -negaAlpha(board, depth - 1, -color, -beta, -alpha);
+                } else {
+                    score = -negaAlpha(board, depth - 1, -color, -alpha - 1, -alpha); // 幅0の探索窓
+                    if (score > alpha && score < beta && !aborted) {
+                        score = -negaAlpha(board, depth - 1, -color, -beta, -alpha); // alphaを超えたので探索し直す
+                    }
+                }
+                ply--;
+                // 裏返した石を戻して元の盤面に復元
+                board.undoMove(move, flips, currentColor);
+                if (aborted) {
+                    return 0; // 打ち切られた結果は置換表に残さない
+                }
+
+                // alpha(現在プレイヤーの保証できる最低スコア)を更新
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                }
+
+                // beta枝狩り
+                  // alphaがbeta(相手が許容するスコア)以上になった場合、これ以上の探索をしても
+                  // beta以下のスコアに抑えられるため、探索をやめる。
+                if (alpha >= beta) {
+                    countCutoff(i == 0);
+                    recordCutoff(move, depth, currentColor); // 次回以降の手の並べ替えに使う
+                    break; // ループを抜け、枝狩りを行う
+                }
+            }
+            // 結果を置換表に記録する
+            transpositionTable.store(key, depth, boundType(alpha, alphaOrig, beta), alpha, bestMove);
+            // このノードから得られる最善の評価値を返す
+            return alpha;
+        } catch (ArrayIndexOutOfBoundsException e) {
+            System.err.println("Error in negaAlpha: Array index out of bounds. " + e.getMessage());
+            e.printStackTrace();
+            return Integer.MIN_VALUE + 1; // エラー時は最小値を返す
+        } catch (NullPointerException e) {
+            System.err.println("Error in negaAlpha: Null pointer encountered. " + e.getMessage());
+            e.printStackTrace();
+            return Integer.MIN_VALUE + 1; // エラー時は最小値を返す
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error in negaAlpha: Illegal argument provided. " + e.getMessage());
+            e.printStackTrace();
+            return Integer.MIN_VALUE + 1; // エラー時は最小値を返す
+        } catch (Exception e) {
+            System.err.println("Unexpected error in negaAlpha: " + e.getMessage());
+            e.printStackTrace();
+            return Integer.MIN_VALUE + 1; // エラー時は最小値を返す
+        }
+    }
+
+    // 探索結果のスコアが正確な値か、上限・下限かを判定するメソッド(置換表への記録用)
+    static int boundType(int score, int alphaOrig, int beta) {
+        if (score <= alphaOrig) {
+            return TranspositionTable.BOUND_UPPER; // どの手もalphaを超えなかった
+        } else if (score >= beta) {
+            return TranspositionTable.BOUND_LOWER; // beta枝狩りが起きた
+        } else {
+            return TranspositionTable.BOUND_EXACT;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+確定石(この先どう打たれても裏返らない石)を求めるクラス(評価関数用)
+
+1. 辺の確定石
+   辺の8マスの配置(3^8 = 6561通り)ごとに、辺の上だけでどう打たれても色が変わらないマスを前もって求めておき、
+   4辺それぞれの配置から表を1回引く。辺のマスは他の方向からは挟まれないので、辺の上で変わらなければ確定石になる。
+   (辺の空きマスにはどちらの石も置けるものとして調べるので、実際より少なめに数えることはあっても多くはならない)
+2. 4方向の列が埋まっている石
+   横・縦・2つの斜めの4方向とも、そのマスを通る列に空きマスがなければ、その石はどの方向からも挟まれない。
+
+どちらもビット演算と表引きだけで求めるので、探索の末端の評価で毎回呼んでも速い。
+*/
+final class Stability {
+    private static final int EDGE_CONFIGS = 6561; // 辺の配置の数(3^8)
+    private static final byte[] EDGE_STABLE = new byte[EDGE_CONFIGS]; // 辺の配置(3進数)ごとの確定石のマス(8ビット)
+    private static final int[] TERNARY = new int[256]; // 8ビットの石の配置を3進数の桁(各マス1)に直す表
+    private static final long[] COLUMN_SPREAD = new long[256]; // 8ビットを左端の列(ビット0, 8, ..., 56)に並べる表
+
+    private static final long COLUMN0 = 0x0101010101010101L; // 左端の列
+    private static final long EDGES = 0xff818181818181ffL; // 4辺のマス
+
+    // 列が埋まっているかを調べる4方向(横, 縦, 斜め, 逆斜め)の1マス進むときのビット番号の差と(x, y)の差
+    private static final int[] SHIFTS = { 1, 8, 9, 7 };
+    private static final int[][] STEPS = { { 0, 1 }, { 1, 0 }, { 1, 1 }, { 1, -1 } };
+    // OFF_BOARD[方向][j]: その方向に2^jマス進む(FORWARD)・戻る(BACKWARD)と盤外になるマスの集合
+    private static final long[][] FORWARD_OFF_BOARD = new long[4][3];
+    private static final long[][] BACKWARD_OFF_BOARD = new long[4][3];
+
+    static {
+        for (int bits = 0; bits < 256; bits++) {
+            int value = 0;
+            long column = 0;
+            for (int i = 7; i >= 0; i--) {
+                value = value * 3 + ((bits >>> i) & 1);
+                if ((bits & (1 << i)) != 0) {
+                    column |= 1L << (i * 8);
+                }
+            }
+            TERNARY[bits] = value;
+            COLUMN_SPREAD[bits] = column;
+        }
+        byte[] memo = new byte[EDGE_CONFIGS];
+        boolean[] done = new boolean[EDGE_CONFIGS];
+        int[] cells = new int[8];
+        for (int index = 0; index < EDGE_CONFIGS; index++) {
+            for (int i = 0, v = index; i < 8; i++, v /= 3) {
+                cells[i] = v % 3;
+            }
+            EDGE_STABLE[index] = edgeStable(cells, memo, done);
+        }
+
+        for (int dir = 0; dir < 4; dir++) {
+            for (int j = 0; j < 3; j++) {
+                int n = 1 << j;
+                for (int sq = 0; sq < 64; sq++) {
+                    int x = sq / 8;
+                    int y = sq % 8;
+                    if (!onBoard(x + n * STEPS[dir][0], y + n * STEPS[dir][1])) {
+                        FORWARD_OFF_BOARD[dir][j] |= 1L << sq;
+                    }
+                    if (!onBoard(x - n * STEPS[dir][0], y - n * STEPS[dir][1])) {
+                        BACKWARD_OFF_BOARD[dir][j] |= 1L << sq;
+                    }
+                }
+            }
+        }
+    }
+
+    private Stability() {
+    }
+
+    // 黒石・白石の確定石のマスの集合を返すメソッド(色はblack, whiteとのANDで分かる)
+    static long stableDiscs(long black, long white) {
+        long filled = black | white;
+        if ((filled & EDGES) == 0) {
+            return 0; // 辺に石がなければ、辺の確定石も4方向とも埋まった列もない(序盤の評価を速くする)
+        }
+
+        // 1. 4辺の確定石(上辺・下辺は行、左辺・右辺は列を8ビットに集めて表を引く)
+        long stable = EDGE_STABLE[edgeIndex((int) (black & 0xff), (int) (white & 0xff))] & 0xffL;
+        stable |= (EDGE_STABLE[edgeIndex((int) (black >>> 56), (int) (white >>> 56))] & 0xffL) << 56;
+        stable |= COLUMN_SPREAD[EDGE_STABLE[edgeIndex(column(black, 0), column(white, 0))] & 0xff];
+        stable |= COLUMN_SPREAD[EDGE_STABLE[edgeIndex(column(black, 7), column(white, 7))] & 0xff] << 7;
+
+        // 2. 4方向とも列が埋まっている石(横の列が埋まった行がなければ、残りの3方向は調べない)
+        long lines = fullLines(filled, 0);
+        if (lines != 0) {
+            stable |= lines & fullLines(filled, 1) & fullLines(filled, 2) & fullLines(filled, 3);
+        }
+        return stable & filled;
+    }
+
+    /*
+    方向dirの列が全て埋まっているマスの集合を返すメソッド
+    forward: そのマスから進む向きに1, 2, 4マス先までの石を順にANDしていき(盤外は埋まっているとみなす)、
+    8マス先まで埋まっているかを3回のシフトで求める。戻る向き(backward)も同様に求め、両方が埋まっていれば列が埋まっている。
+    */
+    private static long fullLines(long filled, int dir) {
+        long forward = filled;
+        long backward = filled;
+        for (int j = 0; j < 3; j++) {
+            int n = SHIFTS[dir] << j;
+            forward &= (forward >>> n) | FORWARD_OFF_BOARD[dir][j];
+            backward &= (backward << n) | BACKWARD_OFF_BOARD[dir][j];
+        }
+        return forward & backward;
+    }
+
+    private static boolean onBoard(int x, int y) {
+        return x >= 0 && x < 8 && y >= 0 && y < 8;
+    }
+
+    // 列y(0か7)の石を8ビット(ビットxが行x)に集めるメソッド
+    static int column(long bits, int y) {
+        return (int) ((((bits >>> y) & COLUMN0) * 0x0102040810204080L) >>> 56);
+    }
+
+    // 辺の黒石・白石(8ビット)を3進数の添字(黒1, 白2)にするメソッド
+    static int edgeIndex(int black, int white) {
+        return TERNARY[black] + 2 * TERNARY[white];
+    }
+
+    // 辺の配置(マスごとに0: 空き, 1: 黒, 2: 白)で確定石になるマスを求めるメソッド(表の作成用)
+    // 空きマスに黒・白のどちらかを置いた全ての配置について、置いた後も同じ色のままの確定石だけを残す
+    private static byte edgeStable(int[] cells, byte[] memo, boolean[] done) {
+        int index = 0;
+        int occupied = 0;
+        for (int i = 7; i >= 0; i--) {
+            index = index * 3 + cells[i];
+            if (cells[i] != 0) {
+                occupied |= 1 << i;
+            }
+        }
+        if (done[index]) {
+            return memo[index];
+        }
+        int stable = occupied;
+        for (int i = 0; i < 8 && stable != 0; i++) {
+            if (cells[i] != 0) {
+                continue;
+            }
+            for (int color = 1; color <= 2; color++) {
+                int[] next = cells.clone();
+                next[i] = color;
+                for (int dir = -1; dir <= 1; dir += 2) { // 辺の上で挟んだ石を裏返す
+                    int j = i + dir;
+                    while (j >= 0 && j < 8 && next[j] == 3 - color) {
+                        j += dir;
+                    }
+                    if (j >= 0 && j < 8 && next[j] == color) {
+                        for (int k = i + dir; k != j; k += dir) {
+                            next[k] = color;
+                        }
+                    }
+                }
+                int unchanged = 0;
+                for (int k = 0; k < 8; k++) {
+                    if (cells[k] != 0 && next[k] == cells[k]) {
+                        unchanged |= 1 << k;
+                    }
+                }
+                stable &= unchanged & edgeStable(next, memo, done);
+            }
+        }
+        memo[index] = (byte) stable;
+        done[index] = true;
+        return (byte) stable;
+    }
+}
@@ -0,0 +1,197 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class StabilityDriver {
+    private static final int POSITIONS = 2000; // テストに使うランダム局面数
+    private static final int CONTINUATIONS = 10; // 1局面あたりのランダムな続きの対局数
+    private static final int BENCH_CALLS = 2_000_000; // 速度比較での評価回数
+    private static final int LEAF_WINDOWS = 4; // 探索の末端での評価のテストで1局面あたりに試す探索窓の数
+    private static final int LEAF_WINDOW_RANGE = 200; // 探索窓の位置を評価値からずらす範囲
+    private static final long MATCH_TIME_MS = 30; // 対局のテストでの1手あたりの思考時間
+    private static final int MATCH_PAIRS = 3; // 対局のテストで先後を入れ替えて行う対局数
+    private static final int RANDOM_OPENING = 6; // 対局のテストで最初にランダムに打つ手数(対局ごとに局面を変える)
+
+    public static void main(String[] args) {
+        System.out.println("Stabilityクラスのテスト(StabilityDriver.java)");
+        Random random = new Random(1);
+        List<BitBoard> positions = new ArrayList<>();
+        for (int i = 0; i < POSITIONS; i++) {
+            positions.add(randomPosition(random, random.nextInt(61)));
+        }
+
+        // 1. 確定石がはっきりしている局面
+        System.out.println("\n1. 決まった局面での確定石のテスト");
+        long corner = 1L; // a1の黒石だけ
+        check("隅の石は確定石", Stability.stableDiscs(corner, 0) == corner);
+        check("隅の隣の石は確定石でない", Stability.stableDiscs(1L << 1, 1L << 2) == 0);
+        long topEdge = 0xffL; // 上辺が全て埋まっている
+        check("埋まった辺は全て確定石", Stability.stableDiscs(topEdge & 0x55L, topEdge & 0xaaL) == topEdge);
+        check("隅から続く同じ色の石は確定石", Stability.stableDiscs(0x07L, 0x10L) == 0x07L);
+        check("埋まった盤面は全て確定石", Stability.stableDiscs(0x5555555555555555L, 0xaaaaaaaaaaaaaaaaL) == -1L);
+        check("列の数え方", Stability.column(0x8000000000000080L, 7) == 0x81 && Stability.column(1L << 8, 0) == 0x02);
+
+        // 2. 確定石とした石がランダムな続きの対局で裏返らないか
+        System.out.println("\n2. 確定石が裏返らないかのテスト(" + POSITIONS + " 局面 × " + CONTINUATIONS + " 局)");
+        int flipped = 0;
+        long stableCount = 0;
+        for (BitBoard position : positions) {
+            long stable = Stability.stableDiscs(position.getBlack(), position.getWhite());
+            long stableBlack = stable & position.getBlack();
+            long stableWhite = stable & position.getWhite();
+            stableCount += Long.bitCount(stable);
+            for (int game = 0; game < CONTINUATIONS; game++) {
+                BitBoard board = position.copy();
+                int color = (random.nextBoolean()) ? BitBoard.BLACK : BitBoard.WHITE;
+                while ((color = playRandomMove(board, color, random)) != 0) {
+                    if ((board.getBlack() & stableBlack) != stableBlack || (board.getWhite() & stableWhite) != stableWhite) {
+                        flipped++;
+                        break;
+                    }
+                }
+            }
+        }
+        System.out.printf("   確定石の数: 平均 %.2f, 裏返った対局: %d%s%n", (double) stableCount / POSITIONS, flipped,
+                (flipped == 0 && stableCount > 0) ? " (成功)" : " (失敗)");
+
+        // 3. 探索の末端での評価(evaluateLeaf)が、探索窓の中では評価値と一致し、外では同じ側の値を返すか
+        System.out.println("\n3. 探索の末端での評価と探索窓のテスト(" + POSITIONS + " 局面 × " + LEAF_WINDOWS + " 窓)");
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // CPUの生成時のログを出さない
+        CPU leafEvaluator = new CPU("Black", "強い");
+        System.setOut(console);
+        int wrong = 0;
+        int skipped = 0; // 合法手を求めずに上限・下限を返した回数
+        for (BitBoard position : positions) {
+            int full = CPU.evaluate(position);
+            for (int w = 0; w < LEAF_WINDOWS; w++) {
+                int color = random.nextBoolean() ? 1 : -1;
+                int alpha = color * full - random.nextInt(2 * LEAF_WINDOW_RANGE) + LEAF_WINDOW_RANGE;
+                int beta = alpha + ((w % 2 == 0) ? 1 : 1 + random.nextInt(LEAF_WINDOW_RANGE)); // 幅0・幅のある窓
+                int expected = color * full;
+                int leaf = leafEvaluator.evaluateLeaf(position, color, alpha, beta);
+                boolean ok = (expected <= alpha) ? leaf <= alpha && leaf >= expected
+                        : (expected >= beta) ? leaf >= beta && leaf <= expected : leaf == expected;
+                wrong += ok ? 0 : 1;
+                skipped += (leaf != expected) ? 1 : 0;
+            }
+        }
+        leafEvaluator.shutdown();
+        System.out.println("   窓の外を誤って返した数: " + wrong + ", 合法手を求めずに返した数: " + skipped
+                + (wrong == 0 && skipped > 0 ? " (成功)" : " (失敗)"));
+
+        // 4. 評価の速さ
+        System.out.println("\n4. 評価の速さの比較(" + BENCH_CALLS + " 回)");
+        long sum = 0;
+        double[] nanos = new double[3];
+        for (int round = 0; round < 3; round++) { // 1, 2回目はJITのウォームアップ
+            long start = System.nanoTime();
+            for (int i = 0; i < BENCH_CALLS; i++) {
+                sum += CPU.evaluateCells(positions.get(i % POSITIONS));
+            }
+            long middle = System.nanoTime();
+            for (int i = 0; i < BENCH_CALLS; i++) {
+                BitBoard board = positions.get(i % POSITIONS);
+                sum += Stability.stableDiscs(board.getBlack(), board.getWhite());
+            }
+            long end = System.nanoTime();
+            for (int i = 0; i < BENCH_CALLS; i++) {
+                sum += CPU.evaluate(positions.get(i % POSITIONS));
+            }
+            nanos[0] = (double) (middle - start) / BENCH_CALLS;
+            nanos[1] = (double) (end - middle) / BENCH_CALLS;
+            nanos[2] = (double) (System.nanoTime() - end) / BENCH_CALLS;
+        }
+        System.out.printf("   各マスの重み: %.1f ns/回, 確定石: %.1f ns/回, 特徴を加えた評価: %.1f ns/回 (合計 %d)%n",
+                nanos[0], nanos[1], nanos[2], sum);
+
+        // 5. 特徴を加えた評価と各マスの重みだけの評価の対局(思考時間をそろえて比較する)
+        System.out.println("\n5. 各マスの重みだけの評価との対局(1手" + MATCH_TIME_MS + "ms, " + (2 * MATCH_PAIRS) + "局)");
+        int wins = 0;
+        int losses = 0;
+        int draws = 0;
+        for (int game = 0; game < 2 * MATCH_PAIRS; game++) {
+            boolean featuresBlack = (game % 2 == 0);
+            System.setOut(new PrintStream(OutputStream.nullOutputStream())); // CPUの1手ごとのログを出さない
+            CPU black = new CPU("Black", "強い");
+            CPU white = new CPU("White", "強い");
+            black.setTimeLimit(MATCH_TIME_MS);
+            white.setTimeLimit(MATCH_TIME_MS);
+            (featuresBlack ? white : black).setEvaluationFeatures(false);
+            int diff = playGame(black, white, new Random(game / 2)); // 黒 - 白
+            black.shutdown();
+            white.shutdown();
+            System.setOut(console);
+            int featuresDiff = featuresBlack ? diff : -diff;
+            if (featuresDiff > 0) {
+                wins++;
+            } else if (featuresDiff < 0) {
+                losses++;
+            } else {
+                draws++;
+            }
+        }
+        System.out.println("   " + wins + "勝 " + losses + "敗 " + draws + "分" + (wins > losses ? " (成功)" : " (失敗)"));
+
+        System.out.println("\nStabilityクラスのテストを終了します。");
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.println("   " + name + ": " + (ok ? "成功" : "失敗"));
+    }
+
+    // 1局対局し、石差(黒 - 白)を返す(最初のRANDOM_OPENING手はランダム)
+    private static int playGame(CPU black, CPU white, Random random) {
+        BitBoard board = randomPosition(random, RANDOM_OPENING);
+        int color = (board.countEmpty() % 2 == 0) ? BitBoard.BLACK : BitBoard.WHITE;
+        while (true) {
+            if (board.getValidMoves(color) == 0) {
+                color = BitBoard.opponentColor(color);
+                if (board.getValidMoves(color) == 0) {
+                    break;
+                }
+            }
+            int[] operation = ((color == BitBoard.BLACK) ? black : white).getCPUOperation(board.toBoard());
+            board.makeMove(operation[0] * BitBoard.SIZE + operation[1], color);
+            color = BitBoard.opponentColor(color);
+        }
+        return board.numberOfStone(BitBoard.BLACK) - board.numberOfStone(BitBoard.WHITE);
+    }
+
+    // colorの手番でランダムに1手打ち(打てなければ相手が打つ)、次の手番を返す。対局が終わっていれば0を返す
+    private static int playRandomMove(BitBoard board, int color, Random random) {
+        long moves = board.getValidMoves(color);
+        if (moves == 0) {
+            color = BitBoard.opponentColor(color);
+            moves = board.getValidMoves(color);
+            if (moves == 0) {
+                return 0;
+            }
+        }
+        for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+            moves &= moves - 1;
+        }
+        board.makeMove(Long.numberOfTrailingZeros(moves), color);
+        return BitBoard.opponentColor(color);
+    }
+
+    // 初期局面からランダムにplies手進めた局面(パスの後の手番は石の数からは分からないので、パスが起きたら打ち切る)
+    private static BitBoard randomPosition(Random random, int plies) {
+        BitBoard board = new BitBoard();
+        int color = BitBoard.BLACK;
+        for (int ply = 0; ply < plies; ply++) {
+            long moves = board.getValidMoves(color);
+            if (moves == 0) {
+                break;
+            }
+            for (int k = random.nextInt(Long.bitCount(moves)); k > 0; k--) {
+                moves &= moves - 1;
+            }
+            board.makeMove(Long.numberOfTrailingZeros(moves), color);
+            color = BitBoard.opponentColor(color);
+        }
+        return board;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+CPUの探索結果を局面のハッシュキーごとに記録する置換表クラス
+メモリ使用量はMB単位で指定し、エントリ数はその範囲に収まる最大の2のべき乗とする。
+
+各エントリは64bitのキーと64bitのデータの組(16バイト)で、データには以下を詰めて保存する。
+    bit  0-31: スコア
+    bit 32-38: 最善手のビット番号(NO_MOVE = 手なし)
+    bit 39-40: スコアの種類(EXACT / LOWER / UPPER)
+    bit 41-48: 探索した深さ
+    bit 49-56: 世代(CPUの手番ごとに1つ進める)
+    bit 57   : 使用中フラグ
+
+置換方式: 2エントリで1つのバケットとし、
+    1つ目 = 深さ優先(より深い or 同じ深さ or 古い世代の結果なら上書き)
+    2つ目 = 常に上書き
+とする。同じ局面が既にバケット内にあればその位置を更新する。
+
+並列探索では複数のスレッドから同時に読み書きされるが、ロックは使わない。
+キーの代わりに「キー ^ データ」を保存し、参照時にデータとXORして元のキーに戻ることを確認するので、
+別々のスレッドの書き込みが混ざった壊れたエントリは見つからなかったものとして扱われる。
+(統計情報のカウンタは同期していないため、並列探索中の値は目安とする)
+*/
+public class TranspositionTable {
+    // スコアの種類
+    public static final int BOUND_EXACT = 0; // 正確な値
+    public static final int BOUND_LOWER = 1; // 下限値(beta以上で枝刈りされた)
+    public static final int BOUND_UPPER = 2; // 上限値(alphaを超える手がなかった)
+
+    public static final int NO_MOVE = 64; // 最善手なし
+
+    private static final int ENTRY_BYTES = 16; // 1エントリのバイト数(キー + データ)
+    private static final long VALID_BIT = 1L << 57;
+
+    private final long[] keys; // 局面のハッシュキー ^ データ
+    private final long[] data; // スコアなどを詰めたデータ
+    private final int indexMask; // キーからバケット位置を求めるためのマスク
+    private final int sizeMB; // 指定されたサイズ(MB)
+    private int generation; // 現在の世代
+
+    // 統計情報
+    private long probes; // 参照回数
+    private long hits; // 参照した局面が見つかった回数
+    private long stores; // 書き込み回数
+    private long collisions; // 同じ世代の別の局面を上書きした回数
+
+    // コンストラクタ
+    // sizeMB: 使用するメモリ量(MB)
+    public TranspositionTable(int sizeMB) {
+        if (sizeMB < 1) {
+            throw new IllegalArgumentException("Transposition table size must be at least 1 MB: " + sizeMB);
+        }
+        long maxEntries = (long) sizeMB * 1024 * 1024 / ENTRY_BYTES;
+        int entries = Integer.highestOneBit((int) Math.min(maxEntries, 1 << 30));
+        this.keys = new long[entries];
+        this.data = new long[entries];
+        this.indexMask = entries - 2; // バケットの先頭(偶数番目)を指す
+        this.sizeMB = sizeMB;
+    }
+
+    // 新しい探索(CPUの1手)の開始時に呼ぶメソッド
+    // 古い世代のエントリは置換で優先的に上書きされる
+    public void newSearch() {
+        generation = (generation + 1) & 0xff;
+    }
+
+    // 全てのエントリと統計情報を消去するメソッド
+    public void clear() {
+        java.util.Arrays.fill(keys, 0L);
+        java.util.Arrays.fill(data, 0L);
+        generation = 0;
+        resetStatistics();
+    }
+
+    // 統計情報のみをリセットするメソッド
+    public void resetStatistics() {
+        probes = 0;
+        hits = 0;
+        stores = 0;
+        collisions = 0;
+    }
+
+    /*
+    局面を参照するメソッド
+    見つかった場合はエントリのデータ(getScoreなどで取り出す)を、見つからない場合は0を返す。
+    */
+    public long probe(long key) {
+        probes++;
+        int index = (int) key & indexMask;
+        for (int i = index; i <= index + 1; i++) {
+            long entry = data[i];
+            if ((keys[i] ^ entry) == key && (entry & VALID_BIT) != 0) {
+                hits++;
+                return entry;
+            }
+        }
+        return 0L;
+    }
+
+    /*
+    探索結果を書き込むメソッド
+    key: 局面のハッシュキー
+    depth: 探索した深さ(0 - 255)
+    bound: スコアの種類(BOUND_EXACT, BOUND_LOWER, BOUND_UPPER)
+    score: スコア
+    bestMove: 最善手のビット番号(なければNO_MOVE)
+    */
+    public void store(long key, int depth, int bound, int score, int bestMove) {
+        stores++;
+        int index = (int) key & indexMask;
+        long first = data[index];
+        long second = data[index + 1];
+        int target;
+        if ((keys[index] ^ first) == key || (keys[index + 1] ^ second) == key) {
+            // 同じ局面のエントリを更新する
+            target = ((keys[index] ^ first) == key) ? index : index + 1;
+            long old = (target == index) ? first : second;
+            if (bestMove == NO_MOVE && (old & VALID_BIT) != 0) {
+                bestMove = getMove(old); // 最善手の情報は残しておく
+            }
+        } else {
+            boolean replaceFirst = (first & VALID_BIT) == 0
+                    || getGeneration(first) != generation
+                    || depth >= getDepth(first);
+            target = replaceFirst ? index : index + 1;
+            long old = data[target];
+            if ((old & VALID_BIT) != 0 && getGeneration(old) == generation) {
+                collisions++;
+            }
+        }
+        long entry = pack(depth, bound, score, bestMove);
+        keys[target] = key ^ entry;
+        data[target] = entry;
+    }
+
+    // 各値を1つのlongに詰めるメソッド
+    private long pack(int depth, int bound, int score, int bestMove) {
+        return (score & 0xffffffffL)
+                | ((long) bestMove << 32)
+                | ((long) bound << 39)
+                | ((long) Math.min(depth, 255) << 41)
+                | ((long) generation << 49)
+                | VALID_BIT;
+    }
+
+    // エントリのデータから各値を取り出すメソッド
+    public static int getScore(long entry) {
+        return (int) entry;
+    }
+
+    public static int getMove(long entry) {
+        return (int) (entry >>> 32) & 0x7f;
+    }
+
+    public static int getBound(long entry) {
+        return (int) (entry >>> 39) & 0x3;
+    }
+
+    public static int getDepth(long entry) {
+        return (int) (entry >>> 41) & 0xff;
+    }
+
+    private static int getGeneration(long entry) {
+        return (int) (entry >>> 49) & 0xff;
+    }
+
+    // 統計情報の取得
+    public long getProbes() {
+        return probes;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return probes - hits;
+    }
+
+    public long getStores() {
+        return stores;
+    }
+
+    public long getCollisions() {
+        return collisions;
+    }
+
+    // 参照に対するヒット率
+    public double getHitRate() {
+        return (probes == 0) ? 0.0 : (double) hits / probes;
+    }
+
+    // 現在の世代のエントリが占める割合(先頭の最大1000エントリから推定)
+    public double getUsage() {
+        int sample = Math.min(1000, data.length);
+        int used = 0;
+        for (int i = 0; i < sample; i++) {
+            if ((data[i] & VALID_BIT) != 0 && getGeneration(data[i]) == generation) {
+                used++;
+            }
+        }
+        return (double) used / sample;
+    }
+
+    public int getCapacity() {
+        return keys.length;
+    }
+
+    public int getSizeMB() {
+        return sizeMB;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TT[%dMB, %d entries] probes=%d hits=%d (%.1f%%) misses=%d stores=%d collisions=%d usage=%.1f%%",
+                sizeMB, keys.length, probes, hits, getHitRate() * 100, getMisses(), stores, collisions,
+                getUsage() * 100);
+    }
+}
@@ -0,0 +1,182 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/*
+PatternEvaluatorの評価を、Vector API(jdk.incubator.vector)で複数の局面を並べて行うクラス
+ベクトルの各レーンが1つの局面を受け持ち、盤面の回転・反転と、34か所の特徴のマスの読み取りを、
+レーンの数(SIMDの幅で決まり、AVX-512なら8)の局面について同時に計算する。
+3進数への変換と重みの参照は表を引く処理で、Java 17のVector APIでは表の参照(gather)がSIMD命令にならず
+かえって遅くなるので、読み取ったマスの並びから1局面ずつ表を引く。
+JITコンパイラが1つ1つのメソッドをSIMD命令に変換できるよう、処理は小さなメソッドに分けて配列を通して受け渡し、
+特徴の読み取り方は表にして、同じ処理のループで順に計算する。
+計算の内容はPatternEvaluator.evaluateと同じ整数演算なので、評価値は1局面ずつ評価した場合と一致する。
+
+このクラスはPatternEvaluatorが名前で読み込むので、他のクラスからは直接参照しない。コンパイルと実行には以下の指定が必要:
+    javac --add-modules jdk.incubator.vector VectorPatternEvaluator.java
+    java --add-modules jdk.incubator.vector Client ...
+*/
+final class VectorPatternEvaluator implements PatternEvaluator.BatchEvaluator {
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+    private static final int LANES = LONGS.length(); // 同時に評価する局面数
+
+    private final int phases; // 段階数
+    private final short[][][] weights; // [段階][パターン][添字]の重み(PatternEvaluatorと共有する)
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new); // スレッドごとの作業領域
+
+    // 盤面の配置(I: そのまま, T: 転置, V: 上下反転, H: 左右反転, 以降はその組み合わせ)
+    private static final int I = 0, T = 1, V = 2, H = 3, VH = 4, TV = 5, TH = 6, TVH = 7;
+    private static final int TRANSFORMS = 8;
+
+    // 特徴ごとの読み取り方(PatternEvaluator.evaluateの特徴の順。computeIndicesと同じ順)
+    private static final int[] FEATURE_TRANSFORM = new int[PatternEvaluator.FEATURES]; // どの配置から読み取るか
+    private static final long[][] FEATURE_MASK = new long[PatternEvaluator.FEATURES][]; // マスク0 ～ 2
+    private static final int[][] FEATURE_SHIFT = new int[PatternEvaluator.FEATURES][]; // シフト0(常に0) ～ 3
+    private static final long[] FEATURE_MULTIPLIER = new long[PatternEvaluator.FEATURES]; // 乗数
+    private static final int[] PATTERN_FEATURES = { 4, 8, 4, 2, 4, 4, 4, 4 }; // パターンごとの特徴の数(特徴はパターンの順に並ぶ)
+
+    static {
+        int f = 0;
+        for (int t : new int[] { I, T, V, TH }) { // EDGE_X
+            setFeature(f++, t, new long[] { 0xffL, 0x100L, 0x200L }, new int[] { 0, 1, 5, 0 }, 1);
+        }
+        for (int t : new int[] { I, T, V, H, VH, TV, TH, TVH }) { // CORNER_2X5
+            setFeature(f++, t, new long[] { 0x1fL, 0x3e0L, 0 }, new int[] { 0, 3, 0, 0 }, 1);
+        }
+        for (int t : new int[] { I, V, H, VH }) { // CORNER_3X3
+            setFeature(f++, t, new long[] { 0x7L, 0x38L, 0x1c0L }, new int[] { 0, 5, 10, 0 }, 1);
+        }
+        for (int t : new int[] { I, H }) { // DIAG8
+            setFeature(f++, t, new long[] { PatternEvaluator.DIAG8_MASK, 0, 0 }, new int[] { 0, 0, 0, 56 },
+                    PatternEvaluator.COLUMN_GATHER);
+        }
+        for (int k = 1; k <= 4; k++) { // DIAG7 ～ DIAG4
+            for (int t : new int[] { I, T, H, TH }) {
+                setFeature(f++, t, new long[] { PatternEvaluator.DIAG_MASKS[k - 1], 0, 0 },
+                        new int[] { 0, 0, 0, 56 + k }, PatternEvaluator.COLUMN_GATHER);
+            }
+        }
+    }
+
+    private static void setFeature(int feature, int transform, long[] masks, int[] shifts, long multiplier) {
+        FEATURE_TRANSFORM[feature] = transform;
+        FEATURE_MASK[feature] = masks;
+        FEATURE_SHIFT[feature] = shifts;
+        FEATURE_MULTIPLIER[feature] = multiplier;
+    }
+
+    // スレッドごとの作業領域
+    private static final class Workspace {
+        final long[] boards = new long[2 * TRANSFORMS * LANES]; // 黒石・白石の8通りの配置(レーンの数ずつ)
+        final long[] features = new long[2 * PatternEvaluator.FEATURES * LANES]; // 特徴ごとの黒石・白石の並び(レーンの数ずつ)
+    }
+
+    VectorPatternEvaluator(PatternEvaluator evaluator) {
+        this.phases = evaluator.getPhases();
+        this.weights = new short[phases][PatternEvaluator.PATTERNS][];
+        for (int phase = 0; phase < phases; phase++) {
+            for (int p = 0; p < PatternEvaluator.PATTERNS; p++) {
+                weights[phase][p] = evaluator.getWeights(phase, p);
+            }
+        }
+    }
+
+    @Override
+    public void evaluate(long[] blacks, long[] whites, int count, int[] scores) {
+        Workspace work = workspaces.get();
+        long[] boards = work.boards;
+        long[] features = work.features;
+        for (int i = 0; i < count; i += LANES) {
+            // 最後の端数のレーンは空の盤面として計算し、結果を使わない
+            VectorMask<Long> mask = LONGS.indexInRange(i, count);
+            LongVector.fromArray(LONGS, blacks, i, mask).intoArray(boards, I * LANES);
+            LongVector.fromArray(LONGS, whites, i, mask).intoArray(boards, (TRANSFORMS + I) * LANES);
+            for (int color = 0; color < 2; color++) {
+                int offset = color * TRANSFORMS * LANES;
+                flipVertical(boards, offset + I * LANES, offset + V * LANES);
+                mirror(boards, offset + I * LANES, offset + H * LANES);
+                flipVertical(boards, offset + H * LANES, offset + VH * LANES);
+                transpose(boards, offset + I * LANES, offset + T * LANES);
+                transpose(boards, offset + V * LANES, offset + TV * LANES);
+                transpose(boards, offset + H * LANES, offset + TH * LANES);
+                transpose(boards, offset + VH * LANES, offset + TVH * LANES);
+            }
+            for (int f = 0; f < PatternEvaluator.FEATURES; f++) {
+                for (int color = 0; color < 2; color++) {
+                    patternBits(f, boards, (color * TRANSFORMS + FEATURE_TRANSFORM[f]) * LANES, features,
+                            (2 * f + color) * LANES);
+                }
+            }
+            // 3進数への変換と重みの参照は1局面ずつ表を引く
+            int lanes = Math.min(LANES, count - i);
+            for (int lane = 0; lane < lanes; lane++) {
+                short[][] w = weights[PatternEvaluator.phaseOf(Long.bitCount(blacks[i + lane] | whites[i + lane]), phases)];
+                int score = 0;
+                for (int p = 0, f = 0; p < PatternEvaluator.PATTERNS; p++) {
+                    short[] table = w[p];
+                    for (int end = f + PATTERN_FEATURES[p]; f < end; f++) {
+                        int index = 2 * f * LANES + lane;
+                        score += table[PatternEvaluator.TERNARY[(int) features[index]]
+                                + 2 * PatternEvaluator.TERNARY[(int) features[index + LANES]]];
+                    }
+                }
+                scores[i + lane] = Math.max(-PatternEvaluator.MAX_SCORE, Math.min(PatternEvaluator.MAX_SCORE, score));
+            }
+        }
+    }
+
+    /*
+    配列のfromからの盤面(レーンの数)から特徴featureのマスを読み取り、下位のビットに集めてtoから書き出すメソッド
+    (PatternEvaluatorのedgeXBitsなどと同じ値)。どの特徴も
+        ((bits & マスク0) | ((bits >>> シフト1) & マスク1) | ((bits >>> シフト2) & マスク2)) × 乗数 >>> シフト3
+    の形で計算する(対角線の列はマスクした後の乗算で最上位の行に集め、それ以外は乗数1)。
+    */
+    private static void patternBits(int feature, long[] boards, int from, long[] out, int to) {
+        long[] masks = FEATURE_MASK[feature];
+        int[] shifts = FEATURE_SHIFT[feature];
+        LongVector bits = LongVector.fromArray(LONGS, boards, from);
+        bits.and(masks[0])
+                .or(bits.lanewise(VectorOperators.LSHR, shifts[1]).and(masks[1]))
+                .or(bits.lanewise(VectorOperators.LSHR, shifts[2]).and(masks[2]))
+                .lanewise(VectorOperators.MUL, FEATURE_MULTIPLIER[feature])
+                .lanewise(VectorOperators.LSHR, shifts[3])
+                .intoArray(out, to);
+    }
+
+    /*
+    BitBoard.transpose, mirror, flipVerticalと同じ変換を、配列のfromからの盤面(レーンの数)に行ってtoから書き出すメソッド
+    ベクトルを引数や戻り値で受け渡すとインライン化されなかったときにオブジェクトが作られて遅くなるので、配列を通して受け渡す。
+    */
+    private static void transpose(long[] boards, int from, int to) {
+        LongVector bits = LongVector.fromArray(LONGS, boards, from);
+        LongVector t = bits.lanewise(VectorOperators.XOR, bits.lanewise(VectorOperators.LSHL, 28)).and(0x0f0f0f0f00000000L);
+        bits = bits.lanewise(VectorOperators.XOR, t.lanewise(VectorOperators.XOR, t.lanewise(VectorOperators.LSHR, 28)));
+        t = bits.lanewise(VectorOperators.XOR, bits.lanewise(VectorOperators.LSHL, 14)).and(0x3333000033330000L);
+        bits = bits.lanewise(VectorOperators.XOR, t.lanewise(VectorOperators.XOR, t.lanewise(VectorOperators.LSHR, 14)));
+        t = bits.lanewise(VectorOperators.XOR, bits.lanewise(VectorOperators.LSHL, 7)).and(0x5500550055005500L);
+        bits.lanewise(VectorOperators.XOR, t.lanewise(VectorOperators.XOR, t.lanewise(VectorOperators.LSHR, 7)))
+                .intoArray(boards, to);
+    }
+
+    private static void mirror(long[] boards, int from, int to) {
+        LongVector bits = LongVector.fromArray(LONGS, boards, from);
+        bits = bits.lanewise(VectorOperators.LSHR, 1).and(0x5555555555555555L)
+                .or(bits.and(0x5555555555555555L).lanewise(VectorOperators.LSHL, 1));
+        bits = bits.lanewise(VectorOperators.LSHR, 2).and(0x3333333333333333L)
+                .or(bits.and(0x3333333333333333L).lanewise(VectorOperators.LSHL, 2));
+        bits.lanewise(VectorOperators.LSHR, 4).and(0x0f0f0f0f0f0f0f0fL)
+                .or(bits.and(0x0f0f0f0f0f0f0f0fL).lanewise(VectorOperators.LSHL, 4))
+                .intoArray(boards, to);
+    }
+
+    private static void flipVertical(long[] boards, int from, int to) { // Long.reverseBytesと同じ
+        LongVector bits = LongVector.fromArray(LONGS, boards, from);
+        bits = bits.lanewise(VectorOperators.LSHR, 8).and(0x00ff00ff00ff00ffL)
+                .or(bits.and(0x00ff00ff00ff00ffL).lanewise(VectorOperators.LSHL, 8));
+        bits = bits.lanewise(VectorOperators.LSHR, 16).and(0x0000ffff0000ffffL)
+                .or(bits.and(0x0000ffff0000ffffL).lanewise(VectorOperators.LSHL, 16));
+        bits.lanewise(VectorOperators.LSHR, 32).or(bits.lanewise(VectorOperators.LSHL, 32))
+                .intoArray(boards, to);
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+VectorPatternEvaluator(PatternEvaluatorの複数局面をまとめた評価)のテスト
+Vector APIを使う場合は以下のように実行する(指定しなければ1局面ずつの評価だけをテストする):
+    javac --add-modules jdk.incubator.vector VectorPatternEvaluator.java
+    java --add-modules jdk.incubator.vector -Dothello.vector=true VectorPatternEvaluatorDriver
+*/
+public class VectorPatternEvaluatorDriver {
+    private static final int POSITIONS = 3000; // テストに使うランダム局面数
+    private static final int MAX_BATCH = 32; // テストするまとめる局面数の最大
+    private static final int BENCH_ROUNDS = 300; // 速度比較で全局面を評価する回数
+    private static final int BENCH_BATCH = 10; // 速度比較でまとめる局面数(1つの局面の合法手の数程度)
+    private static final int PHASES = 6;
+
+    public static void main(String[] args) {
+        System.out.println("VectorPatternEvaluatorクラスのテスト(VectorPatternEvaluatorDriver.java)");
+        PatternEvaluator evaluator = new PatternEvaluator(randomWeights(new Random(2)), true);
+
+        // 1. Vector APIが使えるか
+        System.out.println("\n1. Vector APIによる評価の読み込み");
+        System.out.println("   " + (evaluator.isVectorized() ? "使用する" : "使用しない(1局面ずつ評価する)"));
+
+        // 2. まとめて評価した値が1局面ずつ評価した値と一致するか
+        List<BitBoard> positions = createPositions(new Random(1));
+        int count = positions.size();
+        long[] blacks = new long[count];
+        long[] whites = new long[count];
+        int[] expected = new int[count];
+        for (int i = 0; i < count; i++) {
+            blacks[i] = positions.get(i).getBlack();
+            whites[i] = positions.get(i).getWhite();
+            expected[i] = evaluator.evaluate(positions.get(i));
+        }
+        System.out.println("\n2. 1局面ずつの評価との比較(" + count + " 局面, まとめる局面数 1 ～ " + MAX_BATCH + ")");
+        int mismatch = 0;
+        int[] scores = new int[MAX_BATCH];
+        long[] batchBlacks = new long[MAX_BATCH];
+        long[] batchWhites = new long[MAX_BATCH];
+        for (int batch = 1; batch <= MAX_BATCH; batch++) {
+            for (int start = 0; start + batch <= count; start += batch) {
+                System.arraycopy(blacks, start, batchBlacks, 0, batch);
+                System.arraycopy(whites, start, batchWhites, 0, batch);
+                evaluator.evaluate(batchBlacks, batchWhites, batch, scores);
+                for (int i = 0; i < batch; i++) {
+                    if (scores[i] != expected[start + i]) {
+                        mismatch++;
+                    }
+                }
+            }
+        }
+        System.out.println("   不一致数: " + mismatch + (mismatch == 0 ? " (成功)" : " (失敗)"));
+
+        // 3. 速度比較(まとめて評価 / 1局面ずつ評価)
+        System.out.println("\n3. 速度比較(" + BENCH_BATCH + " 局面ずつ, " + BENCH_ROUNDS + " 回)");
+        int[] all = new int[count];
+        long checksum = 0;
+        long[] nanos = new long[2];
+        for (int trial = 0; trial < 2; trial++) { // 1回目はJITコンパイルのための予行
+            for (int mode = 0; mode < 2; mode++) {
+                long start = System.nanoTime();
+                for (int round = 0; round < BENCH_ROUNDS; round++) {
+                    for (int i = 0; i + BENCH_BATCH <= count; i += BENCH_BATCH) {
+                        System.arraycopy(blacks, i, batchBlacks, 0, BENCH_BATCH);
+                        System.arraycopy(whites, i, batchWhites, 0, BENCH_BATCH);
+                        if (mode == 0) {
+                            evaluator.evaluate(batchBlacks, batchWhites, BENCH_BATCH, scores);
+                        } else {
+                            evaluator.evaluateEach(batchBlacks, batchWhites, BENCH_BATCH, scores);
+                        }
+                        System.arraycopy(scores, 0, all, i, BENCH_BATCH);
+                    }
+                }
+                nanos[mode] = System.nanoTime() - start;
+                for (int score : all) {
+                    checksum += score;
+                }
+            }
+        }
+        long evaluated = (long) BENCH_ROUNDS * (count / BENCH_BATCH * BENCH_BATCH);
+        System.out.printf("   まとめて評価: %.1f ns/局面, 1局面ずつ評価: %.1f ns/局面 (チェックサム %d)%n",
+                (double) nanos[0] / evaluated, (double) nanos[1] / evaluated, checksum);
+
+        System.out.println("\nVectorPatternEvaluatorクラスのテストを終了します。");
+    }
+
+    // パターン自身の対称性で揃えたランダムな重み
+    private static short[][][] randomWeights(Random random) {
+        short[][][] weights = new short[PHASES][PatternEvaluator.PATTERNS][];
+        for (int phase = 0; phase < PHASES; phase++) {
+            for (int p = 0; p < PatternEvaluator.PATTERNS; p++) {
+                short[] table = new short[PatternEvaluator.PATTERN_LENGTH[p]];
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (short) (random.nextInt(2001) - 1000);
+                }
+                for (int i = 0; i < table.length; i++) {
+                    table[PatternEvaluator.symmetricIndex(p, i)] = table[i];
+                }
+                weights[phase][p] = table;
+            }
+        }
+        return weights;
+    }
+
+    // ランダム対局の途中局面を集める
+    private static List<BitBoard> createPositions(Random random) {
+        List<BitBoard> positions = new ArrayList<>();
+        while (positions.size() < POSITIONS) {
+            BitBoard board = new BitBoard();
+            int color = BitBoard.BLACK;
+            int passes = 0;
+            while (passes < 2) {
+                long moves = board.getValidMoves(color);
+                if (moves == 0) {
+                    passes++;
+                } else {
+                    passes = 0;
+                    int index = random.nextInt(Long.bitCount(moves));
+                    for (int k = 0; k < index; k++) {
+                        moves &= moves - 1;
+                    }
+                    board.makeMove(Long.numberOfTrailingZeros(moves), color);
+                    positions.add(board.copy());
+                }
+                color = BitBoard.opponentColor(color);
+            }
+        }
+        return positions;
+    }
+}
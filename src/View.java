@@ -161,7 +161,7 @@ public class View extends JFrame implements ActionListener { // クラス名をV
         JPanel cpuStrengthPanel = new JPanel(new FlowLayout(FlowLayout.CENTER, 20, 0)); // 配置を調整
         JLabel cpuStrengthLabel = new JLabel("CPU の強さ:"); // ScreenUpdaterから
         cpuStrengthLabel.setFont(new Font("MS Gothic", Font.PLAIN, 25)); // UI.javaのフォントサイズに合わせる
-        String[] strengthLevels = { "弱い", "普通", "強い" }; // ScreenUpdaterから
+        String[] strengthLevels = { "弱い", "普通", "強い", CPU.LEVEL_MCTS }; // ScreenUpdaterから
         cpuStrengthComboBox = new JComboBox<>(strengthLevels); // ScreenUpdaterから
         cpuStrengthComboBox.setFont(new Font("MS Gothic", Font.PLAIN, 25)); // UI.javaのフォントサイズに合わせる
         cpuStrengthPanel.add(cpuStrengthLabel);
@@ -0,0 +1,613 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+パターン評価(PatternEvaluator)の重みを自己対戦の棋譜から学習するツール
+ローカルのCPUだけで動き、どちらの処理も複数のスレッドで並列に行う。
+
+1. 局面の生成(generate)
+   既存のCPU同士で対局し、出現した局面と正解の石差をファイルに書き出す。
+   序盤のRANDOM_PLIES手はランダムに打って局面を散らし、その後はCPUが固定深さで打つ。
+   空きマスがLABEL_EMPTIES以下になったら完全読み(CPU.analyze)で最善の石差を求め、以降は最善手で終局まで打つ。
+   その対局の全ての局面に、この石差(完全読みした局面から両者が最善を尽くした場合の対局結果)を正解として付ける。
+2. 重みの学習(train)
+   局面ファイルを少しずつ読みながら、評価値と正解の石差の二乗誤差を減らすように勾配法で重みを更新し、
+   PatternEvaluatorの重みファイルとして書き出す。局面はメモリに保持しないので、ファイルが大きくても学習できる。
+3. ニューラルネットワークの学習(train-nn)
+   同じ局面ファイルから、NeuralEvaluatorの2層のネットワークを浮動小数点で学習し(ミニバッチごとにAdamで更新)、
+   整数に変換した重みファイルとして書き出す。局面は読み込むたびにランダムに回転・反転して使う。
+
+使い方:
+    java WeightTrainer generate 局面ファイル 対局数 [スレッド数]
+    java WeightTrainer train 局面ファイル 重みファイル [繰り返し回数] [段階数] [スレッド数]
+    java WeightTrainer train-nn 局面ファイル 重みファイル [繰り返し回数] [隠れ層のユニット数]
+
+局面ファイルの形式(ビッグエンディアン):
+    int MAGIC ("OTPD"), int VERSION
+    以降1局面ごとに long 黒石, long 白石, byte 正解の石差(黒 - 白)
+*/
+public class WeightTrainer {
+    private static final int MAGIC = 0x4f545044; // "OTPD"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 17;
+
+    // 局面の生成
+    private static final int RANDOM_PLIES = 10; // 序盤にランダムに打つ手数
+    private static final int PLAY_DEPTH = 4; // 自己対戦でのCPUの探索深さ
+    private static final int LABEL_EMPTIES = 14; // 完全読みで石差を求める空きマス数
+    private static final long NO_TIME_LIMIT = 3_600_000L;
+    private static final int TT_SIZE_MB = 8; // 自己対戦のCPUの置換表のサイズ
+    private static final int GAMES_PER_REPORT = 100; // 進み具合を表示する間隔(対局数)
+
+    // 重みの学習
+    private static final int DEFAULT_EPOCHS = 30;
+    private static final int DEFAULT_PHASES = 10;
+    private static final double LEARNING_RATE = 2.0; // 重みごとの平均の誤差を特徴の数で割った値に掛ける係数
+    private static final int MIN_COUNT = 4; // 出現回数が少ない重みの更新を抑えるための値
+    private static final int VALIDATION_INTERVAL = 20; // この数ごとに1局面を学習に使わず誤差の確認に使う
+    private static final int READ_RECORDS = 1 << 14; // 1回に読み込む局面数
+
+    // ニューラルネットワークの学習
+    private static final int DEFAULT_NN_EPOCHS = 20;
+    private static final int DEFAULT_HIDDEN = 32;
+    private static final int BATCH_SIZE = 256; // ミニバッチの局面数
+    private static final double ADAM_RATE = 0.001; // Adamの学習率
+    private static final double ADAM_BETA1 = 0.9;
+    private static final double ADAM_BETA2 = 0.999;
+    private static final double ADAM_EPSILON = 1e-8;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 3 && args[0].equals("generate")) {
+            int threads = (args.length > 3) ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+            generate(args[1], Integer.parseInt(args[2]), threads);
+        } else if (args.length >= 3 && args[0].equals("train")) {
+            int epochs = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_EPOCHS;
+            int phases = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_PHASES;
+            int threads = (args.length > 5) ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+            train(args[1], args[2], epochs, phases, threads);
+        } else if (args.length >= 3 && args[0].equals("train-nn")) {
+            int epochs = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_NN_EPOCHS;
+            int hidden = (args.length > 4) ? Integer.parseInt(args[4]) : DEFAULT_HIDDEN;
+            trainNetwork(args[1], args[2], epochs, hidden);
+        } else {
+            System.err.println("使い方: java WeightTrainer generate 局面ファイル 対局数 [スレッド数]");
+            System.err.println("        java WeightTrainer train 局面ファイル 重みファイル [繰り返し回数] [段階数] [スレッド数]");
+            System.err.println("        java WeightTrainer train-nn 局面ファイル 重みファイル [繰り返し回数] [隠れ層のユニット数]");
+            System.exit(1);
+        }
+    }
+
+    // ========== 局面の生成 ==========
+
+    // gamesの対局を自己対戦し、局面ファイルに書き出すメソッド
+    static void generate(String path, int games, int threads) throws Exception {
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // CPUの1手ごとのログを出さない
+        long start = System.nanoTime();
+        AtomicInteger nextGame = new AtomicInteger();
+        long[] positions = new long[1];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                tasks.add(executor.submit(() -> {
+                    CPU black = createPlayer("Black");
+                    CPU white = createPlayer("White");
+                    List<long[]> record = new ArrayList<>();
+                    for (int game = nextGame.getAndIncrement(); game < games; game = nextGame.getAndIncrement()) {
+                        int label = playGame(black, white, new Random(game), record);
+                        synchronized (out) {
+                            for (long[] position : record) {
+                                out.writeLong(position[0]);
+                                out.writeLong(position[1]);
+                                out.writeByte(label);
+                            }
+                            positions[0] += record.size();
+                            if ((game + 1) % GAMES_PER_REPORT == 0) {
+                                console.printf("%d局 %d局面 (%.0f秒)%n", game + 1, positions[0],
+                                        (System.nanoTime() - start) / 1e9);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+            System.setOut(console);
+        }
+        System.out.printf("%d局 %d局面を %s に書き出しました (%.0f秒)%n", games, positions[0], path,
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    // 自己対戦用のCPU(固定深さ、空きマスLABEL_EMPTIES以下で完全読み)
+    private static CPU createPlayer(String turn) {
+        CPU cpu = new CPU(turn, "強い", TT_SIZE_MB);
+        cpu.setTimeLimit(NO_TIME_LIMIT);
+        cpu.setMaxDepth(PLAY_DEPTH);
+        cpu.setThreshold(LABEL_EMPTIES, LABEL_EMPTIES);
+        return cpu;
+    }
+
+    /*
+    1局を自己対戦し、出現した局面を{黒石, 白石}としてrecordに入れ、正解の石差(黒 - 白)を返すメソッド
+    空きマスがLABEL_EMPTIES以下になった最初の局面で完全読みを行い、その石差を全ての局面の正解とする。
+    */
+    private static int playGame(CPU black, CPU white, Random random, List<long[]> record) {
+        record.clear();
+        BitBoard board = new BitBoard();
+        int color = BitBoard.BLACK;
+        int plies = 0;
+        Integer label = null;
+        while (true) {
+            long moves = board.getValidMoves(color);
+            if (moves == 0) {
+                color = BitBoard.opponentColor(color);
+                if (board.getValidMoves(color) == 0) {
+                    break; // 終局
+                }
+                continue;
+            }
+            String turn = (color == BitBoard.BLACK) ? "Black" : "White";
+            CPU player = (color == BitBoard.BLACK) ? black : white;
+            int move;
+            if (plies < RANDOM_PLIES) {
+                int index = random.nextInt(Long.bitCount(moves));
+                for (int k = 0; k < index; k++) {
+                    moves &= moves - 1;
+                }
+                move = Long.numberOfTrailingZeros(moves);
+            } else if (board.countEmpty() <= LABEL_EMPTIES) {
+                // 完全読みの最善手を打つ(スコアは手番側から見た値)
+                MoveAnalysis best = player.analyze(board.toBoard(), turn).get(0);
+                if (label == null) {
+                    int diff = toDiscDiff(best.getScore());
+                    label = (color == BitBoard.BLACK) ? diff : -diff;
+                }
+                move = best.getMove();
+            } else {
+                int[] operation = player.getCPUOperation(board.toBoard());
+                move = operation[0] * BitBoard.SIZE + operation[1];
+            }
+            board.makeMove(move, color);
+            record.add(new long[] { board.getBlack(), board.getWhite() });
+            color = BitBoard.opponentColor(color);
+            plies++;
+        }
+        if (label == null) { // 完全読みの前に終局した
+            label = board.numberOfStone(BitBoard.BLACK) - board.numberOfStone(BitBoard.WHITE);
+        }
+        return label;
+    }
+
+    // 完全読みのスコア(WIN_SCORE + 石差など)を石差に戻すメソッド
+    private static int toDiscDiff(int score) {
+        if (score > CPU.DRAW_SCORE) {
+            return score - CPU.WIN_SCORE;
+        } else if (score < CPU.DRAW_SCORE) {
+            return score + CPU.WIN_SCORE;
+        }
+        return 0;
+    }
+
+    // ========== 重みの学習 ==========
+
+    /*
+    局面ファイルから重みを学習し、重みファイルに書き出すメソッド
+    1回の繰り返しで全局面を読み、各重みについて「その重みを使う局面の誤差(正解 - 評価値)の平均」を
+    1局面の特徴の数(34)で割ってLEARNING_RATE倍した分だけ重みを動かす(全ての特徴が同時に動くため)。局面ファイルはスレッドごとに区間を分けて並列に読む。
+    パターン自身の対称性で移り合う添字(PatternEvaluator.symmetricIndex)は1つの重みとして学習する。
+    */
+    static void train(String dataPath, String weightsPath, int epochs, int phases, int threads) throws Exception {
+        long start = System.nanoTime();
+        float[][][] weights = new float[phases][PatternEvaluator.PATTERNS][];
+        for (int phase = 0; phase < phases; phase++) {
+            for (int p = 0; p < PatternEvaluator.PATTERNS; p++) {
+                weights[phase][p] = new float[PatternEvaluator.PATTERN_LENGTH[p]];
+            }
+        }
+        int[][] canonical = canonicalIndices();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(Paths.get(dataPath), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a training data file: " + dataPath);
+            }
+            long records = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            System.out.println(records + "局面, " + phases + "段階, " + threads + "スレッドで学習します");
+
+            for (int epoch = 1; epoch <= epochs; epoch++) {
+                List<Future<Gradient>> tasks = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    long from = records * t / threads;
+                    long to = records * (t + 1) / threads;
+                    tasks.add(executor.submit(() -> accumulate(channel, from, to, weights, canonical, phases)));
+                }
+                Gradient total = null;
+                for (Future<Gradient> task : tasks) {
+                    Gradient gradient = task.get();
+                    if (total == null) {
+                        total = gradient;
+                    } else {
+                        total.add(gradient);
+                    }
+                }
+                update(weights, total, canonical);
+                System.out.printf("%2d回目: 平均二乗誤差(石差) 学習 %.2f, 確認用 %.2f (%.0f秒)%n", epoch,
+                        total.squaredError / Math.max(1, total.trainCount),
+                        total.validationError / Math.max(1, total.validationCount),
+                        (System.nanoTime() - start) / 1e9);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        PatternEvaluator.save(weightsPath, quantize(weights));
+        System.out.println("重みを " + weightsPath + " に書き出しました");
+    }
+
+    // スレッドごとに集計する誤差の和・出現回数
+    private static final class Gradient {
+        private final double[][][] sum; // [段階][パターン][添字] 誤差の和
+        private final int[][][] count; // [段階][パターン][添字] 出現回数
+        private double squaredError; // 学習に使った局面の二乗誤差の和
+        private long trainCount;
+        private double validationError; // 確認用の局面の二乗誤差の和
+        private long validationCount;
+
+        Gradient(int phases) {
+            sum = new double[phases][PatternEvaluator.PATTERNS][];
+            count = new int[phases][PatternEvaluator.PATTERNS][];
+            for (int phase = 0; phase < phases; phase++) {
+                for (int p = 0; p < PatternEvaluator.PATTERNS; p++) {
+                    sum[phase][p] = new double[PatternEvaluator.PATTERN_LENGTH[p]];
+                    count[phase][p] = new int[PatternEvaluator.PATTERN_LENGTH[p]];
+                }
+            }
+        }
+
+        void add(Gradient other) {
+            for (int phase = 0; phase < sum.length; phase++) {
+                for (int p = 0; p < PatternEvaluator.PATTERNS; p++) {
+                    for (int i = 0; i < sum[phase][p].length; i++) {
+                        sum[phase][p][i] += other.sum[phase][p][i];
+                        count[phase][p][i] += other.count[phase][p][i];
+                    }
+                }
+            }
+            squaredError += other.squaredError;
+            trainCount += other.trainCount;
+            validationError += other.validationError;
+            validationCount += other.validationCount;
+        }
+    }
+
+    // 局面ファイルのfrom番目からto番目の局面について、現在の重みでの誤差を集計するメソッド
+    private static Gradient accumulate(FileChannel channel, long from, long to, float[][][] weights,
+            int[][] canonical, int phases) throws IOException {
+        Gradient gradient = new Gradient(phases);
+        int[] indices = new int[PatternEvaluator.FEATURES];
+        ByteBuffer buffer = ByteBuffer.allocateDirect(READ_RECORDS * RECORD_BYTES); // ヒープの外に確保する
+        for (long record = from; record < to; ) {
+            int n = (int) Math.min(READ_RECORDS, to - record);
+            buffer.clear().limit(n * RECORD_BYTES);
+            long position = HEADER_BYTES + record * RECORD_BYTES;
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of training data");
+                }
+            }
+            buffer.flip();
+            for (int k = 0; k < n; k++, record++) {
+                long black = buffer.getLong();
+                long white = buffer.getLong();
+                int label = buffer.get();
+                int phase = PatternEvaluator.phaseOf(Long.bitCount(black | white), phases);
+                PatternEvaluator.computeIndices(black, white, indices);
+                float[][] w = weights[phase];
+                double predicted = 0;
+                for (int f = 0; f < indices.length; f++) {
+                    int p = PatternEvaluator.FEATURE_PATTERN[f];
+                    predicted += w[p][canonical[p][indices[f]]];
+                }
+                double error = label - predicted;
+                if (record % VALIDATION_INTERVAL == 0) {
+                    gradient.validationError += error * error;
+                    gradient.validationCount++;
+                    continue;
+                }
+                gradient.squaredError += error * error;
+                gradient.trainCount++;
+                for (int f = 0; f < indices.length; f++) {
+                    int p = PatternEvaluator.FEATURE_PATTERN[f];
+                    int index = canonical[p][indices[f]];
+                    gradient.sum[phase][p][index] += error;
+                    gradient.count[phase][p][index]++;
+                }
+            }
+        }
+        return gradient;
+    }
+
+    // 集計した誤差で重みを更新するメソッド(対称な添字には同じ値を入れる)
+    private static void update(float[][][] weights, Gradient gradient, int[][] canonical) {
+        for (int phase = 0; phase < weights.length; phase++) {
+            for (int p = 0; p < PatternEvaluator.PATTERNS; p++) {
+                float[] w = weights[phase][p];
+                double[] sum = gradient.sum[phase][p];
+                int[] count = gradient.count[phase][p];
+                for (int i = 0; i < w.length; i++) {
+                    if (count[i] > 0) {
+                        w[i] += (float) (LEARNING_RATE * sum[i] / (count[i] + MIN_COUNT) / PatternEvaluator.FEATURES);
+                    }
+                }
+                for (int i = 0; i < w.length; i++) {
+                    w[i] = w[canonical[p][i]];
+                }
+            }
+        }
+    }
+
+    // 各パターンの添字を、対称な添字のうち小さい方に対応させる表
+    private static int[][] canonicalIndices() {
+        int[][] canonical = new int[PatternEvaluator.PATTERNS][];
+        for (int p = 0; p < PatternEvaluator.PATTERNS; p++) {
+            canonical[p] = new int[PatternEvaluator.PATTERN_LENGTH[p]];
+            for (int i = 0; i < canonical[p].length; i++) {
+                canonical[p][i] = Math.min(i, PatternEvaluator.symmetricIndex(p, i));
+            }
+        }
+        return canonical;
+    }
+
+    // 石差単位の重みを、重みファイルの単位(石差 × SCALE)の整数にするメソッド
+    private static short[][][] quantize(float[][][] weights) {
+        short[][][] result = new short[weights.length][PatternEvaluator.PATTERNS][];
+        for (int phase = 0; phase < weights.length; phase++) {
+            for (int p = 0; p < PatternEvaluator.PATTERNS; p++) {
+                float[] w = weights[phase][p];
+                short[] table = new short[w.length];
+                for (int i = 0; i < w.length; i++) {
+                    long value = Math.round(w[i] * PatternEvaluator.SCALE);
+                    table[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+                }
+                result[phase][p] = table;
+            }
+        }
+        return result;
+    }
+
+    // ========== ニューラルネットワークの学習 ==========
+
+    /*
+    局面ファイルからNeuralEvaluatorのネットワークを学習し、重みファイルに書き出すメソッド
+    浮動小数点のネットワーク y = Σ 出力の重み × clamp(1層目の和, 0, 1) + 出力のバイアス(石差)を、
+    正解の石差との二乗誤差が小さくなるように学習する。局面ファイルはREAD_RECORDSずつ読み、その中で順番を入れ替えて使う。
+    */
+    static void trainNetwork(String dataPath, String networkPath, int epochs, int hidden) throws IOException {
+        long start = System.nanoTime();
+        Random random = new Random(1);
+        Network network = new Network(hidden, random);
+        try (FileChannel channel = FileChannel.open(Paths.get(dataPath), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Not a training data file: " + dataPath);
+            }
+            long records = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            System.out.println(records + "局面, 隠れ層 " + hidden + "ユニットで学習します");
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(READ_RECORDS * RECORD_BYTES);
+            long[] blacks = new long[READ_RECORDS];
+            long[] whites = new long[READ_RECORDS];
+            int[] labels = new int[READ_RECORDS];
+            int[] order = new int[READ_RECORDS];
+            for (int epoch = 1; epoch <= epochs; epoch++) {
+                double squaredError = 0;
+                long trainCount = 0;
+                double validationError = 0;
+                long validationCount = 0;
+                for (long record = 0; record < records; ) {
+                    int n = (int) Math.min(READ_RECORDS, records - record);
+                    buffer.clear().limit(n * RECORD_BYTES);
+                    long position = HEADER_BYTES + record * RECORD_BYTES;
+                    while (buffer.hasRemaining()) {
+                        if (channel.read(buffer, position + buffer.position()) < 0) {
+                            throw new IOException("Unexpected end of training data");
+                        }
+                    }
+                    buffer.flip();
+                    int trainRecords = 0;
+                    for (int k = 0; k < n; k++, record++) {
+                        long black = buffer.getLong();
+                        long white = buffer.getLong();
+                        int label = buffer.get();
+                        if (record % VALIDATION_INTERVAL == 0) {
+                            double error = label - network.forward(black, white);
+                            validationError += error * error;
+                            validationCount++;
+                            continue;
+                        }
+                        int symmetry = random.nextInt(BitBoard.SYMMETRIES); // 回転・反転した局面も同じ正解
+                        blacks[trainRecords] = BitBoard.transform(black, symmetry);
+                        whites[trainRecords] = BitBoard.transform(white, symmetry);
+                        labels[trainRecords] = label;
+                        order[trainRecords] = trainRecords;
+                        trainRecords++;
+                    }
+                    for (int i = trainRecords - 1; i > 0; i--) { // 読み込んだ範囲の中で順番を入れ替える
+                        int j = random.nextInt(i + 1);
+                        int swap = order[i];
+                        order[i] = order[j];
+                        order[j] = swap;
+                    }
+                    for (int i = 0; i < trainRecords; i++) {
+                        int k = order[i];
+                        double error = network.backward(blacks[k], whites[k], labels[k]);
+                        squaredError += error * error;
+                        trainCount++;
+                        if ((i + 1) % BATCH_SIZE == 0 || i == trainRecords - 1) {
+                            network.step();
+                        }
+                    }
+                }
+                System.out.printf("%2d回目: 平均二乗誤差(石差) 学習 %.2f, 確認用 %.2f (%.0f秒)%n", epoch,
+                        squaredError / Math.max(1, trainCount), validationError / Math.max(1, validationCount),
+                        (System.nanoTime() - start) / 1e9);
+            }
+        }
+        network.save(networkPath);
+        System.out.println("重みを " + networkPath + " に書き出しました");
+    }
+
+    // 学習中の浮動小数点のネットワーク(NeuralEvaluatorと同じ形で、勾配とAdamの状態を持つ)
+    private static final class Network {
+        private final int hidden;
+        private final double[][] parameters; // {1層目の重み[入力 × hidden + ユニット], 1層目のバイアス, 2層目の重み, 2層目のバイアス}
+        private final double[][] gradients;
+        private final double[][] moments; // Adamの1次のモーメント
+        private final double[][] squares; // Adamの2次のモーメント
+        private final int[] inputs = new int[BitBoard.SIZE * BitBoard.SIZE]; // 石がある入力の番号
+        private final double[] sums; // 1層目の和
+        private int batchCount; // 勾配を足し合わせた局面数
+        private long steps; // 更新した回数
+
+        Network(int hidden, Random random) {
+            this.hidden = hidden;
+            int[] sizes = { NeuralEvaluator.INPUTS * hidden, hidden, hidden, 1 };
+            parameters = new double[sizes.length][];
+            gradients = new double[sizes.length][];
+            moments = new double[sizes.length][];
+            squares = new double[sizes.length][];
+            for (int p = 0; p < sizes.length; p++) {
+                parameters[p] = new double[sizes[p]];
+                gradients[p] = new double[sizes[p]];
+                moments[p] = new double[sizes[p]];
+                squares[p] = new double[sizes[p]];
+            }
+            for (int i = 0; i < parameters[0].length; i++) {
+                parameters[0][i] = random.nextGaussian() * 0.1;
+            }
+            for (int h = 0; h < hidden; h++) {
+                parameters[1][h] = 0.5; // 最初は全てのユニットが0 ～ 1の間にあるようにする
+                parameters[2][h] = random.nextGaussian();
+            }
+            sums = new double[hidden];
+        }
+
+        // 局面の評価値(石差)を求めるメソッド(inputs, sumsに途中の値を残す)
+        double forward(long black, long white) {
+            int count = 0;
+            for (long bits = black; bits != 0; bits &= bits - 1) {
+                inputs[count++] = Long.numberOfTrailingZeros(bits);
+            }
+            for (long bits = white; bits != 0; bits &= bits - 1) {
+                inputs[count++] = NeuralEvaluator.INPUTS / 2 + Long.numberOfTrailingZeros(bits);
+            }
+            double[] w = parameters[0];
+            double y = parameters[3][0];
+            for (int h = 0; h < hidden; h++) {
+                double sum = parameters[1][h];
+                for (int i = 0; i < count; i++) {
+                    sum += w[inputs[i] * hidden + h];
+                }
+                sums[h] = sum;
+                y += parameters[2][h] * Math.max(0, Math.min(1, sum));
+            }
+            return y;
+        }
+
+        // 1局面の二乗誤差の勾配を足し合わせ、誤差(正解 - 評価値)を返すメソッド
+        double backward(long black, long white, int label) {
+            double error = label - forward(black, white);
+            double dy = -2 * error;
+            int count = Long.bitCount(black) + Long.bitCount(white);
+            gradients[3][0] += dy;
+            for (int h = 0; h < hidden; h++) {
+                double sum = sums[h];
+                gradients[2][h] += dy * Math.max(0, Math.min(1, sum));
+                if (sum <= 0 || sum >= 1) {
+                    continue; // 切り詰められたユニットには勾配が流れない
+                }
+                double dh = dy * parameters[2][h];
+                gradients[1][h] += dh;
+                for (int i = 0; i < count; i++) {
+                    gradients[0][inputs[i] * hidden + h] += dh;
+                }
+            }
+            batchCount++;
+            return error;
+        }
+
+        // 足し合わせた勾配の平均でAdamの更新を行うメソッド
+        void step() {
+            if (batchCount == 0) {
+                return;
+            }
+            steps++;
+            double correction1 = 1 - Math.pow(ADAM_BETA1, steps);
+            double correction2 = 1 - Math.pow(ADAM_BETA2, steps);
+            for (int p = 0; p < parameters.length; p++) {
+                double[] value = parameters[p];
+                double[] gradient = gradients[p];
+                double[] m = moments[p];
+                double[] v = squares[p];
+                for (int i = 0; i < value.length; i++) {
+                    double g = gradient[i] / batchCount;
+                    m[i] = ADAM_BETA1 * m[i] + (1 - ADAM_BETA1) * g;
+                    v[i] = ADAM_BETA2 * v[i] + (1 - ADAM_BETA2) * g * g;
+                    value[i] -= ADAM_RATE * (m[i] / correction1) / (Math.sqrt(v[i] / correction2) + ADAM_EPSILON);
+                    gradient[i] = 0;
+                }
+            }
+            batchCount = 0;
+        }
+
+        /*
+        NeuralEvaluatorの整数の重みに変換して書き出すメソッド
+        1層目は1.0 = ACTIVATION_MAX、2層目は石差 × SCALE、2層目のバイアスは石差 × SCALE × ACTIVATION_MAXの単位にする。
+        */
+        void save(String path) throws IOException {
+            int one = NeuralEvaluator.ACTIVATION_MAX;
+            short[] inputWeights = toShorts(parameters[0], one);
+            short[] hiddenBias = toShorts(parameters[1], one);
+            short[] outputWeights = toShorts(parameters[2], PatternEvaluator.SCALE);
+            int outputBias = (int) Math.round(parameters[3][0] * PatternEvaluator.SCALE * one);
+            NeuralEvaluator.save(path, inputWeights, hiddenBias, outputWeights, outputBias);
+        }
+
+        private static short[] toShorts(double[] values, double scale) {
+            short[] result = new short[values.length];
+            for (int i = 0; i < values.length; i++) {
+                long value = Math.round(values[i] * scale);
+                result[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+            }
+            return result;
+        }
+    }
+}
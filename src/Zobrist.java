@@ -0,0 +1,61 @@
+/*
+Zobristハッシュ用の乱数表を保持するクラス
+各マスの黒石・白石ごとに64bitの乱数を割り当て、盤面上の石に対応する乱数を全てXORしたものを局面のハッシュ値とする。
+石を置く・裏返すたびに対応する乱数をXORするだけで差分更新できる。
+
+乱数は固定のシード値からSplitMix64で生成するため、JVMや実行環境が変わっても同じ値になる。
+(ハッシュ値をファイルに保存しても次回以降の起動で同じ局面を指すように、シードと生成手順は変更しないこと)
+*/
+public final class Zobrist {
+    private static final long SEED = 0x4f7468656c6c6f39L; // 固定シード
+    private static final int N_SQUARE = 64;
+
+    static final long[] BLACK_KEYS = new long[N_SQUARE]; // 各マスに黒石があるときの乱数
+    static final long[] WHITE_KEYS = new long[N_SQUARE]; // 各マスに白石があるときの乱数
+    static final long[] FLIP_KEYS = new long[N_SQUARE]; // 石を裏返したときにXORする値(黒 ^ 白)
+    static final long SIDE_KEY; // 白番のときにXORする値
+
+    static {
+        long state = SEED;
+        for (int sq = 0; sq < N_SQUARE; sq++) {
+            state += 0x9e3779b97f4a7c15L;
+            BLACK_KEYS[sq] = mix(state);
+            state += 0x9e3779b97f4a7c15L;
+            WHITE_KEYS[sq] = mix(state);
+            FLIP_KEYS[sq] = BLACK_KEYS[sq] ^ WHITE_KEYS[sq];
+        }
+        state += 0x9e3779b97f4a7c15L;
+        SIDE_KEY = mix(state);
+    }
+
+    private Zobrist() {
+    }
+
+    // SplitMix64の出力関数
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    // 黒石・白石の配置から(手番を含まない)ハッシュ値を計算するメソッド
+    public static long hash(long black, long white) {
+        long hash = 0L;
+        for (long bits = black; bits != 0; bits &= bits - 1) {
+            hash ^= BLACK_KEYS[Long.numberOfTrailingZeros(bits)];
+        }
+        for (long bits = white; bits != 0; bits &= bits - 1) {
+            hash ^= WHITE_KEYS[Long.numberOfTrailingZeros(bits)];
+        }
+        return hash;
+    }
+
+    // 裏返した石の集合に対応する差分を返すメソッド
+    public static long flipKey(long flips) {
+        long key = 0L;
+        for (; flips != 0; flips &= flips - 1) {
+            key ^= FLIP_KEYS[Long.numberOfTrailingZeros(flips)];
+        }
+        return key;
+    }
+}